@@ -0,0 +1,923 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javalib.impworld.WorldScene;
+import javalib.worldimages.Posn;
+
+// Runs the benchmarks of the game's hot paths, in the manner of JMH: each
+// benchmark runs in a fresh JVM (a fork), is warmed up, then timed over several
+// iterations, and its score is reported as the mean time per operation with a
+// 99.9% confidence interval, along with the bytes allocated per operation and
+// the collections that happened while it was timed
+// JMH itself cannot be used: it generates its harness into a sub-package of the
+// benchmark's package, and the game lives in the default package, which no
+// named package can import
+// Options:
+//   -wi n     warmup iterations (5)
+//   -i n      measured iterations (5)
+//   -t ms     length of each iteration (1000)
+//   -f n      forks per benchmark, 0 to run in this JVM (1)
+//   -o file   writes the results as CSV
+//   -b file   compares with results written by an earlier run, and exits with
+//             status 1 if a benchmark got slower by more than the threshold
+//   -r pct    the threshold (10)
+//   anything else selects the benchmarks whose name contains it
+class BenchmarkSuite {
+  // Returns every benchmark of the suite
+  static ArrayList<ABenchmark> all() {
+    ArrayList<ABenchmark> all = new ArrayList<ABenchmark>();
+    all.add(new ConstructBenchmark(30, 16, 99));
+    all.add(new ConstructBenchmark(100, 100, 2000));
+    all.add(new ConstructBenchmark(1000, 1000, 200000));
+    all.add(new RevealClickBenchmark(30, 16, 99));
+    all.add(new RevealClickBenchmark(100, 100, 2000));
+    all.add(new FlagClickBenchmark(30, 16, 99));
+    all.add(new FlagClickBenchmark(100, 100, 2000));
+    all.add(new FloodRevealBenchmark(300, 300, 900));
+    all.add(new FloodRevealBenchmark(1000, 1000, 10000));
+    all.add(new SharedClearBenchmark(1000, 1000, 10000, 1));
+    all.add(new SharedClearBenchmark(1000, 1000, 10000, 2));
+    all.add(new SharedClearBenchmark(1000, 1000, 10000, 4));
+    for (boolean raster : new boolean[] { false, true }) {
+      all.add(new MakeSceneBenchmark(30, 16, 99, false, raster));
+      all.add(new MakeSceneBenchmark(30, 16, 99, true, raster));
+      all.add(new MakeSceneBenchmark(100, 100, 2000, false, raster));
+      all.add(new MakeSceneBenchmark(100, 100, 2000, true, raster));
+      all.add(new MakeSceneBenchmark(1000, 1000, 200000, true, raster));
+      all.add(new ScrollSceneBenchmark(1000, 1000, 200000, false, raster));
+      all.add(new ScrollSceneBenchmark(1000, 1000, 200000, true, raster));
+    }
+    all.add(new BotStepBenchmark(30, 16, 99));
+    all.add(new BotBatchBenchmark(1024, 9, 9, 10));
+    all.add(new AnalyzeBenchmark(30, 16, 99));
+    all.add(new AnalyzeBenchmark(1000, 1000, 200000));
+    all.add(new CountMinesBenchmark(30, 16, 99));
+    all.add(new CountMinesBenchmark(100, 100, 2000));
+    all.add(new SolveGameBenchmark(30, 16, 99));
+    all.add(new SolveGameBenchmark(100, 100, 2000));
+    all.add(new SolveGameBenchmark(500, 500, 50000));
+    return all;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    BenchmarkRunner runner = new BenchmarkRunner(5, 5, 1000);
+    int forks = 1;
+    String output = null;
+    String baseline = null;
+    double threshold = 10;
+    int child = -1;
+    ArrayList<String> filters = new ArrayList<String>();
+    for (int k = 0; k < args.length; k++) {
+      switch (args[k]) {
+        case "-wi":
+          runner.warmups = Integer.parseInt(args[++k]);
+          break;
+        case "-i":
+          runner.iterations = Integer.parseInt(args[++k]);
+          break;
+        case "-t":
+          runner.iterationNanos = Long.parseLong(args[++k]) * 1000000;
+          break;
+        case "-f":
+          forks = Integer.parseInt(args[++k]);
+          break;
+        case "-o":
+          output = args[++k];
+          break;
+        case "-b":
+          baseline = args[++k];
+          break;
+        case "-r":
+          threshold = Double.parseDouble(args[++k]);
+          break;
+        case "--child":
+          child = Integer.parseInt(args[++k]);
+          break;
+        default:
+          filters.add(args[k]);
+      }
+    }
+
+    ArrayList<ABenchmark> all = BenchmarkSuite.all();
+    if (child >= 0) {
+      // a fork: runs one benchmark and hands its result to the parent
+      System.out.println("RESULT " + runner.run(all.get(child)).toCsv());
+      return;
+    }
+
+    ArrayList<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+    for (int index = 0; index < all.size(); index++) {
+      ABenchmark benchmark = all.get(index);
+      if (!BenchmarkSuite.selected(benchmark, filters)) {
+        continue;
+      }
+      System.out.println("# " + benchmark.name + " " + benchmark.params);
+      if (forks == 0) {
+        results.add(runner.run(benchmark));
+      }
+      else {
+        ArrayList<BenchmarkResult> runs = new ArrayList<BenchmarkResult>();
+        for (int fork = 0; fork < forks; fork++) {
+          runs.add(BenchmarkSuite.fork(index, runner));
+        }
+        results.add(BenchmarkResult.merge(runs));
+      }
+      System.out.println(results.get(results.size() - 1));
+    }
+
+    System.out.println();
+    System.out.println(BenchmarkResult.HEADER);
+    for (BenchmarkResult result : results) {
+      System.out.println(result.toCsv());
+    }
+    if (output != null) {
+      try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(output)))) {
+        out.println(BenchmarkResult.HEADER);
+        for (BenchmarkResult result : results) {
+          out.println(result.toCsv());
+        }
+      }
+    }
+    if (baseline != null && !BenchmarkSuite.compare(results, baseline, threshold)) {
+      System.exit(1);
+    }
+  }
+
+  // Checks if the given benchmark is picked by the given filters
+  static boolean selected(ABenchmark benchmark, ArrayList<String> filters) {
+    if (filters.isEmpty()) {
+      return true;
+    }
+    for (String filter : filters) {
+      if ((benchmark.name + " " + benchmark.params).contains(filter)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Returns the result of running the benchmark with the given index in a new
+  // JVM started with the same options and class path as this one
+  static BenchmarkResult fork(int index, BenchmarkRunner runner)
+      throws IOException, InterruptedException {
+    ArrayList<String> command = new ArrayList<String>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add("BenchmarkSuite");
+    command.add("--child");
+    command.add(Integer.toString(index));
+    command.add("-wi");
+    command.add(Integer.toString(runner.warmups));
+    command.add("-i");
+    command.add(Integer.toString(runner.iterations));
+    command.add("-t");
+    command.add(Long.toString(runner.iterationNanos / 1000000));
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    BenchmarkResult result = null;
+    try (BufferedReader in = new BufferedReader(
+        new InputStreamReader(process.getInputStream()))) {
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        if (line.startsWith("RESULT ")) {
+          result = BenchmarkResult.fromCsv(line.substring(7));
+        }
+        else {
+          System.out.println(line);
+        }
+      }
+    }
+    if (process.waitFor() != 0 || result == null) {
+      throw new IllegalStateException("Fork of benchmark " + index + " failed");
+    }
+    return result;
+  }
+
+  // Returns whether none of the given results is slower than the one of the same
+  // benchmark in the given baseline file by more than the given percentage,
+  // beyond the error of both, printing the change of each
+  static boolean compare(ArrayList<BenchmarkResult> results, String baseline, double threshold)
+      throws IOException {
+    HashMap<String, BenchmarkResult> before = new HashMap<String, BenchmarkResult>();
+    List<String> lines = Files.readAllLines(Paths.get(baseline));
+    for (String line : lines.subList(1, lines.size())) {
+      BenchmarkResult old = BenchmarkResult.fromCsv(line);
+      before.put(old.key(), old);
+    }
+    boolean ok = true;
+    System.out.println();
+    for (BenchmarkResult now : results) {
+      BenchmarkResult old = before.get(now.key());
+      if (old == null) {
+        System.out.printf("%-40s new%n", now.key());
+        continue;
+      }
+      double change = 100 * (now.score / old.score - 1);
+      boolean slower = change > threshold && now.score - now.error > old.score + old.error;
+      ok = ok && !slower;
+      System.out.printf("%-40s %10.3f -> %10.3f us/op %+7.1f%%%s%n", now.key(), old.score,
+          now.score, change, slower ? "  REGRESSION" : "");
+    }
+    return ok;
+  }
+}
+
+// Warms up and times benchmarks
+class BenchmarkRunner {
+  // the two-sided 99.9% quantile of Student's t distribution, by degrees of
+  // freedom from 1 to 10, as JMH uses for its error
+  static final double[] T_999 = { 636.62, 31.60, 12.92, 8.61, 6.87, 5.96, 5.41, 5.04, 4.78,
+      4.59 };
+
+  int warmups;
+  int iterations;
+  long iterationNanos;
+  // what every operation returned, so that none of them is optimized away
+  long sink;
+
+  BenchmarkRunner(int warmups, int iterations, long iterationMillis) {
+    this.warmups = warmups;
+    this.iterations = iterations;
+    this.iterationNanos = iterationMillis * 1000000;
+  }
+
+  // Returns the result of warming up and timing the given benchmark
+  BenchmarkResult run(ABenchmark benchmark) {
+    benchmark.setUp();
+    for (int k = 0; k < this.warmups; k++) {
+      this.iteration(benchmark);
+    }
+    long gcCount = BenchmarkRunner.gcCount();
+    long gcMillis = BenchmarkRunner.gcMillis();
+    double[] scores = new double[this.iterations];
+    double bytes = 0;
+    for (int k = 0; k < this.iterations; k++) {
+      long[] iteration = this.iteration(benchmark);
+      scores[k] = iteration[1] / 1e3 / iteration[0];
+      bytes += (double) iteration[2] / iteration[0];
+    }
+    double mean = 0;
+    for (double score : scores) {
+      mean += score / scores.length;
+    }
+    double variance = 0;
+    for (double score : scores) {
+      variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+    }
+    int df = scores.length - 1;
+    double t = df < 1 ? 0 : df <= T_999.length ? T_999[df - 1] : 3.29;
+    return new BenchmarkResult(benchmark.name, benchmark.params, mean,
+        t * Math.sqrt(variance / scores.length), bytes / this.iterations,
+        BenchmarkRunner.gcCount() - gcCount, BenchmarkRunner.gcMillis() - gcMillis);
+  }
+
+  // Returns the operations done in one iteration of the given benchmark, the
+  // nanoseconds they took and the bytes they allocated, not counting the work
+  // of preparing each invocation
+  long[] iteration(ABenchmark benchmark) {
+    long ops = 0;
+    long timed = 0;
+    long allocated = 0;
+    long start = System.nanoTime();
+    if (benchmark.perInvocation) {
+      while (System.nanoTime() - start < this.iterationNanos) {
+        benchmark.prepare();
+        long bytes = BenchmarkRunner.allocatedBytes();
+        long before = System.nanoTime();
+        this.sink += benchmark.invoke();
+        timed += System.nanoTime() - before;
+        allocated += BenchmarkRunner.allocatedBytes() - bytes;
+        ops++;
+      }
+    }
+    else {
+      long bytes = BenchmarkRunner.allocatedBytes();
+      while (System.nanoTime() - start < this.iterationNanos) {
+        this.sink += benchmark.invoke();
+        ops++;
+      }
+      timed = System.nanoTime() - start;
+      allocated = BenchmarkRunner.allocatedBytes() - bytes;
+    }
+    return new long[] { ops, timed, allocated };
+  }
+
+  // Returns the bytes this thread has allocated so far
+  static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getCurrentThreadAllocatedBytes();
+  }
+
+  // Returns the number of collections so far
+  static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  // Returns the milliseconds spent collecting so far
+  static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+}
+
+// Represents the score of one benchmark
+class BenchmarkResult {
+  static final String HEADER = "benchmark,params,score_us_per_op,error_us,alloc_bytes_per_op,"
+      + "gc_count,gc_ms";
+
+  String name;
+  String params;
+  double score;
+  double error;
+  double allocatedPerOp;
+  long gcCount;
+  long gcMillis;
+
+  BenchmarkResult(String name, String params, double score, double error,
+      double allocatedPerOp, long gcCount, long gcMillis) {
+    this.name = name;
+    this.params = params;
+    this.score = score;
+    this.error = error;
+    this.allocatedPerOp = allocatedPerOp;
+    this.gcCount = gcCount;
+    this.gcMillis = gcMillis;
+  }
+
+  // Returns what identifies this benchmark across runs
+  String key() {
+    return this.name + " " + this.params;
+  }
+
+  String toCsv() {
+    return String.format("%s,%s,%.4f,%.4f,%.1f,%d,%d", this.name, this.params, this.score,
+        this.error, this.allocatedPerOp, this.gcCount, this.gcMillis);
+  }
+
+  // Returns the result written as the given line by toCsv
+  static BenchmarkResult fromCsv(String line) {
+    String[] fields = line.split(",");
+    return new BenchmarkResult(fields[0], fields[1], Double.parseDouble(fields[2]),
+        Double.parseDouble(fields[3]), Double.parseDouble(fields[4]),
+        Long.parseLong(fields[5]), Long.parseLong(fields[6]));
+  }
+
+  // Returns one result for the given forks of the same benchmark, with the
+  // widest error of them
+  static BenchmarkResult merge(ArrayList<BenchmarkResult> runs) {
+    BenchmarkResult first = runs.get(0);
+    BenchmarkResult merged = new BenchmarkResult(first.name, first.params, 0, 0, 0, 0, 0);
+    for (BenchmarkResult run : runs) {
+      merged.score += run.score / runs.size();
+      merged.allocatedPerOp += run.allocatedPerOp / runs.size();
+      merged.error = Math.max(merged.error, run.error);
+      merged.gcCount += run.gcCount;
+      merged.gcMillis += run.gcMillis;
+    }
+    return merged;
+  }
+
+  public String toString() {
+    return String.format("%s %s: %.3f +- %.3f us/op, %.0f B/op, %d GCs (%d ms)", this.name,
+        this.params, this.score, this.error, this.allocatedPerOp, this.gcCount, this.gcMillis);
+  }
+}
+
+// Represents one operation of the suite and the state it works on
+abstract class ABenchmark {
+  String name;
+  String params;
+  // whether prepare must run (untimed) before every invocation
+  boolean perInvocation;
+
+  ABenchmark(String name, String params, boolean perInvocation) {
+    this.name = name;
+    this.params = params;
+    this.perInvocation = perInvocation;
+  }
+
+  // EFFECT: builds the state the operation works on, once per fork
+  abstract void setUp();
+
+  // EFFECT: readies the state for the next invocation
+  void prepare() {
+    // most operations leave the state ready for the next one
+  }
+
+  // EFFECT: does the operation once
+  // Returns a value that depends on its result
+  abstract long invoke();
+}
+
+// Builds a whole game: placing the mines, counting their neighbors and setting
+// up the world
+class ConstructBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  Random rand;
+
+  ConstructBenchmark(int width, int height, int mineCount) {
+    super("construct", width + "x" + height + "/" + mineCount, false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.rand = new Random(1);
+  }
+
+  long invoke() {
+    return new Minesweeper(this.rand, this.width, this.height, this.mineCount).board.hidden;
+  }
+}
+
+// Left-clicks a numbered tile of a fresh game, which uncovers just that tile
+class RevealClickBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  GameEngine template;
+  // numbered safe tiles, clicked in turn
+  int[] targets;
+  int next;
+  Minesweeper world;
+
+  RevealClickBenchmark(int width, int height, int mineCount) {
+    super("click-reveal", width + "x" + height + "/" + mineCount, true);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.template = new GameEngine(new Random(1), this.width, this.height, this.mineCount);
+    Board board = this.template.board;
+    TileList numbered = new TileList(board.size());
+    for (int i = 0; i < board.size(); i++) {
+      if (!board.isMine(i) && board.countMines(i) > 0) {
+        numbered.add(i);
+      }
+    }
+    this.targets = new int[numbered.size];
+    for (int k = 0; k < numbered.size; k++) {
+      this.targets[k] = numbered.get(k);
+    }
+  }
+
+  void prepare() {
+    this.world = new Minesweeper(new Random(1), this.template.snapshot());
+    this.next = (this.next + 1) % this.targets.length;
+  }
+
+  long invoke() {
+    int tile = this.targets[this.next];
+    this.world.onMouseClicked(new Posn(this.world.board.col(tile) * IUtils.TILE_SIZE + 1,
+        this.world.board.row(tile) * IUtils.TILE_SIZE + 1), "LeftButton");
+    return this.world.board.hidden;
+  }
+}
+
+// Right-clicks covered tiles in turn, flagging them and later unflagging them
+class FlagClickBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  Minesweeper world;
+  int next;
+
+  FlagClickBenchmark(int width, int height, int mineCount) {
+    super("click-flag", width + "x" + height + "/" + mineCount, false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.world = new Minesweeper(new Random(1), this.width, this.height, this.mineCount);
+  }
+
+  long invoke() {
+    this.next = (this.next + 1) % this.world.board.size();
+    this.world.onMouseClicked(new Posn(this.world.board.col(this.next) * IUtils.TILE_SIZE + 1,
+        this.world.board.row(this.next) * IUtils.TILE_SIZE + 1), "RightButton");
+    return this.world.board.flagged;
+  }
+}
+
+// Reveals the tile that opens the largest region of a sparsely mined board
+class FloodRevealBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  Board template;
+  int start;
+  Board board;
+
+  FloodRevealBenchmark(int width, int height, int mineCount) {
+    super("flood-reveal", width + "x" + height + "/" + mineCount, true);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.template = new Board(this.width, this.height);
+    new MinePlacer(new Random(1)).place(this.template, this.mineCount);
+    // tries each region once, keeping the start of the largest
+    Board trial = this.template.copy();
+    int largest = 0;
+    for (int i = 0; i < trial.size(); i++) {
+      if (!trial.isVisible(i) && !trial.isMine(i) && trial.countMines(i) == 0) {
+        int size = trial.reveal(i).size;
+        if (size > largest) {
+          largest = size;
+          this.start = i;
+        }
+      }
+    }
+  }
+
+  void prepare() {
+    this.board = this.template.copy();
+  }
+
+  long invoke() {
+    return this.board.reveal(this.start).size;
+  }
+}
+
+// Clears every safe tile of a sparsely mined SharedBoard with the given number
+// of threads at once, each revealing the tiles of its own band of rows in turn,
+// so that floods started in one band spill into the others
+class SharedClearBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  int threads;
+  Board template;
+  SharedBoard board;
+  ExecutorService pool;
+  // the players keep their scratch space from one invocation to the next
+  SharedPlayer[] players;
+  List<Callable<Integer>> tasks;
+
+  SharedClearBenchmark(int width, int height, int mineCount, int threads) {
+    super("shared-clear", width + "x" + height + "/" + mineCount + "/" + threads + "t", true);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    this.threads = threads;
+  }
+
+  void setUp() {
+    this.template = new Board(this.width, this.height);
+    new MinePlacer(new Random(1)).place(this.template, this.mineCount);
+    this.pool = Executors.newFixedThreadPool(this.threads, task -> {
+      Thread thread = new Thread(task);
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.board = new SharedBoard(this.template, this.mineCount);
+    this.players = new SharedPlayer[this.threads];
+    this.tasks = new ArrayList<Callable<Integer>>();
+    int band = (this.template.size() + this.threads - 1) / this.threads;
+    for (int p = 0; p < this.threads; p++) {
+      int first = p * band;
+      int last = Math.min(first + band, this.template.size());
+      SharedPlayer player = new SharedPlayer(this.board);
+      this.players[p] = player;
+      this.tasks.add(() -> {
+        SharedBoard board = player.board;
+        int uncovered = 0;
+        for (int i = first; i < last; i++) {
+          if (!board.isMine(i)) {
+            uncovered += player.reveal(i).size;
+          }
+        }
+        return uncovered;
+      });
+    }
+  }
+
+  void prepare() {
+    this.board = new SharedBoard(this.template, this.mineCount);
+    for (SharedPlayer player : this.players) {
+      player.board = this.board;
+    }
+  }
+
+  long invoke() {
+    long uncovered = 0;
+    try {
+      for (Future<Integer> player : this.pool.invokeAll(this.tasks)) {
+        uncovered += player.get();
+      }
+    }
+    catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+    return uncovered;
+  }
+}
+
+// Builds and paints the scene of a frame, either with nothing changed since the
+// last one or with one tile flagged or unflagged in between, drawing the board
+// as a tree of tile images or into one raster
+// The board's image is painted into an offscreen image the size of the window,
+// as the game's canvas paints it on screen, since the tree of images costs most
+// when it is painted, tile by tile, while the raster is one image to paint
+class MakeSceneBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  boolean dirty;
+  boolean raster;
+  Minesweeper world;
+  Graphics2D canvas;
+  int next;
+
+  MakeSceneBenchmark(int width, int height, int mineCount, boolean dirty, boolean raster) {
+    super("make-scene", width + "x" + height + "/" + mineCount + (dirty ? "/dirty" : "/idle")
+        + (raster ? "/raster" : ""), false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    this.dirty = dirty;
+    this.raster = raster;
+  }
+
+  void setUp() {
+    this.world = new Minesweeper(new Random(1), this.width, this.height, this.mineCount);
+    if (this.raster) {
+      this.world.renderer = new RasterRenderer(this.world.board, this.world.view);
+    }
+    this.canvas = MakeSceneBenchmark.canvas(this.world);
+  }
+
+  long invoke() {
+    if (this.dirty) {
+      this.next = (this.next + 1) % this.world.board.size();
+      this.world.game.toggleFlag(this.next);
+    }
+    WorldScene scene = this.world.makeScene();
+    MakeSceneBenchmark.paint(this.world, this.canvas);
+    return System.identityHashCode(scene);
+  }
+
+  // Returns somewhere to paint the window of the given world, with the origin
+  // at its center, where the scene places the board
+  static Graphics2D canvas(Minesweeper world) {
+    BufferedImage image = new BufferedImage(world.gameWidth, world.gameHeight,
+        BufferedImage.TYPE_INT_ARGB);
+    Graphics2D g = image.createGraphics();
+    g.translate(world.gameWidth / 2.0, world.gameHeight / 2.0);
+    return g;
+  }
+
+  // EFFECT: paints the image of the board of the given world, which makeScene
+  // has just drawn, onto the given canvas
+  static void paint(Minesweeper world, Graphics2D canvas) {
+    world.renderer.draw().draw(canvas);
+  }
+}
+
+// Scrolls the window of a Minesweeper one tile before drawing and painting each
+// frame, back and forth across or up and down, drawing the board as a tree of
+// tile images or into one raster
+class ScrollSceneBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  boolean across;
+  boolean raster;
+  Minesweeper world;
+  Graphics2D canvas;
+  int frame;
+
+  ScrollSceneBenchmark(int width, int height, int mineCount, boolean across, boolean raster) {
+    super("scroll-scene", width + "x" + height + "/" + mineCount + (across ? "/across" : "/down")
+        + (raster ? "/raster" : ""), false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    this.across = across;
+    this.raster = raster;
+  }
+
+  void setUp() {
+    this.world = new Minesweeper(new Random(1), this.width, this.height, this.mineCount);
+    if (this.raster) {
+      this.world.renderer = new RasterRenderer(this.world.board, this.world.view);
+    }
+    this.canvas = MakeSceneBenchmark.canvas(this.world);
+    this.world.makeScene();
+  }
+
+  long invoke() {
+    this.frame++;
+    String forward = this.across ? "right" : "down";
+    String back = this.across ? "left" : "up";
+    this.world.onKeyEvent(this.frame / 100 % 2 == 0 ? forward : back);
+    WorldScene scene = this.world.makeScene();
+    MakeSceneBenchmark.paint(this.world, this.canvas);
+    return System.identityHashCode(scene);
+  }
+}
+
+// Reveals random tiles of a BotEnvironment, starting a new game whenever one
+// ends, the way a bot that has not learned anything would
+class BotStepBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  BotEnvironment environment;
+  byte[] observation;
+  // random tiles, used in turn
+  int[] tiles;
+  int next;
+
+  BotStepBenchmark(int width, int height, int mineCount) {
+    super("bot-step", width + "x" + height + "/" + mineCount, false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.environment = new BotEnvironment(new Random(1), this.width, this.height,
+        this.mineCount);
+    this.observation = new byte[this.environment.size()];
+    this.environment.observe(this.observation, 0);
+    Random rand = new Random(2);
+    this.tiles = new int[1 << 16];
+    for (int k = 0; k < this.tiles.length; k++) {
+      this.tiles[k] = rand.nextInt(this.environment.size());
+    }
+  }
+
+  long invoke() {
+    this.next = (this.next + 1) & (this.tiles.length - 1);
+    int reward = this.environment.step(BotEnvironment.REVEAL, this.tiles[this.next],
+        this.observation, 0);
+    if (this.environment.status() != GameStatus.PLAYING.ordinal()) {
+      this.environment.reset(this.observation, 0);
+    }
+    return reward;
+  }
+}
+
+// Steps a batch of BotEnvironments at once, each revealing a random tile
+class BotBatchBenchmark extends ABenchmark {
+  int count;
+  int width;
+  int height;
+  int mineCount;
+  BotBatch batch;
+  int[] actions;
+  // batches of random tiles, used in turn
+  int[][] tiles;
+  int next;
+  byte[] observations;
+  int[] rewards;
+  byte[] statuses;
+
+  BotBatchBenchmark(int count, int width, int height, int mineCount) {
+    super("bot-batch", count + "x" + width + "x" + height + "/" + mineCount, false);
+    this.count = count;
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.batch = new BotBatch(this.count, this.width, this.height, this.mineCount, 1);
+    this.actions = new int[this.count];
+    this.observations = new byte[this.count * this.width * this.height];
+    this.rewards = new int[this.count];
+    this.statuses = new byte[this.count];
+    this.batch.observe(this.observations);
+    Random rand = new Random(2);
+    this.tiles = new int[64][this.count];
+    for (int b = 0; b < this.tiles.length; b++) {
+      for (int e = 0; e < this.count; e++) {
+        this.tiles[b][e] = rand.nextInt(this.width * this.height);
+      }
+    }
+  }
+
+  long invoke() {
+    this.next = (this.next + 1) % this.tiles.length;
+    this.batch.stepMany(this.actions, this.tiles[this.next], this.observations, this.rewards,
+        this.statuses);
+    return this.rewards[0];
+  }
+}
+
+// Works out the 3BV, openings and islands of a board
+class AnalyzeBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  Board board;
+  DifficultyAnalyzer analyzer;
+
+  AnalyzeBenchmark(int width, int height, int mineCount) {
+    super("analyze", width + "x" + height + "/" + mineCount, false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.board = new Board(this.width, this.height);
+    new MinePlacer(new Random(1)).place(this.board, this.mineCount);
+    this.analyzer = new DifficultyAnalyzer();
+  }
+
+  long invoke() {
+    return this.analyzer.analyze(this.board).bbbv;
+  }
+}
+
+// Asks every tile of a board for its number of neighboring mines
+class CountMinesBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  Board board;
+
+  CountMinesBenchmark(int width, int height, int mineCount) {
+    super("count-mines", width + "x" + height + "/" + mineCount, false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.board = new Board(this.width, this.height);
+    new MinePlacer(new Random(1)).place(this.board, this.mineCount);
+  }
+
+  long invoke() {
+    long sum = 0;
+    for (int i = 0; i < this.board.size(); i++) {
+      sum += new Cell(this.board, i).countMines();
+    }
+    return sum;
+  }
+}
+
+// Plays a whole game with the solver, a new board each time, the way the
+// simulations do
+class SolveGameBenchmark extends ABenchmark {
+  int width;
+  int height;
+  int mineCount;
+  SimulationRunner runner;
+  SimulationStats stats;
+  int game;
+
+  SolveGameBenchmark(int width, int height, int mineCount) {
+    super("solve-game", width + "x" + height + "/" + mineCount, false);
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+  }
+
+  void setUp() {
+    this.runner = new SimulationRunner(this.width, this.height, this.mineCount,
+        SolverPolicy::new, 1);
+    this.stats = new SimulationStats();
+  }
+
+  long invoke() {
+    this.runner.play(this.game++, this.stats);
+    return this.stats.moves;
+  }
+}
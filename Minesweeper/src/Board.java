@@ -0,0 +1,685 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+
+// Represents the tiles of a Minesweeper board, packed one byte per tile and
+// addressed by row * width + col
+// The tiles are split into chunks that are shared between a board and its
+// copies, and a board clones a chunk only the first time it writes to it, so
+// copying a board costs nothing up front and every later change copies only
+// the chunks it touches
+class Board {
+  // the low nibble of a tile byte counts its adjacent mines, the high bits are
+  // flags
+  static final int COUNT = 0x0F;
+  static final int MINE = 0x10;
+  static final int FLAGGED = 0x20;
+  static final int VISIBLE = 0x40;
+  // how a tile appears to the player: 0 to 15 is an uncovered tile with that many
+  // adjacent mines, followed by
+  static final int SHOW_MINE = 16;
+  static final int SHOW_COVERED = 17;
+  static final int SHOW_FLAG = 18;
+  static final int APPEARANCES = 19;
+  // the number of tiles in a chunk is 1 << CHUNK_BITS
+  static final int CHUNK_BITS = 10;
+  static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+  int width;
+  int height;
+  ITopology topology;
+  int size;
+  // chunks[c] holds the tiles c << CHUNK_BITS onward
+  byte[][] chunks;
+  // owned[c] is whether chunks[c] belongs to this board alone and can be
+  // written in place -- never true while shared is, which means that the
+  // chunks array itself may be seen by another board
+  boolean[] owned;
+  boolean shared;
+  // scratch space for the neighbors of one tile
+  int[] neighbors;
+  // the number of covered tiles and of flagged tiles, kept up to date by every
+  // change to a tile
+  int hidden;
+  int flagged;
+  // rowStamps[r] is the value of stamp when a tile of row r last changed, so
+  // renderers can tell which rows to redraw
+  int[] rowStamps;
+  int stamp;
+  // the tiles changed by the last reveal, which doubles as the work queue of the
+  // flood fill -- allocated by the first reveal
+  TileList revealed;
+
+  Board(int width, int height) {
+    this(width, height, new SquareTopology(width, height));
+  }
+
+  Board(int width, int height, ITopology topology) {
+    if (topology.maxDegree() > COUNT) {
+      throw new IllegalArgumentException("Tiles can have at most " + COUNT + " neighbors");
+    }
+    this.width = width;
+    this.height = height;
+    this.topology = topology;
+    this.size = topology.size();
+    int count = (this.size + CHUNK_MASK) >> CHUNK_BITS;
+    this.chunks = new byte[count][];
+    for (int c = 0; c < count; c++) {
+      this.chunks[c] = new byte[Math.min(1 << CHUNK_BITS, this.size - (c << CHUNK_BITS))];
+    }
+    this.owned = new boolean[count];
+    Arrays.fill(this.owned, true);
+    this.shared = false;
+    this.neighbors = new int[topology.maxDegree()];
+    this.rowStamps = new int[(topology.size() + width - 1) / width];
+    this.stamp = 0;
+    this.hidden = topology.size();
+    this.flagged = 0;
+  }
+
+  // a copy of the given board that shares its chunks
+  Board(Board other) {
+    this.width = other.width;
+    this.height = other.height;
+    this.topology = other.topology;
+    this.size = other.size;
+    this.chunks = other.chunks;
+    this.shared = true;
+    other.shared = true;
+    this.neighbors = new int[other.neighbors.length];
+    this.rowStamps = other.rowStamps.clone();
+    this.stamp = other.stamp;
+    this.hidden = other.hidden;
+    this.flagged = other.flagged;
+  }
+
+  // Returns the number of tiles on this board
+  int size() {
+    return this.size;
+  }
+
+  // Returns the index of the tile at the given row and column
+  int index(int row, int col) {
+    return row * this.width + col;
+  }
+
+  // Returns the row of the tile at the given index
+  int row(int index) {
+    return index / this.width;
+  }
+
+  // Returns the column of the tile at the given index
+  int col(int index) {
+    return index % this.width;
+  }
+
+  // Returns the byte of the tile at the given index
+  int tile(int index) {
+    return this.chunks[index >> CHUNK_BITS][index & CHUNK_MASK];
+  }
+
+  // Returns the tiles of this board as one array, which is not shared with it
+  byte[] tiles() {
+    byte[] tiles = new byte[this.size];
+    for (int c = 0; c < this.chunks.length; c++) {
+      System.arraycopy(this.chunks[c], 0, tiles, c << CHUNK_BITS, this.chunks[c].length);
+    }
+    return tiles;
+  }
+
+  // EFFECT: makes the chunk holding the tile at the given index this board's
+  // own, copying it if it is shared
+  // Returns that chunk
+  byte[] writable(int index) {
+    int c = index >> CHUNK_BITS;
+    if (this.shared || !this.owned[c]) {
+      return this.own(c);
+    }
+    return this.chunks[c];
+  }
+
+  // EFFECT: copies the given chunk, and the array of chunks if it is shared, so
+  // that this board is the only one to see them
+  // Returns the copied chunk
+  byte[] own(int c) {
+    if (this.shared) {
+      this.chunks = this.chunks.clone();
+      this.owned = new boolean[this.chunks.length];
+      this.shared = false;
+    }
+    this.chunks[c] = this.chunks[c].clone();
+    this.owned[c] = true;
+    return this.chunks[c];
+  }
+
+  // Checks if the tile at the given index has the given flag bit set
+  boolean has(int index, int flag) {
+    return (this.tile(index) & flag) != 0;
+  }
+
+  // EFFECT: sets or clears the given flag bit of the tile at the given index
+  void set(int index, int flag, boolean on) {
+    this.touch(index);
+    byte[] chunk = this.writable(index);
+    int i = index & CHUNK_MASK;
+    if (on) {
+      chunk[i] = (byte) (chunk[i] | flag);
+    }
+    else {
+      chunk[i] = (byte) (chunk[i] & ~flag);
+    }
+  }
+
+  // EFFECT: records that the tile at the given index changed
+  void touch(int index) {
+    this.stamp++;
+    this.rowStamps[index / this.width] = this.stamp;
+  }
+
+  // Checks if the tile at the given index is a mine
+  boolean isMine(int index) {
+    return this.has(index, MINE);
+  }
+
+  // Checks if the tile at the given index is flagged
+  boolean isFlagged(int index) {
+    return this.has(index, FLAGGED);
+  }
+
+  // Checks if the tile at the given index is visible
+  boolean isVisible(int index) {
+    return this.has(index, VISIBLE);
+  }
+
+  // EFFECT: places or removes a mine at the tile at the given index, updating
+  // the counts of its neighbors
+  void setMine(int index, boolean mine) {
+    if (this.isMine(index) != mine) {
+      this.set(index, MINE, mine);
+      int delta = mine ? 1 : -1;
+      int degree = this.topology.neighbors(index, this.neighbors);
+      for (int k = 0; k < degree; k++) {
+        int n = this.neighbors[k];
+        byte[] chunk = this.writable(n);
+        chunk[n & CHUNK_MASK] = (byte) (chunk[n & CHUNK_MASK] + delta);
+        this.touch(n);
+      }
+    }
+  }
+
+  // EFFECT: moves the mine at the first given index to the second, which has no
+  // mine
+  void moveMine(int from, int to) {
+    this.setMine(from, false);
+    this.setMine(to, true);
+  }
+
+  // EFFECT: flags or unflags the tile at the given index
+  void setFlagged(int index, boolean flagged) {
+    if (this.isFlagged(index) != flagged) {
+      this.flagged += flagged ? 1 : -1;
+      this.set(index, FLAGGED, flagged);
+    }
+  }
+
+  // EFFECT: uncovers or covers the tile at the given index
+  void setVisible(int index, boolean visible) {
+    if (this.isVisible(index) != visible) {
+      this.hidden += visible ? -1 : 1;
+      this.set(index, VISIBLE, visible);
+    }
+  }
+
+  // EFFECT: uncovers the tile at the given index, which is covered
+  void uncover(int index) {
+    byte[] chunk = this.writable(index);
+    chunk[index & CHUNK_MASK] = (byte) (chunk[index & CHUNK_MASK] | VISIBLE);
+    this.hidden--;
+    this.touch(index);
+  }
+
+  // Returns the number of uncovered tiles
+  int revealedCount() {
+    return this.size() - this.hidden;
+  }
+
+  // Returns how the tile at the given index appears to the player
+  int appearance(int index) {
+    int tile = this.tile(index);
+    if ((tile & VISIBLE) == 0) {
+      return (tile & FLAGGED) == 0 ? SHOW_COVERED : SHOW_FLAG;
+    }
+    else if ((tile & MINE) != 0) {
+      return SHOW_MINE;
+    }
+    else {
+      return tile & COUNT;
+    }
+  }
+
+  // Returns the number of mines adjacent to the tile at the given index
+  int countMines(int index) {
+    return this.tile(index) & COUNT;
+  }
+
+  // EFFECT: takes every mine off this board and covers and unflags every tile,
+  // writing over the chunks that are its own rather than allocating new ones
+  void reset() {
+    for (int c = 0; c < this.chunks.length; c++) {
+      Arrays.fill(this.writable(c << CHUNK_BITS), (byte) 0);
+    }
+    this.hidden = this.size;
+    this.flagged = 0;
+    this.stamp++;
+    Arrays.fill(this.rowStamps, this.stamp);
+  }
+
+  // Returns the (emptied) list that reveal reports the tiles it changed in
+  TileList noChanges() {
+    if (this.revealed == null) {
+      this.revealed = new TileList(this.size());
+    }
+    this.revealed.clear();
+    return this.revealed;
+  }
+
+  // Returns a copy of this board, which changes independently of it -- no tiles
+  // are copied until one of the two boards changes them
+  Board copy() {
+    return new Board(this);
+  }
+
+  // EFFECT: sets every tile of this board to that of the given copy of it,
+  // stamping only the rows of the chunks that differ
+  void restore(Board other) {
+    if (other.size != this.size) {
+      throw new IllegalArgumentException("Cannot restore a board of a different size");
+    }
+    for (int c = 0; c < this.chunks.length; c++) {
+      if (this.chunks[c] != other.chunks[c]) {
+        int first = c << CHUNK_BITS;
+        int last = first + this.chunks[c].length - 1;
+        for (int r = this.row(first); r <= this.row(last); r++) {
+          this.touch(this.index(r, 0));
+        }
+      }
+    }
+    this.chunks = other.chunks;
+    this.shared = true;
+    other.shared = true;
+    this.hidden = other.hidden;
+    this.flagged = other.flagged;
+  }
+
+  // EFFECT: uncovers the tile at the given index and, if it has no adjacent
+  // mines, floods outward through every connected tile without adjacent mines,
+  // uncovering the border of that region as well -- flagged tiles are left
+  // covered
+  // Returns the tiles that were uncovered, which stay valid until the next reveal
+  TileList reveal(int index) {
+    TileList queue = this.noChanges();
+    if (this.has(index, VISIBLE | FLAGGED)) {
+      return queue;
+    }
+    // the VISIBLE bit marks a tile as visited, so each tile is queued at most once
+    this.setVisible(index, true);
+    queue.add(index);
+    if (this.isMine(index)) {
+      return queue;
+    }
+    for (int head = 0; head < queue.size; head++) {
+      int tile = queue.items[head];
+      if ((this.tile(tile) & COUNT) == 0) {
+        int degree = this.topology.neighbors(tile, this.neighbors);
+        for (int k = 0; k < degree; k++) {
+          int n = this.neighbors[k];
+          if (!this.has(n, VISIBLE | FLAGGED)) {
+            this.uncover(n);
+            queue.add(n);
+          }
+        }
+      }
+    }
+    return queue;
+  }
+}
+
+// Represents a list of tile indices backed by a fixed-size array, reused
+// between operations so that they allocate nothing
+class TileList {
+  int[] items;
+  int size;
+
+  TileList(int capacity) {
+    this.items = new int[capacity];
+    this.size = 0;
+  }
+
+  // Returns the tile at the given position of this list
+  int get(int k) {
+    return this.items[k];
+  }
+
+  // EFFECT: appends the given tile to this list
+  void add(int tile) {
+    this.items[this.size] = tile;
+    this.size++;
+  }
+
+  // EFFECT: empties this list
+  void clear() {
+    this.size = 0;
+  }
+}
+
+class ExamplesBoard {
+  Board board;
+
+  // 3x2 board:
+  // M . .
+  // . . M
+  void reset() {
+    this.board = new Board(3, 2);
+    this.board.setMine(0, true);
+    this.board.setMine(5, true);
+  }
+
+  // tests index, row and col in the class Board
+  void testIndexing(Tester t) {
+    this.reset();
+    t.checkExpect(this.board.size(), 6);
+    t.checkExpect(this.board.index(0, 0), 0);
+    t.checkExpect(this.board.index(1, 2), 5);
+    t.checkExpect(this.board.row(4), 1);
+    t.checkExpect(this.board.col(4), 1);
+  }
+
+  // tests that the flags of a tile are packed independently of each other
+  void testTileFlags(Tester t) {
+    this.reset();
+    t.checkExpect(this.board.isMine(0), true);
+    t.checkExpect(this.board.isMine(1), false);
+    this.board.setFlagged(0, true);
+    this.board.setVisible(1, true);
+    t.checkExpect(this.board.isMine(0), true);
+    t.checkExpect(this.board.isFlagged(0), true);
+    t.checkExpect(this.board.isVisible(0), false);
+    t.checkExpect(this.board.isVisible(1), true);
+    this.board.setFlagged(0, false);
+    t.checkExpect(this.board.isFlagged(0), false);
+    t.checkExpect(this.board.isMine(0), true);
+  }
+
+  // tests countMines in the class Board
+  void testCountMines(Tester t) {
+    this.reset();
+    t.checkExpect(this.board.countMines(0), 0);
+    t.checkExpect(this.board.countMines(1), 2);
+    t.checkExpect(this.board.countMines(2), 1);
+    t.checkExpect(this.board.countMines(3), 1);
+    t.checkExpect(this.board.countMines(4), 2);
+    t.checkExpect(this.board.countMines(5), 0);
+  }
+
+  // Checks that the counters of the given board match a full recount of its
+  // tiles
+  boolean countersMatch(Board b) {
+    int hidden = 0;
+    int flagged = 0;
+    for (int i = 0; i < b.size(); i++) {
+      if (!b.isVisible(i)) {
+        hidden++;
+      }
+      if (b.isFlagged(i)) {
+        flagged++;
+      }
+    }
+    return b.hidden == hidden && b.flagged == flagged
+        && b.revealedCount() == b.size() - hidden;
+  }
+
+  // tests that the counters of the class Board follow every change to a tile
+  void testCounters(Tester t) {
+    this.reset();
+    t.checkExpect(this.board.hidden, 6);
+    t.checkExpect(this.board.flagged, 0);
+    this.board.setFlagged(2, true);
+    this.board.setFlagged(2, true);
+    t.checkExpect(this.board.flagged, 1);
+    this.board.reveal(1);
+    t.checkExpect(this.board.revealedCount(), 1);
+    this.board.setFlagged(2, false);
+    this.board.setVisible(3, true);
+    this.board.setVisible(3, true);
+    t.checkExpect(this.countersMatch(this.board), true);
+    t.checkExpect(this.board.hidden, 4);
+    t.checkExpect(this.board.flagged, 0);
+  }
+
+  // tests the counters of the class Board against a full recount after many
+  // random flags and reveals
+  void testCountersRecount(Tester t) {
+    Random rand = new Random(7);
+    Board b = new Board(20, 15);
+    for (int i = 0; i < 40; i++) {
+      b.setMine(rand.nextInt(b.size()), true);
+    }
+    boolean match = true;
+    for (int i = 0; i < 200; i++) {
+      int tile = rand.nextInt(b.size());
+      if (rand.nextInt(3) == 0) {
+        b.setFlagged(tile, !b.isFlagged(tile));
+      }
+      else if (!b.isMine(tile)) {
+        b.reveal(tile);
+      }
+      match = match && this.countersMatch(b);
+    }
+    t.checkExpect(match, true);
+  }
+
+  // tests that the counts of the class Board follow mines being placed, removed
+  // and moved
+  void testCountTable(Tester t) {
+    this.reset();
+    this.board.setMine(0, true);
+    t.checkExpect(this.board.countMines(1), 2);
+    this.board.setMine(5, false);
+    t.checkExpect(this.board.countMines(1), 1);
+    t.checkExpect(this.board.countMines(4), 1);
+    t.checkExpect(this.board.countMines(2), 0);
+    this.board.moveMine(0, 2);
+    t.checkExpect(this.board.isMine(0), false);
+    t.checkExpect(this.board.isMine(2), true);
+    t.checkExpect(this.board.countMines(0), 0);
+    t.checkExpect(this.board.countMines(1), 1);
+    t.checkExpect(this.board.countMines(3), 0);
+    t.checkExpect(this.board.countMines(5), 1);
+    // the counts sit beside the flags without disturbing them
+    this.board.setFlagged(1, true);
+    this.board.setVisible(1, true);
+    t.checkExpect(this.board.countMines(1), 1);
+    this.board.setMine(4, true);
+    t.checkExpect(this.board.countMines(1), 2);
+    t.checkExpect(this.board.isFlagged(1), true);
+    t.checkExpect(this.board.isVisible(1), true);
+  }
+
+  // tests appearance in the class Board
+  void testAppearance(Tester t) {
+    this.reset();
+    t.checkExpect(this.board.appearance(1), Board.SHOW_COVERED);
+    this.board.setFlagged(1, true);
+    t.checkExpect(this.board.appearance(1), Board.SHOW_FLAG);
+    this.board.setFlagged(1, false);
+    this.board.setVisible(1, true);
+    t.checkExpect(this.board.appearance(1), 2);
+    this.board.setVisible(0, true);
+    t.checkExpect(this.board.appearance(0), Board.SHOW_MINE);
+    this.board.setVisible(3, true);
+    this.board.setMine(0, false);
+    t.checkExpect(this.board.appearance(3), 0);
+  }
+
+  // tests that changing a tile stamps its row
+  void testRowStamps(Tester t) {
+    this.reset();
+    int[] before = this.board.rowStamps.clone();
+    this.board.setFlagged(1, true);
+    t.checkExpect(this.board.rowStamps[0] != before[0], true);
+    t.checkExpect(this.board.rowStamps[1], before[1]);
+    before = this.board.rowStamps.clone();
+    // moving the mine away from tile 0 changes the counts of tiles on both rows
+    this.board.setMine(0, false);
+    t.checkExpect(this.board.rowStamps[0] != before[0], true);
+    t.checkExpect(this.board.rowStamps[1] != before[1], true);
+  }
+
+  // tests copy in the class Board
+  void testCopy(Tester t) {
+    this.reset();
+    this.board.setFlagged(1, true);
+    Board copy = this.board.copy();
+    t.checkExpect(copy.tiles(), this.board.tiles());
+    t.checkExpect(copy.flagged, 1);
+    copy.reveal(2);
+    t.checkExpect(this.board.isVisible(2), false);
+    t.checkExpect(this.board.hidden, 6);
+    t.checkExpect(copy.hidden, 5);
+    // changing the original does not change the copy either
+    this.board.setFlagged(4, true);
+    t.checkExpect(copy.isFlagged(4), false);
+  }
+
+  // tests that a copy shares every chunk until it is written to, and then copies
+  // only the chunk it writes
+  void testCopyOnWrite(Tester t) {
+    Board b = new Board(100, 50);
+    b.setMine(0, true);
+    Board copy = b.copy();
+    t.checkExpect(copy.chunks == b.chunks, true);
+    t.checkExpect(copy.chunks.length, 5);
+    copy.setFlagged(b.index(20, 50), true);
+    int changed = 0;
+    for (int c = 0; c < b.chunks.length; c++) {
+      if (copy.chunks[c] != b.chunks[c]) {
+        changed++;
+      }
+    }
+    t.checkExpect(changed, 1);
+    t.checkExpect(b.isFlagged(b.index(20, 50)), false);
+    t.checkExpect(copy.isFlagged(b.index(20, 50)), true);
+    // a copy of a copy stays independent of both
+    Board third = copy.copy();
+    b.setMine(b.size() - 1, true);
+    copy.reveal(b.size() - 1);
+    t.checkExpect(third.isMine(b.size() - 1), false);
+    t.checkExpect(third.isVisible(b.size() - 1), false);
+    t.checkExpect(copy.isMine(b.size() - 1), false);
+    t.checkExpect(third.isFlagged(b.index(20, 50)), true);
+  }
+
+  // tests restore in the class Board
+  void testRestore(Tester t) {
+    Board b = new Board(100, 50);
+    b.setMine(0, true);
+    Board before = b.copy();
+    b.reveal(b.index(49, 99));
+    t.checkExpect(b.hidden < 5000, true);
+    int[] stamps = b.rowStamps.clone();
+    b.restore(before);
+    t.checkExpect(b.tiles(), before.tiles());
+    t.checkExpect(b.hidden, 5000);
+    t.checkExpect(this.countersMatch(b), true);
+    // every chunk the reveal wrote to is redrawn
+    for (int r = 0; r < b.height; r++) {
+      t.checkExpect(b.rowStamps[r] != stamps[r], true);
+    }
+    // the restored board and the copy still change independently
+    b.setFlagged(1, true);
+    t.checkExpect(before.isFlagged(1), false);
+    t.checkException(new IllegalArgumentException("Cannot restore a board of a different size"),
+        b, "restore", new Board(3, 3));
+  }
+
+  // tests reveal in the class Board on a tile next to a mine
+  void testRevealNumber(Tester t) {
+    this.reset();
+    TileList changed = this.board.reveal(1);
+    t.checkExpect(changed.size, 1);
+    t.checkExpect(changed.get(0), 1);
+    t.checkExpect(this.board.isVisible(1), true);
+    t.checkExpect(this.board.isVisible(2), false);
+    // revealing it again changes nothing
+    t.checkExpect(this.board.reveal(1).size, 0);
+  }
+
+  // tests reveal in the class Board on a mine and on a flagged tile
+  void testRevealMineAndFlag(Tester t) {
+    this.reset();
+    this.board.setFlagged(2, true);
+    t.checkExpect(this.board.reveal(2).size, 0);
+    t.checkExpect(this.board.isVisible(2), false);
+    TileList changed = this.board.reveal(0);
+    t.checkExpect(changed.size, 1);
+    t.checkExpect(this.board.isVisible(0), true);
+    t.checkExpect(this.board.isVisible(3), false);
+  }
+
+  // tests that reveal floods a region without mines, stopping at its border
+  // and at flags
+  void testRevealFlood(Tester t) {
+    // 5x4 board:
+    // . . . . .
+    // . . . F .
+    // . . . 1 1
+    // . . . 1 M
+    Board b = new Board(5, 4);
+    b.setMine(19, true);
+    b.setFlagged(8, true);
+    TileList changed = b.reveal(0);
+    t.checkExpect(changed.size, 18);
+    for (int i = 0; i < b.size(); i++) {
+      t.checkExpect(b.isVisible(i), i != 8 && i != 19);
+    }
+  }
+
+  // tests that reveal opens a large empty board in one pass without recursion
+  void testRevealLarge(Tester t) {
+    Board b = new Board(1000, 1000);
+    t.checkExpect(b.reveal(b.index(500, 500)).size, 1000000);
+    t.checkExpect(b.isVisible(0), true);
+    t.checkExpect(b.isVisible(b.size() - 1), true);
+  }
+
+  // tests that the counts and floods of boards on other topologies follow the
+  // neighbors of those topologies
+  void testTopologies(Tester t) {
+    // the layers of a layered board are drawn one below the other
+    ITopology[] topologies = new ITopology[] { new HexTopology(12, 9),
+        new TorusTopology(12, 9), new LayeredTopology(12, 3, 3),
+        new NeighborGraph(new HexTopology(12, 9)) };
+    int[] out = new int[15];
+    for (ITopology topology : topologies) {
+      Board b = new Board(12, 9, topology);
+      new MinePlacer(new Random(3)).place(b, 20);
+      boolean counted = true;
+      for (int i = 0; i < b.size(); i++) {
+        int mines = 0;
+        int degree = topology.neighbors(i, out);
+        for (int k = 0; k < degree; k++) {
+          mines += b.isMine(out[k]) ? 1 : 0;
+        }
+        counted = counted && b.countMines(i) == mines;
+      }
+      t.checkExpect(counted, true);
+    }
+    // a flood on a torus wraps around its edges
+    Board torus = new Board(5, 4, new TorusTopology(5, 4));
+    torus.setMine(torus.index(2, 2), true);
+    t.checkExpect(torus.reveal(0).size, 19);
+    t.checkExpect(torus.isVisible(torus.index(3, 4)), true);
+    t.checkExpect(this.countersMatch(torus), true);
+  }
+}
@@ -0,0 +1,423 @@
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tester.Tester;
+
+// Represents a board with its mines placed that the solver clears, without a
+// single guess, once the start tile is revealed -- unless it is a fallback from
+// NoGuessGenerator.fallback, whose start tile is only sure to be safe and open
+class NoGuessBoard {
+  Board board;
+  int mineCount;
+  int start;
+
+  NoGuessBoard(Board board, int mineCount, int start) {
+    this.board = board;
+    this.mineCount = mineCount;
+    this.start = start;
+  }
+
+  // Returns a game on this board with the start tile already revealed
+  GameEngine play() {
+    GameEngine game = new GameEngine(this.board, this.mineCount);
+    game.reveal(this.start);
+    return game;
+  }
+}
+
+// Produces boards of one size and mine count that can be cleared without
+// guessing, by placing mines away from a random start tile and keeping only the
+// boards the solver clears from there
+class NoGuessGenerator {
+  int width;
+  int height;
+  int mineCount;
+
+  NoGuessGenerator(int width, int height, int mineCount) {
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    // the middle tile has the most neighbors to keep clear, so if the mines fit
+    // around it they fit around any start tile
+    int across = Math.min(width, width / 2 + 2) - Math.max(0, width / 2 - 1);
+    int down = Math.min(height, height / 2 + 2) - Math.max(0, height / 2 - 1);
+    int free = width * height - across * down;
+    if (mineCount < 0 || mineCount > free) {
+      throw new IllegalArgumentException(
+          "Cannot place " + mineCount + " mines on " + free + " free tiles");
+    }
+  }
+
+  // Returns a new board that can be cleared without guessing, or null if the
+  // board tried this time needed a guess
+  NoGuessBoard attempt(Random rand) {
+    Board board = new Board(this.width, this.height);
+    int start = rand.nextInt(board.size());
+    new MinePlacer(rand).place(board, this.mineCount, start);
+    GameEngine game = new GameEngine(board.copy(), this.mineCount);
+    Solver solver = new Solver(game.board);
+    solver.update(game.reveal(start));
+    int tile = solver.nextSafe();
+    while (tile >= 0 && game.status() == GameStatus.PLAYING) {
+      solver.update(game.reveal(tile));
+      tile = solver.nextSafe();
+    }
+    if (game.status() == GameStatus.WON) {
+      return new NoGuessBoard(board, this.mineCount, start);
+    }
+    return null;
+  }
+
+  // Returns a new board with its mines kept away from a random start tile, which
+  // may need guessing once the opening around the start is cleared
+  NoGuessBoard fallback(Random rand) {
+    Board board = new Board(this.width, this.height);
+    int start = rand.nextInt(board.size());
+    new MinePlacer(rand).place(board, this.mineCount, start);
+    return new NoGuessBoard(board, this.mineCount, start);
+  }
+}
+
+// Represents the boards kept ready for one size and mine count, and how many
+// boards it took to find them
+class PoolConfig {
+  // the most boards generate tries before giving up, so that a caller waiting
+  // for a board, or a worker checking it is still needed, is not held up for
+  // long by a size and mine count that almost never clears without a guess
+  static final int MAX_ATTEMPTS = 1000;
+
+  String key;
+  NoGuessGenerator generator;
+  ArrayBlockingQueue<NoGuessBoard> ready;
+  volatile long lastUsed;
+  volatile boolean retired;
+  AtomicLong attempts;
+  AtomicLong accepted;
+  // counted down by each of the workers filling this configuration as it stops
+  CountDownLatch stopped;
+
+  PoolConfig(String key, NoGuessGenerator generator, int capacity, int workers) {
+    this.key = key;
+    this.generator = generator;
+    this.ready = new ArrayBlockingQueue<NoGuessBoard>(capacity);
+    this.lastUsed = System.nanoTime();
+    this.attempts = new AtomicLong();
+    this.accepted = new AtomicLong();
+    this.stopped = new CountDownLatch(workers);
+  }
+
+  // Returns a new board that can be cleared without guessing, or null if none of
+  // MAX_ATTEMPTS boards could be or this configuration is retired first
+  NoGuessBoard generate(Random rand) {
+    for (int k = 0; k < MAX_ATTEMPTS && !this.retired; k++) {
+      this.attempts.incrementAndGet();
+      NoGuessBoard board = this.generator.attempt(rand);
+      if (board != null) {
+        this.accepted.incrementAndGet();
+        return board;
+      }
+    }
+    return null;
+  }
+
+  // Returns the average number of boards tried for each one kept
+  double attemptsPerBoard() {
+    long kept = this.accepted.get();
+    return kept == 0 ? 0 : (double) this.attempts.get() / kept;
+  }
+}
+
+// Keeps boards that can be cleared without guessing ready for each size and mine
+// count in use, generating them on background threads so that a new game
+// starts without waiting
+// Each configuration keeps at most capacity boards. A configuration that has not
+// been asked for a board within the idle time is dropped, as is the least
+// recently used one when more than maxConfigs are in use
+class BoardPool {
+  // how often a worker waiting for room wakes up to check it is still needed
+  static final long WAIT_MILLIS = 50;
+
+  int workersPerConfig;
+  int capacity;
+  int maxConfigs;
+  long idleNanos;
+  ExecutorService workers;
+  Map<String, PoolConfig> configs;
+
+  BoardPool() {
+    this(1, 8, 4, 60000);
+  }
+
+  BoardPool(int workersPerConfig, int capacity, int maxConfigs, long idleMillis) {
+    if (workersPerConfig < 1 || capacity < 1 || maxConfigs < 1) {
+      throw new IllegalArgumentException("A board pool needs at least one worker, board and"
+          + " configuration");
+    }
+    this.workersPerConfig = workersPerConfig;
+    this.capacity = capacity;
+    this.maxConfigs = maxConfigs;
+    this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    this.workers = Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task, "board-pool");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.configs = new ConcurrentHashMap<String, PoolConfig>();
+  }
+
+  // Returns a board of the given size and mine count that can be cleared without
+  // guessing -- one generated ahead of time if there is one, otherwise one
+  // generated now -- or, if none turns up within PoolConfig.MAX_ATTEMPTS
+  // boards, one with only its start tile sure to be safe
+  NoGuessBoard take(int width, int height, int mineCount) {
+    PoolConfig config = this.configFor(width, height, mineCount);
+    config.lastUsed = System.nanoTime();
+    NoGuessBoard board = config.ready.poll();
+    if (board == null) {
+      board = config.generate(ThreadLocalRandom.current());
+    }
+    if (board == null) {
+      return config.generator.fallback(ThreadLocalRandom.current());
+    }
+    return board;
+  }
+
+  // Returns the configuration for the given size and mine count, starting its
+  // workers if it is new
+  PoolConfig configFor(int width, int height, int mineCount) {
+    String key = width + "x" + height + "/" + mineCount;
+    PoolConfig config = this.configs.get(key);
+    if (config != null) {
+      return config;
+    }
+    PoolConfig created = new PoolConfig(key,
+        new NoGuessGenerator(width, height, mineCount), this.capacity, this.workersPerConfig);
+    config = this.configs.putIfAbsent(key, created);
+    if (config != null) {
+      return config;
+    }
+    for (int k = 0; k < this.workersPerConfig; k++) {
+      this.workers.execute(() -> this.fill(created));
+    }
+    while (this.configs.size() > this.maxConfigs) {
+      this.evict(this.leastRecentlyUsed(created));
+    }
+    return created;
+  }
+
+  // Returns the configuration asked for least recently, other than the given one
+  PoolConfig leastRecentlyUsed(PoolConfig keep) {
+    PoolConfig oldest = null;
+    for (PoolConfig config : this.configs.values()) {
+      if (config != keep && (oldest == null || config.lastUsed - oldest.lastUsed < 0)) {
+        oldest = config;
+      }
+    }
+    return oldest;
+  }
+
+  // EFFECT: keeps the given configuration's boards topped up until it is
+  // retired or has been idle too long, which is checked at least every
+  // PoolConfig.MAX_ATTEMPTS boards tried
+  void fill(PoolConfig config) {
+    Random rand = ThreadLocalRandom.current();
+    try {
+      while (!this.idle(config)) {
+        NoGuessBoard board = config.generate(rand);
+        while (board != null && !config.ready.offer(board, WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+          if (this.idle(config)) {
+            return;
+          }
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      // the pool is closing
+    }
+    finally {
+      config.stopped.countDown();
+    }
+  }
+
+  // EFFECT: drops the given configuration if nobody has asked it for a board
+  // within the idle time
+  // Returns whether it is dropped
+  boolean idle(PoolConfig config) {
+    if (!config.retired && System.nanoTime() - config.lastUsed > this.idleNanos) {
+      this.evict(config);
+    }
+    return config.retired;
+  }
+
+  // EFFECT: stops generating boards for the given configuration and forgets it
+  void evict(PoolConfig config) {
+    if (config != null) {
+      config.retired = true;
+      this.configs.remove(config.key, config);
+    }
+  }
+
+  // Returns the average number of boards tried for each one kept, over the
+  // configurations in use
+  double attemptsPerBoard() {
+    long attempts = 0;
+    long accepted = 0;
+    for (PoolConfig config : this.configs.values()) {
+      attempts += config.attempts.get();
+      accepted += config.accepted.get();
+    }
+    return accepted == 0 ? 0 : (double) attempts / accepted;
+  }
+
+  public String toString() {
+    StringBuilder out = new StringBuilder();
+    for (PoolConfig config : this.configs.values()) {
+      out.append(String.format("%s: %d ready, %d kept of %d tried (%.1f per board)%n",
+          config.key, config.ready.size(), config.accepted.get(), config.attempts.get(),
+          config.attemptsPerBoard()));
+    }
+    return out.toString();
+  }
+
+  // EFFECT: stops every worker
+  void close() {
+    for (PoolConfig config : this.configs.values()) {
+      this.evict(config);
+    }
+    this.workers.shutdownNow();
+  }
+}
+
+class ExamplesBoardPool {
+  // Checks if the solver clears the given board from its start tile
+  boolean clearsWithoutGuessing(NoGuessBoard board) {
+    GameEngine game = new GameEngine(board.board.copy(), board.mineCount);
+    Solver solver = new Solver(game.board);
+    solver.update(game.reveal(board.start));
+    for (int tile = solver.nextSafe(); tile >= 0; tile = solver.nextSafe()) {
+      solver.update(game.reveal(tile));
+    }
+    return game.status() == GameStatus.WON;
+  }
+
+  // Returns the number of mines on the given board
+  int mines(Board board) {
+    int count = 0;
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isMine(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // tests attempt in the class NoGuessGenerator
+  void testGenerator(Tester t) {
+    NoGuessGenerator generator = new NoGuessGenerator(9, 9, 10);
+    Random rand = new Random(8);
+    NoGuessBoard board = null;
+    int attempts = 0;
+    while (board == null) {
+      board = generator.attempt(rand);
+      attempts++;
+    }
+    t.checkExpect(attempts < 1000, true);
+    t.checkExpect(this.mines(board.board), 10);
+    t.checkExpect(board.board.isMine(board.start), false);
+    t.checkExpect(board.board.countMines(board.start), 0);
+    t.checkExpect(board.board.revealedCount(), 0);
+    t.checkExpect(this.clearsWithoutGuessing(board), true);
+  }
+
+  // tests take in the class BoardPool
+  void testTake(Tester t) {
+    BoardPool pool = new BoardPool(2, 3, 2, 60000);
+    for (int k = 0; k < 5; k++) {
+      NoGuessBoard board = pool.take(16, 16, 40);
+      t.checkExpect(this.mines(board.board), 40);
+      t.checkExpect(this.clearsWithoutGuessing(board), true);
+    }
+    PoolConfig config = pool.configs.get("16x16/40");
+    t.checkExpect(config.accepted.get() >= 5, true);
+    t.checkExpect(config.attempts.get() >= config.accepted.get(), true);
+    t.checkExpect(pool.attemptsPerBoard() >= 1, true);
+    t.checkExpect(config.ready.remainingCapacity() + config.ready.size(), 3);
+    pool.close();
+    t.checkExpect(config.retired, true);
+  }
+
+  // tests that the least recently used configuration is dropped
+  void testEvictLeastRecentlyUsed(Tester t) {
+    BoardPool pool = new BoardPool(1, 2, 2, 60000);
+    pool.take(5, 5, 3);
+    pool.take(6, 6, 4);
+    pool.take(5, 5, 3);
+    PoolConfig middle = pool.configs.get("6x6/4");
+    pool.take(7, 7, 5);
+    t.checkExpect(pool.configs.size(), 2);
+    t.checkExpect(pool.configs.containsKey("6x6/4"), false);
+    t.checkExpect(middle.retired, true);
+    pool.close();
+  }
+
+  // tests that a configuration nobody asks for is dropped
+  void testEvictIdle(Tester t) throws InterruptedException {
+    BoardPool pool = new BoardPool(1, 1, 4, 20);
+    PoolConfig config = pool.configFor(5, 5, 3);
+    // the bound only keeps a broken pool from hanging the tests
+    t.checkExpect(config.stopped.await(1, TimeUnit.MINUTES), true);
+    t.checkExpect(config.retired, true);
+    t.checkExpect(pool.configs.isEmpty(), true);
+    pool.close();
+  }
+
+  // tests that a size and mine count that almost never clears without a guess
+  // still gives a board with a safe start, and that its worker gives up once it
+  // is idle
+  void testInfeasible(Tester t) throws InterruptedException {
+    BoardPool pool = new BoardPool(1, 2, 4, 100);
+    PoolConfig config = pool.configFor(30, 16, 300);
+    NoGuessBoard board = pool.take(30, 16, 300);
+    t.checkExpect(this.mines(board.board), 300);
+    t.checkExpect(board.board.isMine(board.start), false);
+    t.checkExpect(board.board.countMines(board.start), 0);
+    // the worker gives up once the configuration has been idle, rather than
+    // trying forever -- the bound only keeps a broken pool from hanging the tests
+    t.checkExpect(config.stopped.await(1, TimeUnit.MINUTES), true);
+    t.checkExpect(config.retired, true);
+    t.checkExpect(pool.configs.isEmpty(), true);
+    pool.close();
+  }
+
+  // tests that impossible configurations are rejected before any worker starts
+  void testInvalid(Tester t) {
+    BoardPool pool = new BoardPool();
+    // the start tile and its neighbors are kept clear
+    t.checkException(new IllegalArgumentException("Cannot place 17 mines on 16 free tiles"),
+        pool, "take", 5, 5, 17);
+    t.checkExpect(pool.configs.isEmpty(), true);
+    pool.close();
+    t.checkConstructorException(
+        new IllegalArgumentException("A board pool needs at least one worker, board and"
+            + " configuration"),
+        "BoardPool", 0, 1, 1, 1L);
+  }
+
+  // tests that a game from the pool starts with its start tile open
+  void testMinesweeper(Tester t) {
+    BoardPool pool = new BoardPool();
+    Minesweeper world = new Minesweeper(pool, 9, 9, 10);
+    t.checkExpect(world.board.revealedCount() > 0, true);
+    t.checkExpect(world.game.status() == GameStatus.LOST, false);
+    t.checkExpect(world.mineCount, 10);
+    pool.close();
+  }
+}
@@ -0,0 +1,229 @@
+import java.awt.Color;
+import java.util.Random;
+
+import javalib.worldimages.AboveImage;
+import javalib.worldimages.BesideImage;
+import javalib.worldimages.EmptyImage;
+import javalib.worldimages.OutlineMode;
+import javalib.worldimages.OverlayImage;
+import javalib.worldimages.RectangleImage;
+import javalib.worldimages.WorldImage;
+import tester.Tester;
+
+// Represents a way of drawing the window of a board, one frame at a time
+interface IBoardRenderer {
+  // Returns the image of the window as it is now
+  WorldImage draw();
+}
+
+// Draws the part of a Board inside a Viewport as a balanced tree of BesideImage
+// and AboveImage, keeping the image of each row of the window between frames
+// and rebuilding only the rows whose tiles changed, so a frame costs no more on
+// a large board than on a small one
+class BoardRenderer implements IBoardRenderer {
+  Board board;
+  Viewport view;
+  // the image of each row of the window, and the board's stamp for that row
+  // when it was drawn
+  WorldImage[] rows;
+  int[] drawnStamps;
+  // where the window was when the rows were drawn
+  int drawnLeft;
+  int drawnTop;
+  // the image of the whole window, or null if a row has changed since it was
+  // built
+  WorldImage image;
+
+  // draws the whole board
+  BoardRenderer(Board board) {
+    this(board, new Viewport(board.width, board.height, board.width, board.height));
+  }
+
+  BoardRenderer(Board board, Viewport view) {
+    this.board = board;
+    this.view = view;
+    this.rows = new WorldImage[view.rows];
+    this.drawnStamps = new int[view.rows];
+    for (int i = 0; i < view.rows; i++) {
+      this.drawnStamps[i] = -1;
+    }
+    this.drawnLeft = view.left;
+    this.drawnTop = view.top;
+  }
+
+  // Returns the image of the window as it is now
+  public WorldImage draw() {
+    this.follow();
+    for (int i = 0; i < this.view.rows; i++) {
+      int row = this.view.top + i;
+      if (this.drawnStamps[i] != this.board.rowStamps[row]) {
+        this.drawnStamps[i] = this.board.rowStamps[row];
+        int start = this.board.index(row, this.view.left);
+        this.rows[i] = this.drawRow(start, start + this.view.columns);
+        this.image = null;
+      }
+    }
+    if (this.image == null) {
+      this.image = this.stackRows(0, this.view.rows);
+    }
+    return this.image;
+  }
+
+  // EFFECT: lines the images of the rows up with the window if it has moved
+  // since they were drawn -- rows that are still on screen after a move up or
+  // down are kept, and a move across redraws them all
+  void follow() {
+    int shift = this.view.top - this.drawnTop;
+    if (this.view.left != this.drawnLeft) {
+      for (int i = 0; i < this.view.rows; i++) {
+        this.drawnStamps[i] = -1;
+      }
+    }
+    else if (shift != 0) {
+      WorldImage[] rows = new WorldImage[this.view.rows];
+      int[] stamps = new int[this.view.rows];
+      for (int i = 0; i < this.view.rows; i++) {
+        int from = i + shift;
+        boolean kept = from >= 0 && from < this.view.rows;
+        rows[i] = kept ? this.rows[from] : null;
+        stamps[i] = kept ? this.drawnStamps[from] : -1;
+      }
+      this.rows = rows;
+      this.drawnStamps = stamps;
+    }
+    if (this.view.left != this.drawnLeft || shift != 0) {
+      this.drawnLeft = this.view.left;
+      this.drawnTop = this.view.top;
+      this.image = null;
+    }
+  }
+
+  // Returns the tiles from the first given index up to (but not including) the
+  // second, side by side
+  WorldImage drawRow(int from, int to) {
+    if (to - from == 0) {
+      return new EmptyImage();
+    }
+    else if (to - from == 1) {
+      return TileImages.IMAGES[this.board.appearance(from)];
+    }
+    else {
+      int mid = (from + to) / 2;
+      return new BesideImage(this.drawRow(from, mid), this.drawRow(mid, to));
+    }
+  }
+
+  // Returns the images of the rows from the first given row up to (but not
+  // including) the second, stacked
+  WorldImage stackRows(int from, int to) {
+    if (to - from == 0) {
+      return new EmptyImage();
+    }
+    else if (to - from == 1) {
+      return this.rows[from];
+    }
+    else {
+      int mid = (from + to) / 2;
+      return new AboveImage(this.stackRows(from, mid), this.stackRows(mid, to));
+    }
+  }
+}
+
+class ExamplesBoardRenderer {
+  WorldImage topBox = new OverlayImage(
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.SOLID, Color.GRAY));
+  WorldImage box = new OverlayImage(
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.SOLID,
+          Color.LIGHT_GRAY));
+
+  // tests that draw lays the tiles out in a balanced tree
+  void testDrawBalanced(Tester t) {
+    Board board = new Board(3, 2);
+    board.setVisible(1, true);
+    BoardRenderer renderer = new BoardRenderer(board);
+    t.checkExpect(renderer.draw(),
+        new AboveImage(new BesideImage(this.topBox, new BesideImage(this.box, this.topBox)),
+            new BesideImage(this.topBox, new BesideImage(this.topBox, this.topBox))));
+    // rows are split in half the same way
+    BoardRenderer tall = new BoardRenderer(new Board(1, 4));
+    t.checkExpect(tall.draw(), new AboveImage(new AboveImage(this.topBox, this.topBox),
+        new AboveImage(this.topBox, this.topBox)));
+  }
+
+  // tests that draw rebuilds only the rows that changed
+  void testDrawDirtyRows(Tester t) {
+    Board board = new Board(4, 3);
+    BoardRenderer renderer = new BoardRenderer(board);
+    WorldImage first = renderer.draw();
+    WorldImage row0 = renderer.rows[0];
+    WorldImage row1 = renderer.rows[1];
+    // nothing changed, so the whole image is reused
+    t.checkExpect(renderer.draw() == first, true);
+    board.setFlagged(5, true);
+    WorldImage second = renderer.draw();
+    t.checkExpect(second == first, false);
+    t.checkExpect(renderer.rows[0] == row0, true);
+    t.checkExpect(renderer.rows[1] == row1, false);
+    t.checkExpect(renderer.rows[1],
+        new BesideImage(new BesideImage(this.topBox, TileImages.IMAGES[Board.SHOW_FLAG]),
+            new BesideImage(this.topBox, this.topBox)));
+  }
+
+  // tests that draw keeps up with a flood that changes many rows at once
+  void testDrawAfterFlood(Tester t) {
+    Board board = new Board(20, 20);
+    new MinePlacer(new Random(3)).place(board, 30);
+    BoardRenderer renderer = new BoardRenderer(board);
+    renderer.draw();
+    for (int i = 0; i < board.size(); i++) {
+      if (!board.isMine(i)) {
+        board.reveal(i);
+      }
+    }
+    t.checkExpect(renderer.draw(), new BoardRenderer(board).draw());
+  }
+
+  // tests that draw covers only the tiles inside the viewport
+  void testDrawViewport(Tester t) {
+    Board board = new Board(100, 100);
+    board.setVisible(board.index(11, 22), true);
+    Viewport view = new Viewport(3, 2, 100, 100);
+    view.pan(21, 10);
+    BoardRenderer renderer = new BoardRenderer(board, view);
+    t.checkExpect(renderer.draw(),
+        new AboveImage(new BesideImage(this.topBox, new BesideImage(this.topBox, this.topBox)),
+            new BesideImage(this.topBox, new BesideImage(this.box, this.topBox))));
+  }
+
+  // tests that draw keeps the rows still on screen when the viewport moves up or
+  // down, and matches a fresh drawing wherever it moves
+  void testDrawPanning(Tester t) {
+    Board board = new Board(60, 60);
+    new MinePlacer(new Random(4)).place(board, 300);
+    for (int i = 0; i < board.size(); i += 7) {
+      if (!board.isMine(i)) {
+        board.reveal(i);
+      }
+    }
+    Viewport view = new Viewport(10, 8, 60, 60);
+    BoardRenderer renderer = new BoardRenderer(board, view);
+    renderer.draw();
+    WorldImage row3 = renderer.rows[3];
+    view.onKey("down");
+    renderer.draw();
+    t.checkExpect(renderer.rows[2] == row3, true);
+    view.onKey("up");
+    view.onKey("up");
+    renderer.draw();
+    t.checkExpect(renderer.rows[3] == row3, true);
+    String[] keys = { "right", "down", "down", "left", "down", "right", "right", "up" };
+    for (String key : keys) {
+      view.onKey(key);
+      Viewport fresh = new Viewport(10, 8, 60, 60);
+      fresh.pan(view.left, view.top);
+      t.checkExpect(renderer.draw(), new BoardRenderer(board, fresh).draw());
+    }
+  }
+}
@@ -0,0 +1,309 @@
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+
+// Represents a game for a bot to play as fast as it can: each step takes an
+// action code and a tile index, writes what changed into the bot's own copy of
+// the board, and returns its reward, all without allocating
+// The bot's copy is an array of appearances, one per tile (see
+// Board.appearance), kept up to date a step at a time: reset and observe write
+// every tile, and step writes only the tiles its move changed, so a buffer must
+// not be written by anything else between steps
+class BotEnvironment {
+  static final int REVEAL = MoveLog.REVEAL;
+  static final int FLAG = MoveLog.FLAG;
+  // the reward for uncovering a mine; every other reveal earns one per tile
+  // it uncovers, and a flag earns nothing
+  static final int MINE_REWARD = -1;
+
+  int width;
+  int height;
+  int mineCount;
+  MinePlacer placer;
+  GameEngine game;
+  Board board;
+  // the reward of the last move
+  int reward;
+  // the number of steps and of games played
+  long steps;
+  int games;
+
+  // games of the given size, with mines placed by a MinePlacer drawing from the
+  // given Random
+  BotEnvironment(Random rand, int width, int height, int mineCount) {
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    this.placer = new MinePlacer(rand);
+    this.game = new GameEngine(new Board(width, height), mineCount);
+    this.board = this.game.board;
+    this.placer.place(this.board, mineCount);
+    this.games = 1;
+  }
+
+  // Returns the number of tiles, and so of entries of an observation
+  int size() {
+    return this.board.size();
+  }
+
+  // Returns the status of the game as a number: the ordinal of its GameStatus
+  int status() {
+    return this.game.status().ordinal();
+  }
+
+  // EFFECT: starts a new game on the same board, placing the mines afresh, and
+  // writes every tile of it into the given buffer from the given offset
+  void reset(byte[] observation, int offset) {
+    this.board.reset();
+    this.placer.place(this.board, this.mineCount);
+    this.game.status = GameStatus.PLAYING;
+    this.games++;
+    Arrays.fill(observation, offset, offset + this.size(), (byte) Board.SHOW_COVERED);
+  }
+
+  // EFFECT: writes every tile into the given buffer from the given offset
+  void observe(byte[] observation, int offset) {
+    for (int i = 0; i < this.size(); i++) {
+      observation[offset + i] = (byte) this.board.appearance(i);
+    }
+  }
+
+  // EFFECT: writes every tile into the given buffer from the given index
+  void observe(IntBuffer observation, int offset) {
+    for (int i = 0; i < this.size(); i++) {
+      observation.put(offset + i, this.board.appearance(i));
+    }
+  }
+
+  // EFFECT: carries out the given action on the tile at the given index,
+  // writing the tiles it changed into the given buffer, which holds the last
+  // observation from the given offset -- nothing happens once the game is over
+  // Returns the reward of the move
+  int step(int action, int tile, byte[] observation, int offset) {
+    TileList changed = this.move(action, tile);
+    for (int k = 0; k < changed.size; k++) {
+      int t = changed.items[k];
+      observation[offset + t] = (byte) this.board.appearance(t);
+    }
+    return this.reward;
+  }
+
+  // EFFECT: carries out the given action on the tile at the given index,
+  // writing the tiles it changed into the given buffer, which holds the last
+  // observation from the given index
+  // Returns the reward of the move
+  int step(int action, int tile, IntBuffer observation, int offset) {
+    TileList changed = this.move(action, tile);
+    for (int k = 0; k < changed.size; k++) {
+      int t = changed.items[k];
+      observation.put(offset + t, this.board.appearance(t));
+    }
+    return this.reward;
+  }
+
+  // EFFECT: carries out the given action on the tile at the given index,
+  // setting the reward it earns
+  // Returns the tiles it changed
+  TileList move(int action, int tile) {
+    if (tile < 0 || tile >= this.size()) {
+      throw new IllegalArgumentException("No tile " + tile);
+    }
+    this.steps++;
+    if (action == REVEAL) {
+      TileList changed = this.game.reveal(tile);
+      this.reward = changed.size > 0 && this.board.isMine(tile) ? MINE_REWARD : changed.size;
+      return changed;
+    }
+    else if (action == FLAG) {
+      TileList changed = this.board.noChanges();
+      if (this.game.status() == GameStatus.PLAYING && !this.board.isVisible(tile)) {
+        this.game.toggleFlag(tile);
+        changed.add(tile);
+      }
+      this.reward = 0;
+      return changed;
+    }
+    else {
+      throw new IllegalArgumentException("Unknown action " + action);
+    }
+  }
+}
+
+// Represents many BotEnvironments of one size stepped together, their
+// observations laid end to end in one buffer, so that a bot can step them all
+// with one call
+// A game that ends is started afresh within the same step, so its observation
+// is already that of the next game, while the reward and status of the step are
+// those of the end of the last one
+// The environments share nothing, so threads can step separate ranges of them
+// at once
+class BotBatch {
+  BotEnvironment[] environments;
+  int size;
+
+  // the given number of environments with games of the given size, each with
+  // its own Random drawn from one with the given seed
+  BotBatch(int count, int width, int height, int mineCount, long seed) {
+    Random seeds = new Random(seed);
+    this.environments = new BotEnvironment[count];
+    for (int e = 0; e < count; e++) {
+      this.environments[e] = new BotEnvironment(new Random(seeds.nextLong()), width, height,
+          mineCount);
+    }
+    this.size = width * height;
+  }
+
+  // EFFECT: writes every tile of every environment into the given buffer
+  void observe(byte[] observations) {
+    for (int e = 0; e < this.environments.length; e++) {
+      this.environments[e].observe(observations, e * this.size);
+    }
+  }
+
+  // EFFECT: steps every environment with its own action and tile
+  void stepMany(int[] actions, int[] tiles, byte[] observations, int[] rewards,
+      byte[] statuses) {
+    this.stepMany(0, this.environments.length, actions, tiles, observations, rewards,
+        statuses);
+  }
+
+  // EFFECT: steps environments from to to - 1 with their own action and tile,
+  // writing their changed tiles, rewards and statuses into the given buffers,
+  // and starting afresh those whose games ended
+  void stepMany(int from, int to, int[] actions, int[] tiles, byte[] observations,
+      int[] rewards, byte[] statuses) {
+    for (int e = from; e < to; e++) {
+      BotEnvironment environment = this.environments[e];
+      rewards[e] = environment.step(actions[e], tiles[e], observations, e * this.size);
+      int status = environment.status();
+      statuses[e] = (byte) status;
+      if (status != GameStatus.PLAYING.ordinal()) {
+        environment.reset(observations, e * this.size);
+      }
+    }
+  }
+}
+
+class ExamplesBotEnvironment {
+  // Returns the appearance of every tile of the given board
+  byte[] appearances(Board board) {
+    byte[] seen = new byte[board.size()];
+    for (int i = 0; i < board.size(); i++) {
+      seen[i] = (byte) board.appearance(i);
+    }
+    return seen;
+  }
+
+  // tests that step keeps the observation in line with the board, and rewards
+  // each move
+  void testStep(Tester t) {
+    BotEnvironment env = new BotEnvironment(new Random(3), 9, 9, 10);
+    byte[] obs = new byte[env.size()];
+    env.observe(obs, 0);
+    t.checkExpect(obs[0], (byte) Board.SHOW_COVERED);
+    int mine = 0;
+    while (!env.board.isMine(mine)) {
+      mine++;
+    }
+    t.checkExpect(env.step(BotEnvironment.FLAG, mine, obs, 0), 0);
+    t.checkExpect(obs[mine], (byte) Board.SHOW_FLAG);
+    t.checkExpect(env.step(BotEnvironment.REVEAL, mine, obs, 0), 0);
+    Random rand = new Random(1);
+    boolean rewarded = true;
+    while (env.status() == GameStatus.PLAYING.ordinal()) {
+      int tile = rand.nextInt(env.size());
+      int hidden = env.board.hidden;
+      int reward = env.step(BotEnvironment.REVEAL, tile, obs, 0);
+      rewarded = rewarded && (env.board.isMine(tile) && env.board.isVisible(tile)
+          ? reward == BotEnvironment.MINE_REWARD : reward == hidden - env.board.hidden);
+    }
+    t.checkExpect(rewarded, true);
+    t.checkExpect(obs, this.appearances(env.board));
+    t.checkExpect(env.step(BotEnvironment.REVEAL, 0, obs, 0), 0);
+    t.checkException(new IllegalArgumentException("No tile 81"), env, "move", 0, 81);
+    t.checkException(new IllegalArgumentException("Unknown action 7"), env, "move", 7, 0);
+  }
+
+  // tests that the int buffer gets the same observation as the byte buffer
+  void testIntBuffer(Tester t) {
+    BotEnvironment bytes = new BotEnvironment(new Random(4), 16, 16, 40);
+    BotEnvironment ints = new BotEnvironment(new Random(4), 16, 16, 40);
+    byte[] obs = new byte[256];
+    IntBuffer buffer = IntBuffer.allocate(300);
+    bytes.observe(obs, 0);
+    ints.observe(buffer, 44);
+    Random rand = new Random(5);
+    for (int s = 0; s < 30; s++) {
+      int action = rand.nextInt(4) == 0 ? BotEnvironment.FLAG : BotEnvironment.REVEAL;
+      int tile = rand.nextInt(256);
+      t.checkExpect(ints.step(action, tile, buffer, 44), bytes.step(action, tile, obs, 0));
+    }
+    boolean same = true;
+    for (int i = 0; i < 256; i++) {
+      same = same && buffer.get(44 + i) == obs[i];
+    }
+    t.checkExpect(same, true);
+  }
+
+  // tests that reset starts a fresh game on the same board
+  void testReset(Tester t) {
+    BotEnvironment env = new BotEnvironment(new Random(3), 9, 9, 10);
+    byte[] obs = new byte[env.size()];
+    byte[][] chunks = env.board.chunks;
+    env.step(BotEnvironment.REVEAL, 40, obs, 0);
+    env.step(BotEnvironment.FLAG, 0, obs, 0);
+    env.reset(obs, 0);
+    t.checkExpect(env.board.chunks == chunks, true);
+    t.checkExpect(env.board.hidden, 81);
+    t.checkExpect(env.board.flagged, 0);
+    t.checkExpect(env.status(), GameStatus.PLAYING.ordinal());
+    t.checkExpect(new ExamplesMinePlacer().mines(env.board), 10);
+    t.checkExpect(obs, this.appearances(env.board));
+    t.checkExpect(new ExamplesBoard().countersMatch(env.board), true);
+    t.checkExpect(env.games, 2);
+  }
+
+  // tests that stepMany steps each environment as step does, and starts the
+  // ones that end afresh
+  void testStepMany(Tester t) {
+    BotBatch batch = new BotBatch(64, 9, 9, 10, 7);
+    BotBatch solo = new BotBatch(64, 9, 9, 10, 7);
+    byte[] obs = new byte[64 * 81];
+    byte[] soloObs = new byte[64 * 81];
+    batch.observe(obs);
+    solo.observe(soloObs);
+    int[] actions = new int[64];
+    int[] tiles = new int[64];
+    int[] rewards = new int[64];
+    byte[] statuses = new byte[64];
+    Random rand = new Random(9);
+    boolean same = true;
+    int ended = 0;
+    for (int s = 0; s < 200; s++) {
+      for (int e = 0; e < 64; e++) {
+        actions[e] = rand.nextInt(8) == 0 ? BotEnvironment.FLAG : BotEnvironment.REVEAL;
+        tiles[e] = rand.nextInt(81);
+      }
+      // two halves, as two threads would step them
+      batch.stepMany(0, 32, actions, tiles, obs, rewards, statuses);
+      batch.stepMany(32, 64, actions, tiles, obs, rewards, statuses);
+      for (int e = 0; e < 64; e++) {
+        BotEnvironment env = solo.environments[e];
+        same = same && env.step(actions[e], tiles[e], soloObs, e * 81) == rewards[e]
+            && env.status() == statuses[e];
+        if (env.status() != GameStatus.PLAYING.ordinal()) {
+          env.reset(soloObs, e * 81);
+          ended++;
+        }
+      }
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(obs, soloObs);
+    t.checkExpect(ended > 64, true);
+    byte[] fresh = new byte[64 * 81];
+    batch.observe(fresh);
+    t.checkExpect(obs, fresh);
+  }
+}
@@ -1,6 +1,4 @@
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.Arrays;
 
 import javalib.worldimages.CircleImage;
 import javalib.worldimages.EquilateralTriangleImage;
@@ -11,149 +9,107 @@ import javalib.worldimages.TextImage;
 import javalib.worldimages.WorldImage;
 import tester.Tester;
 
+// Represents a view of a single tile of a Board
 class Cell {
-  boolean mine;
-  boolean flagged;
-  boolean visible;
-  ArrayList<Cell> neighbors;
+  Board board;
+  int index;
 
-  Cell() {
-    this(false, new ArrayList<Cell>());
-  }
-
-  Cell(boolean mine, ArrayList<Cell> neighbors) {
-    this(mine, false, false, neighbors);
-  }
-
-  Cell(boolean mine, boolean flagged, boolean visible, ArrayList<Cell> neighbors) {
-    this.mine = mine;
-    this.flagged = flagged;
-    this.visible = visible;
-    this.neighbors = neighbors;
+  Cell(Board board, int index) {
+    this.board = board;
+    this.index = index;
   }
 
   // Returns the number of mines that are neighbors this Cell
   int countMines() {
-    int mineCountIndex = 0;
-    for (Cell c : this.neighbors) {
-      if (c.mine) {
-        mineCountIndex++;
-      }
-    }
-    return mineCountIndex;
-  }
-
-  // EFFECT: Updates the neighbors of this Cell by adding itself to their
-  // neighbors
-  void updateNeighbors() {
-    for (Cell c : neighbors) {
-      c.neighbors.add(this);
-    }
+    return this.board.countMines(this.index);
   }
 
   // Checks if this cell is the same as the given cell
   boolean sameCell(Cell c1, Cell c2) {
-    return c1.mine == c2.mine && c1.flagged == c2.flagged && c1.visible == c2.visible;
+    return c1.board.isMine(c1.index) == c2.board.isMine(c2.index)
+        && c1.board.isFlagged(c1.index) == c2.board.isFlagged(c2.index)
+        && c1.board.isVisible(c1.index) == c2.board.isVisible(c2.index);
   }
 
   // draws a Cell in the Minesweeper game
   public WorldImage draw() {
-    // covered cell image
-    WorldImage topBox = new OverlayImage(
-        new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
-        new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.SOLID, Color.gray));
-    // uncovered cell image
-    WorldImage box = new OverlayImage(
-        new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
-        new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.SOLID,
-            Color.LIGHT_GRAY));
-    // mine image
-    WorldImage drawMine = new CircleImage(IUtils.TILE_SIZE / 3, OutlineMode.SOLID, Color.red);
-    // flag image
-    WorldImage drawFlag = new EquilateralTriangleImage(IUtils.TILE_SIZE / 2, OutlineMode.SOLID,
-        Color.cyan);
-    // draws covered cells -- will display flag (if any)
-    if (!this.visible) {
-      if (this.flagged) {
-        return new OverlayImage(drawFlag, topBox);
-      }
-      else {
-        return topBox;
-      }
-    }
-    // draws uncovered cells -- will display mine (if any) or neighbors with mines
-    // (if any)
-    else {
-      if (this.mine) {
-        return new OverlayImage(drawMine, box);
-      }
-      else if (this.countMines() > 0) {
-        return new OverlayImage(
-            new TextImage(Integer.toString(this.countMines()), IUtils.TILE_SIZE / 2, Color.black),
-            box);
-      }
-      else {
-        // loops through this revealed cell (which has no adjacent mines) neighbors,
-        // reveals them if
-        // they are not flagged
-        for (int i = 0; i < this.neighbors.size(); i++) {
-          if (!neighbors.get(i).flagged) {
-            neighbors.get(i).visible = true;
-          }
-        }
-        return box;
-      }
+    return TileImages.IMAGES[this.board.appearance(this.index)];
+  }
+}
+
+// Holds the image of every way a tile can appear, built once and shared by all
+// cells, indexed by Board.appearance
+class TileImages {
+  // covered cell image
+  static final WorldImage TOP_BOX = new OverlayImage(
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.SOLID, Color.gray));
+  // uncovered cell image
+  static final WorldImage BOX = new OverlayImage(
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
+      new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.SOLID,
+          Color.LIGHT_GRAY));
+  static final WorldImage[] IMAGES = TileImages.build();
+
+  // Returns the image of each appearance
+  static WorldImage[] build() {
+    WorldImage[] images = new WorldImage[Board.APPEARANCES];
+    // uncovered cells without adjacent mines are plain
+    images[0] = BOX;
+    // uncovered cells with adjacent mines display how many
+    for (int count = 1; count < Board.SHOW_MINE; count++) {
+      images[count] = new OverlayImage(
+          new TextImage(Integer.toString(count), IUtils.TILE_SIZE / 2, Color.black), BOX);
     }
+    images[Board.SHOW_MINE] = new OverlayImage(
+        new CircleImage(IUtils.TILE_SIZE / 3, OutlineMode.SOLID, Color.red), BOX);
+    images[Board.SHOW_COVERED] = TOP_BOX;
+    images[Board.SHOW_FLAG] = new OverlayImage(
+        new EquilateralTriangleImage(IUtils.TILE_SIZE / 2, OutlineMode.SOLID, Color.cyan),
+        TOP_BOX);
+    return images;
   }
 }
 
 class ExampleCells {
   
+  Board board;
   Cell cell1;
   Cell cell2;
   Cell cell3;
   Cell cell4;
   Cell cell5;
   
+  // a single row of five cells, each the neighbor of the cells beside it
   void reset() {
-    this.cell1 = new Cell(false, false, true, new ArrayList<Cell>());
-    this.cell2 = new Cell(false, false, true, new ArrayList<Cell>(Arrays.asList(this.cell1)));
-    this.cell3 = new Cell(true, true, false, new ArrayList<Cell>(Arrays.asList(this.cell2)));
-    this.cell4 = new Cell(false, false, true, new ArrayList<Cell>(Arrays.asList(this.cell3)));
-    this.cell5 = new Cell(true, false, true, new ArrayList<Cell>(Arrays.asList(this.cell4)));
+    this.board = new Board(5, 1);
+    this.cell1 = new Cell(this.board, 0);
+    this.cell2 = new Cell(this.board, 1);
+    this.cell3 = new Cell(this.board, 2);
+    this.cell4 = new Cell(this.board, 3);
+    this.cell5 = new Cell(this.board, 4);
+    this.board.setVisible(0, true);
+    this.board.setVisible(1, true);
+    this.board.setMine(2, true);
+    this.board.setFlagged(2, true);
+    this.board.setVisible(3, true);
+    this.board.setMine(4, true);
+    this.board.setVisible(4, true);
   }
-  
-  // Updates the neighbors of cell examples
-  void connectCells() {
-    this.reset();
-    this.cell1.updateNeighbors();
-    this.cell2.updateNeighbors();
-    this.cell3.updateNeighbors();
-    this.cell4.updateNeighbors();
-    this.cell5.updateNeighbors();
-  }
-  
 
-  // Method for testing updateNeighbor in class Cell
-  void testUpdateNeighbors(Tester t) {
+  // Method for testing that a Cell is a view of its board
+  void testCellView(Tester t) {
     this.reset();
-    t.checkExpect(this.cell1.neighbors, new ArrayList<Cell>());
-    t.checkExpect(this.cell2.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell1)));
-    t.checkExpect(this.cell3.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell2)));
-    t.checkExpect(this.cell4.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell3)));
-    t.checkExpect(this.cell5.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell4)));
-    this.connectCells();
-    t.checkExpect(this.cell1.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell2)));
-    t.checkExpect(this.cell2.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell1, this.cell3)));
-    t.checkExpect(this.cell3.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell2, this.cell4)));
-    t.checkExpect(this.cell4.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell3, this.cell5)));
-    t.checkExpect(this.cell5.neighbors, new ArrayList<Cell>(Arrays.asList(this.cell4)));
+    t.checkExpect(this.cell1.sameCell(this.cell1, this.cell2), true);
+    t.checkExpect(this.cell1.sameCell(this.cell3, this.cell5), false);
+    this.board.setVisible(2, true);
+    this.board.setFlagged(2, false);
+    t.checkExpect(this.cell1.sameCell(this.cell3, this.cell5), true);
   }
 
   // Method for testing countMines in class Cell
   void testCountMines(Tester t) {
     this.reset();
-    this.connectCells();
     t.checkExpect(this.cell1.countMines(), 0);
     t.checkExpect(this.cell2.countMines(), 1);
     t.checkExpect(this.cell3.countMines(), 0);
@@ -164,7 +120,6 @@ class ExampleCells {
   // tests the method draw() in the class Cell
   void testDrawCells(Tester t) {
     this.reset();
-    this.connectCells();
     WorldImage box = new OverlayImage(
         new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
         new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.SOLID,
@@ -182,4 +137,15 @@ class ExampleCells {
     t.checkExpect(this.cell5.draw(),
         new OverlayImage(new CircleImage(IUtils.TILE_SIZE / 3, OutlineMode.SOLID, Color.red), box));
   }
+
+  // tests that draw() hands out the same shared image for cells that look alike
+  void testDrawShared(Tester t) {
+    this.reset();
+    t.checkExpect(this.cell1.draw() == this.cell1.draw(), true);
+    t.checkExpect(this.cell1.draw() == TileImages.BOX, true);
+    this.board.setVisible(2, true);
+    this.board.setFlagged(2, false);
+    t.checkExpect(this.cell3.draw() == this.cell5.draw(), true);
+    t.checkExpect(this.cell3.draw() == TileImages.IMAGES[Board.SHOW_MINE], true);
+  }
 }
\ No newline at end of file
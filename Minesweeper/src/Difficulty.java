@@ -0,0 +1,451 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import tester.Tester;
+
+// Represents how hard a board is to clear, without playing it
+class Difficulty {
+  // the fewest clicks that clear the board: one per opening, and one per
+  // numbered tile that no opening uncovers
+  int bbbv;
+  // the regions of connected tiles without adjacent mines
+  int openings;
+  // the numbered tiles that no opening uncovers
+  int islands;
+  // the most tiles that one click uncovers, counting the numbered tiles around
+  // the opening
+  int largestOpening;
+
+  Difficulty(int bbbv, int openings, int islands, int largestOpening) {
+    this.bbbv = bbbv;
+    this.openings = openings;
+    this.islands = islands;
+    this.largestOpening = largestOpening;
+  }
+
+  public String toString() {
+    return "3BV " + this.bbbv + ", " + this.openings + " openings, " + this.islands
+        + " islands, largest opening " + this.largestOpening;
+  }
+}
+
+// Works out the Difficulty of boards in time linear in their number of tiles,
+// reusing its arrays from one board of a size to the next
+// One pass over the tiles joins every tile without adjacent mines to those of
+// its neighbors, in a union-find forest kept in an int[] of parents; a second
+// credits each numbered tile to the openings around it, or counts it as an
+// island if there are none
+class DifficultyAnalyzer {
+  // parent[i] is the tile above tile i in its tree, or, for the root of a
+  // tree, minus the size of the opening, or the number of tiles if tile i has
+  // adjacent mines
+  int[] parent;
+  // the roots of the openings around the numbered tile being looked at
+  int[] roots;
+  int[] neighbors;
+
+  DifficultyAnalyzer() {
+    this.parent = new int[0];
+    this.roots = new int[0];
+    this.neighbors = new int[0];
+  }
+
+  // Returns the difficulty of the given board
+  Difficulty analyze(Board board) {
+    int size = board.size();
+    int degree = board.topology.maxDegree();
+    if (this.parent.length != size || this.neighbors.length < degree) {
+      this.parent = new int[size];
+      this.roots = new int[degree];
+      this.neighbors = new int[degree];
+    }
+    int[] parent = this.parent;
+    for (int i = 0; i < size; i++) {
+      parent[i] = (board.tile(i) & (Board.MINE | Board.COUNT)) == 0 ? -1 : size;
+    }
+    for (int i = 0; i < size; i++) {
+      if (parent[i] != size) {
+        int count = board.topology.neighbors(i, this.neighbors);
+        for (int k = 0; k < count; k++) {
+          int n = this.neighbors[k];
+          // each pair is joined from its later tile, which sees the earlier one
+          // already in its tree
+          if (n < i && parent[n] != size) {
+            this.union(i, n);
+          }
+        }
+      }
+    }
+    int islands = 0;
+    for (int i = 0; i < size; i++) {
+      if (parent[i] == size && !board.isMine(i)) {
+        int found = 0;
+        int count = board.topology.neighbors(i, this.neighbors);
+        for (int k = 0; k < count; k++) {
+          if (parent[this.neighbors[k]] != size) {
+            found = this.addRoot(this.find(this.neighbors[k]), found);
+          }
+        }
+        if (found == 0) {
+          islands++;
+        }
+        // the tile is uncovered along with each opening it borders
+        for (int r = 0; r < found; r++) {
+          parent[this.roots[r]]--;
+        }
+      }
+    }
+    int openings = 0;
+    int largest = 0;
+    for (int i = 0; i < size; i++) {
+      if (parent[i] < 0) {
+        openings++;
+        largest = Math.max(largest, -parent[i]);
+      }
+    }
+    return new Difficulty(openings + islands, openings, islands, largest);
+  }
+
+  // EFFECT: adds the given root to the first found entries of roots, unless it
+  // is there already
+  // Returns the number of entries now
+  int addRoot(int root, int found) {
+    for (int r = 0; r < found; r++) {
+      if (this.roots[r] == root) {
+        return found;
+      }
+    }
+    this.roots[found] = root;
+    return found + 1;
+  }
+
+  // EFFECT: shortens the path from the given tile to its root, pointing every
+  // other tile on it at its grandparent
+  // Returns the root of the tree of the given tile
+  int find(int tile) {
+    int[] parent = this.parent;
+    while (parent[tile] >= 0) {
+      int up = parent[tile];
+      if (parent[up] >= 0) {
+        parent[tile] = parent[up];
+      }
+      tile = up;
+    }
+    return tile;
+  }
+
+  // EFFECT: joins the trees of the two given zeros, putting the smaller one
+  // under the larger
+  void union(int a, int b) {
+    int[] parent = this.parent;
+    int ra = this.find(a);
+    int rb = this.find(b);
+    if (ra != rb) {
+      if (parent[ra] > parent[rb]) {
+        int swap = ra;
+        ra = rb;
+        rb = swap;
+      }
+      parent[ra] += parent[rb];
+      parent[rb] = ra;
+    }
+  }
+}
+
+// Represents histograms of the difficulty of many boards of one size, which
+// show where to draw the lines between difficulty bands
+class DifficultyStats {
+  int boards;
+  // bbbv[v] counts the boards whose 3BV was v, and so on
+  long[] bbbv;
+  long[] openings;
+  long[] islands;
+  long[] largestOpening;
+  long elapsedNanos;
+
+  // histograms of boards of the given number of tiles
+  DifficultyStats(int size) {
+    this.bbbv = new long[size + 1];
+    this.openings = new long[size + 1];
+    this.islands = new long[size + 1];
+    this.largestOpening = new long[size + 1];
+  }
+
+  // EFFECT: counts a board of the given difficulty
+  void record(Difficulty difficulty) {
+    this.boards++;
+    this.bbbv[difficulty.bbbv]++;
+    this.openings[difficulty.openings]++;
+    this.islands[difficulty.islands]++;
+    this.largestOpening[difficulty.largestOpening]++;
+  }
+
+  // EFFECT: adds the given histograms to these
+  void add(DifficultyStats other) {
+    this.boards += other.boards;
+    for (int v = 0; v < this.bbbv.length; v++) {
+      this.bbbv[v] += other.bbbv[v];
+      this.openings[v] += other.openings[v];
+      this.islands[v] += other.islands[v];
+      this.largestOpening[v] += other.largestOpening[v];
+    }
+  }
+
+  // Returns the smallest value that at least the given fraction of the boards
+  // did not exceed in the given histogram
+  int percentile(long[] histogram, double fraction) {
+    long seen = 0;
+    for (int v = 0; v < histogram.length; v++) {
+      seen += histogram[v];
+      if (seen >= fraction * this.boards) {
+        return v;
+      }
+    }
+    return histogram.length - 1;
+  }
+
+  // Returns the mean value of the given histogram
+  double mean(long[] histogram) {
+    double sum = 0;
+    for (int v = 0; v < histogram.length; v++) {
+      sum += (double) v * histogram[v];
+    }
+    return this.boards == 0 ? 0 : sum / this.boards;
+  }
+
+  // Returns the boards scored per second of wall-clock time
+  double boardsPerSecond() {
+    return this.elapsedNanos == 0 ? 0 : this.boards * 1e9 / this.elapsedNanos;
+  }
+
+  // EFFECT: writes the histograms to the given file as CSV, one row per value
+  // that any board had
+  void write(String file) {
+    try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(file)))) {
+      out.println("value,3bv,openings,islands,largest_opening");
+      for (int v = 0; v < this.bbbv.length; v++) {
+        if (this.bbbv[v] + this.openings[v] + this.islands[v] + this.largestOpening[v] > 0) {
+          out.println(v + "," + this.bbbv[v] + "," + this.openings[v] + "," + this.islands[v]
+              + "," + this.largestOpening[v]);
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public String toString() {
+    return String.format(
+        "%d boards, 3BV mean %.1f p10/p50/p90 %d/%d/%d, openings mean %.1f, "
+            + "islands mean %.1f, largest opening p50 %d, %.0f boards/s",
+        this.boards, this.mean(this.bbbv), this.percentile(this.bbbv, 0.1),
+        this.percentile(this.bbbv, 0.5), this.percentile(this.bbbv, 0.9),
+        this.mean(this.openings), this.mean(this.islands),
+        this.percentile(this.largestOpening, 0.5), this.boardsPerSecond());
+  }
+}
+
+// Scores many seeded boards on a fork-join pool without playing them
+// Board n is the board of game n of a SimulationRunner with the same size and
+// master seed, so a game can be looked up by how hard its board was
+class DifficultyRunner {
+  // boards scored one after another by a single task
+  static final int CHUNK = 4096;
+
+  int width;
+  int height;
+  int mineCount;
+  long masterSeed;
+
+  DifficultyRunner(int width, int height, int mineCount, long masterSeed) {
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    this.masterSeed = masterSeed;
+  }
+
+  // Returns the board with the given number
+  Board board(int n) {
+    return GameEngine.mined(new Random(SimulationRunner.seedFor(this.masterSeed, n)),
+        this.width, this.height, this.mineCount);
+  }
+
+  // Returns the histograms of the given number of boards, scored on the given
+  // number of threads
+  DifficultyStats run(int boards, int threads) {
+    DifficultyStats total = new DifficultyStats(this.width * this.height);
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      pool.invoke(new DifficultyTask(this, 0, boards, total));
+    }
+    finally {
+      pool.shutdown();
+    }
+    total.elapsedNanos = System.nanoTime() - start;
+    return total;
+  }
+
+  // Scores a batch of boards from the command line, writing the histograms to
+  // the given CSV file if there is one:
+  // width height mineCount boards threads masterSeed file
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+    int mines = args.length > 2 ? Integer.parseInt(args[2]) : 99;
+    int boards = args.length > 3 ? Integer.parseInt(args[3]) : 1000000;
+    int threads = args.length > 4 ? Integer.parseInt(args[4])
+        : Runtime.getRuntime().availableProcessors();
+    long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+    DifficultyStats stats = new DifficultyRunner(width, height, mines, seed).run(boards, threads);
+    System.out.println(stats);
+    if (args.length > 6) {
+      stats.write(args[6]);
+    }
+  }
+}
+
+// Scores a range of boards, splitting it in half until it is one chunk long
+class DifficultyTask extends RecursiveAction {
+  DifficultyRunner runner;
+  int from;
+  int to;
+  DifficultyStats total;
+
+  DifficultyTask(DifficultyRunner runner, int from, int to, DifficultyStats total) {
+    this.runner = runner;
+    this.from = from;
+    this.to = to;
+    this.total = total;
+  }
+
+  protected void compute() {
+    if (this.to - this.from > DifficultyRunner.CHUNK) {
+      int mid = this.from + (this.to - this.from) / 2;
+      invokeAll(new DifficultyTask(this.runner, this.from, mid, this.total),
+          new DifficultyTask(this.runner, mid, this.to, this.total));
+    }
+    else {
+      DifficultyStats chunk = new DifficultyStats(this.total.bbbv.length - 1);
+      DifficultyAnalyzer analyzer = new DifficultyAnalyzer();
+      for (int n = this.from; n < this.to; n++) {
+        chunk.record(analyzer.analyze(this.runner.board(n)));
+      }
+      synchronized (this.total) {
+        this.total.add(chunk);
+      }
+    }
+  }
+}
+
+class ExamplesDifficulty {
+  DifficultyAnalyzer analyzer = new DifficultyAnalyzer();
+
+  // Returns the number of clicks that clear the given board by first clicking a
+  // tile of every opening and then every numbered tile left, checking that the
+  // board is won, or -1 if it is not
+  int clicksToClear(Board board, int mines) {
+    GameEngine game = new GameEngine(board.copy(), mines);
+    int clicks = 0;
+    for (int pass = 0; pass < 2; pass++) {
+      for (int i = 0; i < board.size(); i++) {
+        boolean zero = board.countMines(i) == 0;
+        if (!board.isMine(i) && !game.board.isVisible(i) && (zero || pass == 1)) {
+          game.reveal(i);
+          clicks++;
+        }
+      }
+    }
+    return game.status() == GameStatus.WON ? clicks : -1;
+  }
+
+  // Returns the most tiles that one click on a tile without adjacent mines
+  // uncovers on the given board
+  int largestFlood(Board board) {
+    // marks the openings already tried, each of which is then tried on a fresh
+    // copy, where the tiles it shares with others are still covered
+    Board tried = board.copy();
+    int largest = 0;
+    for (int i = 0; i < tried.size(); i++) {
+      if (!tried.isMine(i) && tried.countMines(i) == 0 && !tried.isVisible(i)) {
+        tried.reveal(i);
+        largest = Math.max(largest, board.copy().reveal(i).size);
+      }
+    }
+    return largest;
+  }
+
+  // tests analyze in the class DifficultyAnalyzer on small boards
+  void testSmall(Tester t) {
+    // M 1 0
+    // 1 1 0
+    // 0 0 0
+    Board corner = new Board(3, 3);
+    corner.setMine(0, true);
+    Difficulty d = this.analyzer.analyze(corner);
+    t.checkExpect(d.bbbv, 1);
+    t.checkExpect(d.openings, 1);
+    t.checkExpect(d.islands, 0);
+    t.checkExpect(d.largestOpening, 8);
+    // 1 M 2 M 1
+    Board row = new Board(5, 1);
+    row.setMine(1, true);
+    row.setMine(3, true);
+    d = this.analyzer.analyze(row);
+    t.checkExpect(d.bbbv, 3);
+    t.checkExpect(d.openings, 0);
+    t.checkExpect(d.islands, 3);
+    t.checkExpect(d.largestOpening, 0);
+    // 0 1 M 1 0: the two openings are counted apart
+    Board split = new Board(5, 1);
+    split.setMine(2, true);
+    d = this.analyzer.analyze(split);
+    t.checkExpect(d.bbbv, 2);
+    t.checkExpect(d.openings, 2);
+    t.checkExpect(d.largestOpening, 2);
+    t.checkExpect(this.analyzer.analyze(new Board(4, 4)).largestOpening, 16);
+  }
+
+  // tests that the 3BV of random boards is the number of clicks that clear them,
+  // and that the largest opening is the largest flood
+  void testAgainstPlay(Tester t) {
+    Random rand = new Random(8);
+    boolean matches = true;
+    for (int b = 0; b < 200; b++) {
+      int mines = 5 + rand.nextInt(60);
+      Board board = GameEngine.mined(rand, 16, 16, mines);
+      Difficulty d = this.analyzer.analyze(board);
+      matches = matches && d.bbbv == this.clicksToClear(board, mines)
+          && d.largestOpening == this.largestFlood(board);
+    }
+    t.checkExpect(matches, true);
+    // other topologies
+    Board torus = new Board(20, 20, new TorusTopology(20, 20));
+    new MinePlacer(new Random(2)).place(torus, 40);
+    Difficulty d = this.analyzer.analyze(torus);
+    t.checkExpect(d.bbbv, this.clicksToClear(torus, 40));
+    t.checkExpect(d.largestOpening, this.largestFlood(torus));
+  }
+
+  // tests that the histograms do not depend on the number of threads, and that
+  // board n is the board of game n of a simulation
+  void testRunner(Tester t) {
+    DifficultyRunner runner = new DifficultyRunner(9, 9, 10, 42);
+    DifficultyStats one = runner.run(10000, 1);
+    DifficultyStats four = runner.run(10000, 4);
+    t.checkExpect(one.boards, 10000);
+    t.checkExpect(four.bbbv, one.bbbv);
+    t.checkExpect(four.largestOpening, one.largestOpening);
+    t.checkExpect(one.percentile(one.bbbv, 0.5) > 0, true);
+    t.checkExpect(runner.board(7).tiles(), new GameEngine(
+        new Random(new SimulationRunner(9, 9, 10, RandomPolicy::new, 42).seedFor(7)), 9, 9,
+        10).board.tiles());
+  }
+}
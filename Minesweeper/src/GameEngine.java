@@ -0,0 +1,198 @@
+import java.util.Random;
+
+import tester.Tester;
+
+// Represents whether a game is still being played, and how it ended if not
+enum GameStatus {
+  PLAYING, WON, LOST
+}
+
+// Represents the rules of a Minesweeper game, independent of how it is drawn:
+// revealing and flagging tiles and deciding when the game is won or lost
+class GameEngine {
+  Board board;
+  int mineCount;
+  GameStatus status;
+
+  // seeded random mine placement
+  GameEngine(Random rand, int width, int height, int mineCount) {
+    this(GameEngine.mined(rand, width, height, mineCount), mineCount);
+  }
+
+  // plays on the given board, which has (or will be given) the given number of
+  // mines
+  GameEngine(Board board, int mineCount) {
+    this.board = board;
+    this.mineCount = mineCount;
+    this.status = GameStatus.PLAYING;
+  }
+
+  // Returns a board of the given size with the given number of mines placed by a
+  // MinePlacer drawing from the given Random
+  static Board mined(Random rand, int width, int height, int mineCount) {
+    Board board = new Board(width, height);
+    new MinePlacer(rand).place(board, mineCount);
+    return board;
+  }
+
+  // Returns the status of this game
+  GameStatus status() {
+    return this.status;
+  }
+
+  // EFFECT: reveals the tile at the given row and column
+  // Returns the tiles that were uncovered
+  TileList reveal(int row, int col) {
+    return this.reveal(this.board.index(row, col));
+  }
+
+  // EFFECT: reveals the tile at the given index, opening the region around it if
+  // it has no adjacent mines, and ends the game if that hits a mine or uncovers
+  // the last safe tile -- nothing happens once the game is over
+  // Returns the tiles that were uncovered
+  TileList reveal(int index) {
+    if (this.status != GameStatus.PLAYING) {
+      return this.board.noChanges();
+    }
+    TileList changed = this.board.reveal(index);
+    if (changed.size > 0 && this.board.isMine(index)) {
+      this.status = GameStatus.LOST;
+    }
+    else if (this.board.hidden == this.mineCount) {
+      this.status = GameStatus.WON;
+    }
+    return changed;
+  }
+
+  // EFFECT: flags or unflags the tile at the given row and column
+  // Returns whether the tile is now flagged
+  boolean toggleFlag(int row, int col) {
+    return this.toggleFlag(this.board.index(row, col));
+  }
+
+  // EFFECT: flags or unflags the tile at the given index, if it is still covered
+  // and the game is not over
+  // Returns whether the tile is now flagged
+  boolean toggleFlag(int index) {
+    if (this.status == GameStatus.PLAYING && !this.board.isVisible(index)) {
+      this.board.setFlagged(index, !this.board.isFlagged(index));
+    }
+    return this.board.isFlagged(index);
+  }
+
+  // EFFECT: uncovers every mine
+  void revealMines() {
+    for (int i = 0; i < this.board.size(); i++) {
+      if (this.board.isMine(i)) {
+        this.board.setVisible(i, true);
+      }
+    }
+  }
+
+  // Returns a copy of this game, which can be played on without changing this one
+  // -- it shares the tiles of this game until either changes them
+  GameEngine snapshot() {
+    GameEngine copy = new GameEngine(this.board.copy(), this.mineCount);
+    copy.status = this.status;
+    return copy;
+  }
+
+  // EFFECT: puts this game back in the state of the given snapshot of it
+  void restore(GameEngine snapshot) {
+    this.board.restore(snapshot.board);
+    this.status = snapshot.status;
+  }
+}
+
+class ExamplesGameEngine {
+  GameEngine game;
+
+  // 3x3 game with one mine in the top left corner:
+  // M . .
+  // . . .
+  // . . .
+  void reset() {
+    Board board = new Board(3, 3);
+    board.setMine(0, true);
+    this.game = new GameEngine(board, 1);
+  }
+
+  // tests that a seeded game is the same every time
+  void testSeeded(Tester t) {
+    GameEngine g1 = new GameEngine(new Random(5), 9, 9, 10);
+    GameEngine g2 = new GameEngine(new Random(5), 9, 9, 10);
+    t.checkExpect(g1.board.tiles(), g2.board.tiles());
+    t.checkExpect(g1.status(), GameStatus.PLAYING);
+  }
+
+  // tests that revealing every safe tile wins the game
+  void testWin(Tester t) {
+    this.reset();
+    t.checkExpect(this.game.reveal(1, 1).size, 1);
+    t.checkExpect(this.game.status(), GameStatus.PLAYING);
+    // the far corner has no adjacent mines, so it opens the rest of the board
+    t.checkExpect(this.game.reveal(2, 2).size, 7);
+    t.checkExpect(this.game.status(), GameStatus.WON);
+    // the game is over, so nothing else changes
+    t.checkExpect(this.game.reveal(0, 0).size, 0);
+    t.checkExpect(this.game.board.isVisible(0), false);
+    t.checkExpect(this.game.toggleFlag(0, 0), false);
+  }
+
+  // tests that revealing a mine loses the game
+  void testLose(Tester t) {
+    this.reset();
+    this.game.reveal(0, 0);
+    t.checkExpect(this.game.status(), GameStatus.LOST);
+    t.checkExpect(this.game.board.isVisible(0), true);
+    t.checkExpect(this.game.reveal(2, 2).size, 0);
+  }
+
+  // tests toggleFlag in the class GameEngine
+  void testToggleFlag(Tester t) {
+    this.reset();
+    t.checkExpect(this.game.toggleFlag(0, 0), true);
+    // a flagged mine cannot be revealed
+    t.checkExpect(this.game.reveal(0, 0).size, 0);
+    t.checkExpect(this.game.status(), GameStatus.PLAYING);
+    t.checkExpect(this.game.toggleFlag(0, 0), false);
+    // an uncovered tile cannot be flagged
+    this.game.reveal(1, 1);
+    t.checkExpect(this.game.toggleFlag(1, 1), false);
+    t.checkExpect(this.game.board.flagged, 0);
+  }
+
+  // tests revealMines in the class GameEngine
+  void testRevealMines(Tester t) {
+    this.reset();
+    this.game.revealMines();
+    t.checkExpect(this.game.board.isVisible(0), true);
+    t.checkExpect(this.game.board.hidden, 8);
+  }
+
+  // tests that a snapshot does not share state with the game it was taken from
+  void testSnapshot(Tester t) {
+    this.reset();
+    this.game.toggleFlag(0, 1);
+    GameEngine copy = this.game.snapshot();
+    t.checkExpect(copy.board.tiles(), this.game.board.tiles());
+    copy.reveal(0, 0);
+    t.checkExpect(copy.status(), GameStatus.LOST);
+    t.checkExpect(this.game.status(), GameStatus.PLAYING);
+    t.checkExpect(this.game.board.isVisible(0), false);
+    t.checkExpect(copy.board.flagged, 1);
+    t.checkExpect(copy.board.hidden, 8);
+  }
+
+  // tests restore in the class GameEngine
+  void testRestore(Tester t) {
+    this.reset();
+    GameEngine before = this.game.snapshot();
+    this.game.reveal(0, 0);
+    this.game.restore(before);
+    t.checkExpect(this.game.status(), GameStatus.PLAYING);
+    t.checkExpect(this.game.board.hidden, 9);
+    t.checkExpect(this.game.reveal(2, 2).size, 8);
+    t.checkExpect(this.game.status(), GameStatus.WON);
+  }
+}
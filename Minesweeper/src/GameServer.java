@@ -0,0 +1,652 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import tester.Tester;
+
+// Hosts Minesweeper games for other programs over a line-based protocol on a
+// local socket, one game per connection
+// A client sends one command per line and gets one line back:
+//   NEW width height mines [seed]  OK
+//   REVEAL row col                 OK status count tile:appearance ...
+//   FLAG row col                   OK status 1 if the tile is now flagged, or 0
+//   STATUS                         OK status hidden flagged mines
+//   SNAPSHOT                       OK width height and one character per tile
+//   QUIT                           BYE, and the connection is closed
+// where a status is PLAYING, WON or LOST, a tile is an index into the board,
+// row by row, and an appearance is one of the numbers of Board.appearance.
+// In a snapshot a tile is a hexadecimal digit for its count, * for a mine, #
+// for a covered tile or F for a flag. A command that cannot be carried out gets
+// ERR and the reason, and a line longer than MAX_LINE bytes gets ERR and the
+// connection is closed
+// Every connection runs on a virtual thread of its own and keeps its game to
+// itself, so moves never wait on each other; the only state shared between
+// connections is a few counters
+class GameServer implements AutoCloseable {
+  static final int DEFAULT_PORT = 4567;
+  // the largest board a client may ask for
+  static final int MAX_TILES = 1 << 20;
+  // the longest line a client may send, which is plenty for any command
+  static final int MAX_LINE = 256;
+
+  ServerSocket server;
+  ExecutorService threads;
+  Thread acceptor;
+  // how many connections are open, the most that ever were at once, and how
+  // many games were started and moves made
+  AtomicInteger open;
+  AtomicInteger peak;
+  LongAdder games;
+  LongAdder moves;
+
+  // listens on the given port of the loopback address, or on any free port if
+  // it is 0
+  GameServer(int port) {
+    try {
+      this.server = new ServerSocket(port, 4096, InetAddress.getLoopbackAddress());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.threads = Executors.newVirtualThreadPerTaskExecutor();
+    this.open = new AtomicInteger();
+    this.peak = new AtomicInteger();
+    this.games = new LongAdder();
+    this.moves = new LongAdder();
+  }
+
+  // Returns the port this server listens on
+  int port() {
+    return this.server.getLocalPort();
+  }
+
+  // EFFECT: starts accepting connections in the background
+  // Returns this server
+  GameServer start() {
+    this.acceptor = Thread.ofVirtual().name("accept").start(this::accept);
+    return this;
+  }
+
+  // EFFECT: hands every connection to a virtual thread of its own, until the
+  // server is closed
+  void accept() {
+    while (!this.server.isClosed()) {
+      try {
+        Socket socket = this.server.accept();
+        this.threads.submit(() -> this.serve(socket));
+      }
+      catch (IOException e) {
+        // closing the server ends accept with an exception
+      }
+    }
+  }
+
+  // EFFECT: plays a game with the client at the other end of the given socket
+  // until it quits or goes away
+  void serve(Socket socket) {
+    this.peak.accumulateAndGet(this.open.incrementAndGet(), Math::max);
+    try (LineConnection connection = new LineConnection(socket, MAX_LINE)) {
+      GameSession session = new GameSession(this);
+      try {
+        String line = connection.readLine();
+        while (line != null) {
+          connection.writeLine(session.handle(line));
+          line = session.quit ? null : connection.readLine();
+        }
+      }
+      catch (IllegalArgumentException e) {
+        // a line too long to be a command, whose end is not worth waiting for
+        connection.writeLine("ERR " + e.getMessage());
+      }
+    }
+    catch (UncheckedIOException e) {
+      // the client went away
+    }
+    finally {
+      this.open.decrementAndGet();
+    }
+  }
+
+  // EFFECT: stops accepting connections and closes every open one
+  public void close() {
+    try {
+      this.server.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.threads.shutdownNow();
+  }
+
+  // Runs a server on the given port, or DEFAULT_PORT, printing its counters
+  // every ten seconds
+  public static void main(String[] args) throws InterruptedException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+    GameServer server = new GameServer(port).start();
+    System.out.println("Listening on " + server.port());
+    while (true) {
+      Thread.sleep(10000);
+      System.out.println(server.open.get() + " open (peak " + server.peak.get() + "), "
+          + server.games.sum() + " games, " + server.moves.sum() + " moves");
+    }
+  }
+}
+
+// Represents the game of one connection to a GameServer, which only its own
+// thread ever touches
+class GameSession {
+  GameServer server;
+  GameEngine game;
+  boolean quit;
+  StringBuilder reply;
+
+  GameSession(GameServer server) {
+    this.server = server;
+    this.quit = false;
+    this.reply = new StringBuilder();
+  }
+
+  // EFFECT: carries out the given command line
+  // Returns the line to send back
+  String handle(String line) {
+    String[] words = line.trim().split(" +");
+    this.reply.setLength(0);
+    try {
+      String command = words[0].toUpperCase();
+      if (command.equals("NEW")) {
+        this.start(words);
+      }
+      else if (command.equals("REVEAL")) {
+        this.reveal(this.tile(words));
+      }
+      else if (command.equals("FLAG")) {
+        boolean flagged = this.game().toggleFlag(this.tile(words));
+        this.server.moves.increment();
+        this.status().append(flagged ? " 1" : " 0");
+      }
+      else if (command.equals("STATUS")) {
+        Board board = this.game().board;
+        this.status().append(' ').append(board.hidden).append(' ').append(board.flagged)
+            .append(' ').append(this.game.mineCount);
+      }
+      else if (command.equals("SNAPSHOT")) {
+        this.snapshot();
+      }
+      else if (command.equals("QUIT")) {
+        this.quit = true;
+        this.reply.append("BYE");
+      }
+      else {
+        throw new IllegalArgumentException("Unknown command " + words[0]);
+      }
+    }
+    catch (IllegalArgumentException | IllegalStateException e) {
+      this.reply.setLength(0);
+      this.reply.append("ERR ").append(e.getMessage());
+    }
+    return this.reply.toString();
+  }
+
+  // Returns the game being played
+  GameEngine game() {
+    if (this.game == null) {
+      throw new IllegalStateException("No game has been started");
+    }
+    return this.game;
+  }
+
+  // Returns the number in the given position of the given command
+  static int number(String[] words, int k) {
+    if (k >= words.length) {
+      throw new IllegalArgumentException(words[0] + " needs " + k + " numbers");
+    }
+    return Integer.parseInt(words[k]);
+  }
+
+  // Returns the index of the tile at the row and column given by the given
+  // command
+  int tile(String[] words) {
+    Board board = this.game().board;
+    int row = GameSession.number(words, 1);
+    int col = GameSession.number(words, 2);
+    if (row < 0 || row >= board.height || col < 0 || col >= board.width) {
+      throw new IllegalArgumentException("No tile at " + row + " " + col);
+    }
+    return board.index(row, col);
+  }
+
+  // EFFECT: starts the game asked for by the given NEW command
+  void start(String[] words) {
+    int width = GameSession.number(words, 1);
+    int height = GameSession.number(words, 2);
+    int mines = GameSession.number(words, 3);
+    if (width < 1 || height < 1 || (long) width * height > GameServer.MAX_TILES) {
+      throw new IllegalArgumentException("Boards hold 1 to " + GameServer.MAX_TILES + " tiles");
+    }
+    Random rand = words.length > 4 ? new Random(Long.parseLong(words[4])) : new Random();
+    this.game = new GameEngine(rand, width, height, mines);
+    this.server.games.increment();
+    this.reply.append("OK");
+  }
+
+  // EFFECT: reveals the given tile, replying with the tiles that changed
+  void reveal(int tile) {
+    TileList changed = this.game().reveal(tile);
+    this.server.moves.increment();
+    this.status().append(' ').append(changed.size);
+    for (int k = 0; k < changed.size; k++) {
+      int t = changed.get(k);
+      this.reply.append(' ').append(t).append(':').append(this.game.board.appearance(t));
+    }
+  }
+
+  // EFFECT: replies with every tile of the board as the player sees it
+  void snapshot() {
+    Board board = this.game().board;
+    this.reply.append("OK ").append(board.width).append(' ').append(board.height).append(' ');
+    for (int i = 0; i < board.size(); i++) {
+      int appearance = board.appearance(i);
+      if (appearance == Board.SHOW_MINE) {
+        this.reply.append('*');
+      }
+      else if (appearance == Board.SHOW_COVERED) {
+        this.reply.append('#');
+      }
+      else if (appearance == Board.SHOW_FLAG) {
+        this.reply.append('F');
+      }
+      else {
+        this.reply.append(Character.forDigit(appearance, 16));
+      }
+    }
+  }
+
+  // EFFECT: starts an OK reply with the status of the game
+  // Returns the reply
+  StringBuilder status() {
+    return this.reply.append("OK ").append(this.game().status());
+  }
+}
+
+// Reads and writes lines of ASCII over a socket through small buffers of its
+// own, so that an idle connection costs little memory
+class LineConnection implements AutoCloseable {
+  static final int BUFFER_SIZE = 512;
+
+  Socket socket;
+  InputStream in;
+  OutputStream out;
+  byte[] buffer;
+  int position;
+  int limit;
+  StringBuilder line;
+  // the longest line this connection reads
+  int maxLine;
+
+  // reads lines of any length
+  LineConnection(Socket socket) {
+    this(socket, Integer.MAX_VALUE);
+  }
+
+  LineConnection(Socket socket, int maxLine) {
+    this.socket = socket;
+    this.maxLine = maxLine;
+    try {
+      socket.setTcpNoDelay(true);
+      this.in = socket.getInputStream();
+      this.out = socket.getOutputStream();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.buffer = new byte[BUFFER_SIZE];
+    this.line = new StringBuilder();
+  }
+
+  // connects to the given port of the loopback address
+  LineConnection(int port) {
+    this(LineConnection.connect(port));
+  }
+
+  // Returns a socket connected to the given port of the loopback address
+  static Socket connect(int port) {
+    try {
+      return new Socket(InetAddress.getLoopbackAddress(), port);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Returns the next line, without its line break, or null at the end of the
+  // stream
+  // Throws IllegalArgumentException once the line grows longer than maxLine
+  String readLine() {
+    this.line.setLength(0);
+    while (true) {
+      if (this.position == this.limit) {
+        try {
+          this.limit = this.in.read(this.buffer);
+        }
+        catch (SocketException e) {
+          this.limit = -1;
+        }
+        catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        this.position = 0;
+        if (this.limit <= 0) {
+          this.limit = 0;
+          return this.line.length() > 0 ? this.line.toString() : null;
+        }
+      }
+      byte b = this.buffer[this.position++];
+      if (b == '\n') {
+        int end = this.line.length();
+        if (end > 0 && this.line.charAt(end - 1) == '\r') {
+          this.line.setLength(end - 1);
+        }
+        return this.line.toString();
+      }
+      if (this.line.length() == this.maxLine) {
+        throw new IllegalArgumentException("Lines hold at most " + this.maxLine + " bytes");
+      }
+      this.line.append((char) b);
+    }
+  }
+
+  // EFFECT: sends the given line
+  void writeLine(String text) {
+    try {
+      this.out.write((text + "\n").getBytes(StandardCharsets.US_ASCII));
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // EFFECT: sends the given line
+  // Returns the line sent back
+  String ask(String text) {
+    this.writeLine(text);
+    return this.readLine();
+  }
+
+  // EFFECT: closes the connection
+  public void close() {
+    try {
+      this.socket.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// Opens many connections to a GameServer at once, waits until they are all
+// open, and then plays games on every one of them by guessing covered tiles,
+// timing each move
+// Each connection needs a file descriptor at each end when the server runs in
+// the same JVM, so tens of thousands of sessions need ulimit -n raised to match
+class LoadGenerator {
+  int connections;
+  int gamesEach;
+  int width;
+  int height;
+  int mines;
+  int port;
+  // how many connections may be opening at once, to keep within the server's
+  // backlog
+  Semaphore connecting;
+  // the number of connections open, and how many moves were made
+  AtomicInteger open;
+  LongAdder moves;
+
+  LoadGenerator(int connections, int gamesEach, int width, int height, int mines, int port) {
+    this.connections = connections;
+    this.gamesEach = gamesEach;
+    this.width = width;
+    this.height = height;
+    this.mines = mines;
+    this.port = port;
+    this.connecting = new Semaphore(512);
+    this.open = new AtomicInteger();
+    this.moves = new LongAdder();
+  }
+
+  // EFFECT: runs every connection to the end
+  // Returns the time each move took, in nanoseconds
+  LatencyHistogram run() {
+    CountDownLatch ready = new CountDownLatch(this.connections);
+    List<Future<LatencyHistogram>> clients = new ArrayList<Future<LatencyHistogram>>();
+    try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (int c = 0; c < this.connections; c++) {
+        long seed = c;
+        clients.add(threads.submit(() -> this.client(seed, ready)));
+      }
+      LatencyHistogram total = new LatencyHistogram();
+      for (Future<LatencyHistogram> client : clients) {
+        total.add(client.get());
+      }
+      return total;
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted", e);
+    }
+    catch (ExecutionException e) {
+      throw new IllegalStateException("A client failed", e.getCause());
+    }
+  }
+
+  // EFFECT: opens a connection, waits for every other one to open, and then
+  // plays its games with guesses drawn from a Random with the given seed
+  // Returns the time each of its moves took
+  LatencyHistogram client(long seed, CountDownLatch ready) throws InterruptedException {
+    LatencyHistogram times = new LatencyHistogram();
+    this.connecting.acquire();
+    LineConnection connection;
+    try {
+      connection = new LineConnection(this.port);
+    }
+    finally {
+      this.connecting.release();
+    }
+    this.open.incrementAndGet();
+    ready.countDown();
+    ready.await();
+    try (connection) {
+      Random rand = new Random(seed);
+      boolean[] uncovered = new boolean[this.width * this.height];
+      for (int g = 0; g < this.gamesEach; g++) {
+        connection.ask("NEW " + this.width + " " + this.height + " " + this.mines + " "
+            + rand.nextLong());
+        java.util.Arrays.fill(uncovered, false);
+        String status = "PLAYING";
+        while (status.equals("PLAYING")) {
+          int tile = rand.nextInt(uncovered.length);
+          while (uncovered[tile]) {
+            tile = (tile + 1) % uncovered.length;
+          }
+          long start = System.nanoTime();
+          String reply = connection.ask("REVEAL " + tile / this.width + " " + tile % this.width);
+          times.record(System.nanoTime() - start);
+          this.moves.increment();
+          String[] words = reply.split(" ");
+          status = words[1];
+          for (int k = 3; k < words.length; k++) {
+            uncovered[Integer.parseInt(words[k].substring(0, words[k].indexOf(':')))] = true;
+          }
+        }
+      }
+      connection.ask("QUIT");
+    }
+    finally {
+      this.open.decrementAndGet();
+    }
+    return times;
+  }
+
+  // Runs the load generator against a server in this JVM, or on the port given
+  // with -p, with the number of connections given with -c (10000 by default)
+  // and of games per connection with -g (5 by default), on 16x16 boards with
+  // 40 mines
+  public static void main(String[] args) throws InterruptedException {
+    int connections = 10000;
+    int games = 5;
+    int port = 0;
+    for (int k = 0; k + 1 < args.length; k += 2) {
+      if (args[k].equals("-c")) {
+        connections = Integer.parseInt(args[k + 1]);
+      }
+      else if (args[k].equals("-g")) {
+        games = Integer.parseInt(args[k + 1]);
+      }
+      else if (args[k].equals("-p")) {
+        port = Integer.parseInt(args[k + 1]);
+      }
+    }
+    GameServer server = port == 0 ? new GameServer(0).start() : null;
+    LoadGenerator load = new LoadGenerator(connections, games, 16, 16, 40,
+        server == null ? port : server.port());
+    Thread reporter = Thread.ofVirtual().start(() -> {
+      try {
+        while (true) {
+          Thread.sleep(1000);
+          System.out.println(load.open.get() + " connections open, " + load.moves.sum()
+              + " moves" + (server == null ? ""
+                  : ", " + server.open.get() + " sessions on the server"));
+        }
+      }
+      catch (InterruptedException e) {
+        // the run is over
+      }
+    });
+    long start = System.nanoTime();
+    LatencyHistogram times = load.run();
+    double seconds = (System.nanoTime() - start) / 1e9;
+    reporter.interrupt();
+    System.out.println(connections + " connections, " + load.moves.sum() + " moves in "
+        + String.format("%.1f", seconds) + " s ("
+        + String.format("%.0f", load.moves.sum() / seconds) + " moves/s)");
+    System.out.println(Metrics.times("move", times));
+    if (server != null) {
+      System.out.println("peak sessions on the server: " + server.peak.get());
+      server.close();
+    }
+  }
+}
+
+class ExamplesGameServer {
+  // tests handle in the class GameSession on each command
+  void testCommands(Tester t) {
+    GameServer server = new GameServer(0);
+    GameSession session = new GameSession(server);
+    t.checkExpect(session.handle("REVEAL 0 0"), "ERR No game has been started");
+    t.checkExpect(session.handle("NEW 3 3 1 7"), "OK");
+    int mine = 0;
+    while (!session.game.board.isMine(mine)) {
+      mine++;
+    }
+    t.checkExpect(session.handle("flag " + mine / 3 + " " + mine % 3), "OK PLAYING 1");
+    t.checkExpect(session.handle("STATUS"), "OK PLAYING 9 1 1");
+    // every tile of a 3x3 board touches the center
+    int safe = mine == 4 ? 0 : 4;
+    String reply = session.handle("REVEAL " + safe / 3 + " " + safe % 3);
+    t.checkExpect(reply.startsWith("OK PLAYING 1 " + safe + ":"), true);
+    t.checkExpect(session.handle("SNAPSHOT").length(), "OK 3 3 ".length() + 9);
+    t.checkExpect(session.handle("SNAPSHOT").charAt(7 + mine), 'F');
+    t.checkExpect(session.handle("SNAPSHOT").charAt(7 + safe) != '#', true);
+    t.checkExpect(session.handle("QUIT"), "BYE");
+    t.checkExpect(session.quit, true);
+    server.close();
+  }
+
+  // tests that handle in the class GameSession explains bad commands
+  void testErrors(Tester t) {
+    GameServer server = new GameServer(0);
+    GameSession session = new GameSession(server);
+    t.checkExpect(session.handle("JUMP"), "ERR Unknown command JUMP");
+    t.checkExpect(session.handle("NEW 3 3"), "ERR NEW needs 3 numbers");
+    t.checkExpect(session.handle("NEW 3 3 10"), "ERR Cannot place 10 mines on 9 free tiles");
+    t.checkExpect(session.handle("NEW 2000 2000 1"), "ERR Boards hold 1 to 1048576 tiles");
+    t.checkExpect(session.handle("NEW 3 x 1"), "ERR For input string: \"x\"");
+    session.handle("NEW 3 3 1");
+    t.checkExpect(session.handle("REVEAL 3 0"), "ERR No tile at 3 0");
+    server.close();
+  }
+
+  // tests that a line too long to be a command gets an error and ends the
+  // connection
+  void testLongLine(Tester t) {
+    GameServer server = new GameServer(0).start();
+    try (LineConnection connection = new LineConnection(server.port())) {
+      t.checkExpect(connection.ask("NEW 3 3 1"), "OK");
+      t.checkExpect(connection.ask("STATUS" + " ".repeat(GameServer.MAX_LINE)),
+          "ERR Lines hold at most 256 bytes");
+      t.checkExpect(connection.readLine(), null);
+    }
+    server.close();
+  }
+
+  // tests that a whole game can be played over a socket, and that a snapshot
+  // matches the tiles sent back by the reveals
+  void testSocket(Tester t) {
+    GameServer server = new GameServer(0).start();
+    try (LineConnection connection = new LineConnection(server.port())) {
+      t.checkExpect(connection.ask("NEW 9 9 10 3"), "OK");
+      char[] seen = new char[81];
+      java.util.Arrays.fill(seen, '#');
+      String status = "PLAYING";
+      Random rand = new Random(1);
+      while (status.equals("PLAYING")) {
+        String[] words = connection.ask("REVEAL " + rand.nextInt(9) + " " + rand.nextInt(9))
+            .split(" ");
+        status = words[1];
+        for (int k = 3; k < words.length; k++) {
+          String[] change = words[k].split(":");
+          int appearance = Integer.parseInt(change[1]);
+          seen[Integer.parseInt(change[0])] = appearance == Board.SHOW_MINE ? '*'
+              : Character.forDigit(appearance, 16);
+        }
+      }
+      t.checkExpect(connection.ask("SNAPSHOT"), "OK 9 9 " + new String(seen));
+      t.checkExpect(connection.ask("QUIT"), "BYE");
+      t.checkExpect(connection.readLine(), null);
+    }
+    t.checkExpect(server.games.sum(), 1L);
+    server.close();
+  }
+
+  // tests that many sessions play at once, each on its own connection
+  void testLoad(Tester t) {
+    GameServer server = new GameServer(0).start();
+    LoadGenerator load = new LoadGenerator(300, 3, 9, 9, 10, server.port());
+    LatencyHistogram times = load.run();
+    t.checkExpect(times.count(), load.moves.sum());
+    t.checkExpect(server.games.sum(), 900L);
+    t.checkExpect(server.moves.sum(), load.moves.sum());
+    // a connection counts as open once its session starts, which may be after a
+    // faster client has already finished
+    t.checkExpect(server.peak.get() > 1 && server.peak.get() <= 300, true);
+    t.checkExpect(load.open.get(), 0);
+    server.close();
+  }
+}
@@ -0,0 +1,174 @@
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import tester.Tester;
+
+// Represents the moves of a game that can be undone and redone, as snapshots
+// of the game taken just before each move
+// Snapshots share the chunks of the board that have not changed since, so each
+// one holds on only to the chunks its move wrote to, and the history keeps at
+// most capacity of them in all
+class History {
+  static final int DEFAULT_CAPACITY = 256;
+
+  int capacity;
+  // the most recent state first
+  ArrayDeque<GameEngine> undos;
+  ArrayDeque<GameEngine> redos;
+
+  History() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  History(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("A history must hold at least one move");
+    }
+    this.capacity = capacity;
+    this.undos = new ArrayDeque<GameEngine>();
+    this.redos = new ArrayDeque<GameEngine>();
+  }
+
+  // EFFECT: records the given snapshot, taken just before a move, as the state
+  // that undo goes back to -- the moves that were undone can no longer be
+  // redone, and the oldest move is forgotten once the history is full
+  void push(GameEngine before) {
+    this.redos.clear();
+    this.undos.push(before);
+    if (this.undos.size() > this.capacity) {
+      this.undos.removeLast();
+    }
+  }
+
+  // Checks if there is a move to undo
+  boolean canUndo() {
+    return !this.undos.isEmpty();
+  }
+
+  // Checks if there is an undone move to redo
+  boolean canRedo() {
+    return !this.redos.isEmpty();
+  }
+
+  // EFFECT: puts the given game back in the state it was in before its last
+  // move
+  // Returns whether there was a move to undo
+  boolean undo(GameEngine game) {
+    return this.move(this.undos, this.redos, game);
+  }
+
+  // EFFECT: plays the last undone move of the given game again
+  // Returns whether there was a move to redo
+  boolean redo(GameEngine game) {
+    return this.move(this.redos, this.undos, game);
+  }
+
+  // EFFECT: restores the given game to the first state of the first given
+  // stack, saving its current state on the second
+  // Returns whether the first stack had a state
+  boolean move(ArrayDeque<GameEngine> from, ArrayDeque<GameEngine> to, GameEngine game) {
+    if (from.isEmpty()) {
+      return false;
+    }
+    to.push(game.snapshot());
+    game.restore(from.pop());
+    return true;
+  }
+}
+
+class ExamplesHistory {
+  // tests undo and redo in the class History
+  void testUndoRedo(Tester t) {
+    GameEngine game = new GameEngine(new Random(3), 16, 16, 40);
+    History history = new History();
+    t.checkExpect(history.undo(game), false);
+    byte[] start = game.board.tiles();
+    history.push(game.snapshot());
+    game.toggleFlag(0);
+    byte[] flagged = game.board.tiles();
+    history.push(game.snapshot());
+    game.reveal(game.board.index(8, 8));
+    byte[] played = game.board.tiles();
+    int hidden = game.board.hidden;
+
+    t.checkExpect(history.undo(game), true);
+    t.checkExpect(game.board.tiles(), flagged);
+    t.checkExpect(game.board.flagged, 1);
+    t.checkExpect(history.undo(game), true);
+    t.checkExpect(game.board.tiles(), start);
+    t.checkExpect(game.board.flagged, 0);
+    t.checkExpect(history.undo(game), false);
+    t.checkExpect(history.redo(game), true);
+    t.checkExpect(history.redo(game), true);
+    t.checkExpect(game.board.tiles(), played);
+    t.checkExpect(game.board.hidden, hidden);
+    t.checkExpect(history.redo(game), false);
+
+    // a new move forgets the moves that were undone
+    history.undo(game);
+    history.push(game.snapshot());
+    game.toggleFlag(1);
+    t.checkExpect(history.canRedo(), false);
+    t.checkExpect(history.undo(game), true);
+    t.checkExpect(game.board.tiles(), flagged);
+  }
+
+  // tests that undoing a losing move resumes the game
+  void testUndoLoss(Tester t) {
+    Board board = new Board(3, 3);
+    board.setMine(0, true);
+    GameEngine game = new GameEngine(board, 1);
+    History history = new History();
+    history.push(game.snapshot());
+    game.reveal(0);
+    t.checkExpect(game.status(), GameStatus.LOST);
+    history.undo(game);
+    t.checkExpect(game.status(), GameStatus.PLAYING);
+    t.checkExpect(game.board.isVisible(0), false);
+    t.checkExpect(game.reveal(8).size, 8);
+    t.checkExpect(game.status(), GameStatus.WON);
+  }
+
+  // tests that the history forgets its oldest moves beyond its capacity
+  void testCapacity(Tester t) {
+    GameEngine game = new GameEngine(new Board(10, 10), 0);
+    History history = new History(3);
+    for (int i = 0; i < 5; i++) {
+      history.push(game.snapshot());
+      game.toggleFlag(i);
+    }
+    int undone = 0;
+    while (history.undo(game)) {
+      undone++;
+    }
+    t.checkExpect(undone, 3);
+    t.checkExpect(game.board.flagged, 2);
+    t.checkConstructorException(
+        new IllegalArgumentException("A history must hold at least one move"), "History", 0);
+  }
+
+  // tests that a long history of moves on a large board holds only the chunks
+  // each move changed
+  void testSharing(Tester t) {
+    GameEngine game = new GameEngine(new Random(9), 1000, 1000, 150000);
+    History history = new History(1000);
+    for (int i = 0; i < 1000; i++) {
+      history.push(game.snapshot());
+      game.toggleFlag(i * 997);
+    }
+    // every snapshot shares all but the chunks written since with the next one
+    int distinct = 0;
+    GameEngine newer = null;
+    for (GameEngine before : history.undos) {
+      byte[][] chunks = before.board.chunks;
+      byte[][] next = newer == null ? game.board.chunks : newer.board.chunks;
+      for (int c = 0; c < chunks.length; c++) {
+        if (chunks[c] != next[c]) {
+          distinct++;
+        }
+      }
+      newer = before;
+    }
+    t.checkExpect(distinct, 1000);
+  }
+}
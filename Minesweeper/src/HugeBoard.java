@@ -0,0 +1,869 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javalib.impworld.World;
+import javalib.impworld.WorldScene;
+import javalib.worldimages.AboveImage;
+import javalib.worldimages.BesideImage;
+import javalib.worldimages.EmptyImage;
+import javalib.worldimages.Posn;
+import javalib.worldimages.TextImage;
+import javalib.worldimages.WorldImage;
+import tester.Tester;
+
+// Represents a Minesweeper board that stretches as far as an int reaches in
+// every direction, addressed by x and y
+// The board is split into square chunks whose mines come from a hash of the
+// seed and the chunk's coordinates, so a chunk is built only when it is first
+// played and can be thrown away and built again at any time. Only the tiles
+// the player has uncovered or flagged need to be kept: chunks beyond the
+// resident limit are evicted, least recently used first, and their marks are
+// saved to a ChunkStore
+// The three by three square around the origin has no mines, so the game can
+// start there
+// The board owns its store, and closing the board closes it
+class HugeBoard implements AutoCloseable {
+  static final int CHUNK_BITS = 6;
+  static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+  static final int CHUNK_MASK = CHUNK_SIZE - 1;
+  // with fewer mines than this the openings of an endless board can be endless
+  // too, so a single click could never finish
+  static final double MIN_DENSITY = 0.12;
+  static final double MAX_DENSITY = 0.9;
+  static final int DEFAULT_RESIDENT = 4096;
+
+  long seed;
+  double density;
+  // a tile is a mine if the top 53 bits of its hash are below this
+  long threshold;
+  int maxResident;
+  LinkedHashMap<Long, HugeChunk> resident;
+  ChunkStore store;
+  // the chunk found by the last lookup, which most lookups ask for again
+  HugeChunk last;
+  // the number of uncovered and flagged tiles, and whether a mine was uncovered
+  long revealed;
+  long flagged;
+  boolean exploded;
+  // the work queue of the flood fill, as packed coordinates, grown as needed
+  long[] queue;
+  // how many chunks were built from the seed, loaded back from the store and
+  // evicted
+  long generated;
+  long loaded;
+  long evicted;
+
+  HugeBoard(long seed, double density) {
+    this(seed, density, DEFAULT_RESIDENT, new ChunkStore());
+  }
+
+  HugeBoard(long seed, double density, int maxResident, ChunkStore store) {
+    if (!(density >= MIN_DENSITY && density <= MAX_DENSITY)) {
+      store.close();
+      throw new IllegalArgumentException(
+          "A huge board needs a mine density between " + MIN_DENSITY + " and " + MAX_DENSITY);
+    }
+    if (maxResident < 1) {
+      store.close();
+      throw new IllegalArgumentException("A huge board needs room for at least one chunk");
+    }
+    this.seed = seed;
+    this.density = density;
+    this.threshold = (long) (density * (1L << 53));
+    this.maxResident = maxResident;
+    this.store = store;
+    this.resident = new LinkedHashMap<Long, HugeChunk>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<Long, HugeChunk> eldest) {
+        if (this.size() > HugeBoard.this.maxResident) {
+          HugeBoard.this.evict(eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+    this.queue = new long[1024];
+  }
+
+  // Returns the given numbers packed into one
+  static long pack(int a, int b) {
+    return ((long) a << 32) | (b & 0xFFFFFFFFL);
+  }
+
+  // Returns the first number packed into the given one
+  static int first(long packed) {
+    return (int) (packed >> 32);
+  }
+
+  // Returns the second number packed into the given one
+  static int second(long packed) {
+    return (int) packed;
+  }
+
+  // Returns the given number with its bits well mixed (the finalizer of
+  // SplitMix64)
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  // Returns the hash that the mines of the chunk at the given chunk coordinates
+  // are drawn from
+  long chunkHash(int cx, int cy) {
+    return mix(this.seed ^ mix(pack(cx, cy)));
+  }
+
+  // Returns the index within its chunk of the tile at the given coordinates
+  static int local(int x, int y) {
+    return ((y & CHUNK_MASK) << CHUNK_BITS) | (x & CHUNK_MASK);
+  }
+
+  // Checks if the tile at the given coordinates is a mine, whether or not its
+  // chunk has been built
+  boolean mineAt(int x, int y) {
+    return this.mineAt(this.chunkHash(x >> CHUNK_BITS, y >> CHUNK_BITS), x, y);
+  }
+
+  // Checks if the tile at the given coordinates, in the chunk with the given
+  // hash, is a mine
+  boolean mineAt(long chunkHash, int x, int y) {
+    if (x >= -1 && x <= 1 && y >= -1 && y <= 1) {
+      return false;
+    }
+    long h = mix(chunkHash + local(x, y) * 0x9E3779B97F4A7C15L);
+    return (h >>> 11) < this.threshold;
+  }
+
+  // Returns the tiles of the chunk at the given chunk coordinates as they are
+  // before anything is uncovered or flagged
+  byte[] generate(int cx, int cy) {
+    // the mines of the chunk and of the ring of tiles around it, as 0 or 1
+    int span = CHUNK_SIZE + 2;
+    byte[] mines = new byte[span * span];
+    int x0 = (cx << CHUNK_BITS) - 1;
+    int y0 = (cy << CHUNK_BITS) - 1;
+    long hash = this.chunkHash(cx, cy);
+    for (int j = 0; j < span; j++) {
+      boolean edge = j == 0 || j == span - 1;
+      for (int i = 0; i < span; i++) {
+        boolean mine = edge || i == 0 || i == span - 1 ? this.mineAt(x0 + i, y0 + j)
+            : this.mineAt(hash, x0 + i, y0 + j);
+        mines[j * span + i] = (byte) (mine ? 1 : 0);
+      }
+    }
+    // each tile's count is the sum of the three by three square around it, less
+    // itself, summed across the rows first
+    byte[] across = new byte[span * span];
+    for (int j = 0; j < span; j++) {
+      for (int i = 1; i < span - 1; i++) {
+        int k = j * span + i;
+        across[k] = (byte) (mines[k - 1] + mines[k] + mines[k + 1]);
+      }
+    }
+    byte[] tiles = new byte[CHUNK_SIZE * CHUNK_SIZE];
+    for (int j = 1; j <= CHUNK_SIZE; j++) {
+      for (int i = 1; i <= CHUNK_SIZE; i++) {
+        int k = j * span + i;
+        int count = across[k - span] + across[k] + across[k + span] - mines[k];
+        tiles[(j - 1) * CHUNK_SIZE + i - 1] = (byte) (count | mines[k] * Board.MINE);
+      }
+    }
+    return tiles;
+  }
+
+  // Returns the chunk at the given chunk coordinates if it is in memory or has
+  // been saved to the store, or null if it has never been played
+  HugeChunk peek(int cx, int cy) {
+    long key = pack(cx, cy);
+    if (this.last != null && this.last.key == key) {
+      // keeps the order of use true, so the busiest chunk is not evicted first
+      this.resident.get(key);
+      return this.last;
+    }
+    HugeChunk chunk = this.resident.get(key);
+    if (chunk == null && this.store.contains(key)) {
+      chunk = this.chunk(cx, cy);
+    }
+    if (chunk != null) {
+      this.last = chunk;
+    }
+    return chunk;
+  }
+
+  // EFFECT: builds the chunk at the given chunk coordinates and brings back its
+  // saved marks, if it is not in memory, evicting the least recently used chunk
+  // if there are too many
+  // Returns that chunk
+  HugeChunk chunk(int cx, int cy) {
+    long key = pack(cx, cy);
+    if (this.last != null && this.last.key == key) {
+      // keeps the order of use true, so the busiest chunk is not evicted first
+      this.resident.get(key);
+      return this.last;
+    }
+    HugeChunk chunk = this.resident.get(key);
+    if (chunk == null) {
+      chunk = new HugeChunk(key, this.generate(cx, cy));
+      this.generated++;
+      if (this.store.load(key, chunk.tiles)) {
+        this.loaded++;
+      }
+      this.resident.put(key, chunk);
+    }
+    this.last = chunk;
+    return chunk;
+  }
+
+  // Returns the chunk holding the tile at the given coordinates, building it if
+  // necessary
+  HugeChunk chunkAt(int x, int y) {
+    return this.chunk(x >> CHUNK_BITS, y >> CHUNK_BITS);
+  }
+
+  // EFFECT: saves the marks of the given chunk, which is leaving memory, if it
+  // has any
+  void evict(HugeChunk chunk) {
+    if (chunk.marked) {
+      this.store.save(chunk.key, chunk.tiles);
+    }
+    if (this.last == chunk) {
+      this.last = null;
+    }
+    this.evicted++;
+  }
+
+  // EFFECT: closes the store, letting go of its file and of the memory its
+  // compression holds outside the heap
+  public void close() {
+    this.store.close();
+  }
+
+  // Returns the number of chunks in memory
+  int residentChunks() {
+    return this.resident.size();
+  }
+
+  // Returns how the tile at the given coordinates appears to the player, using
+  // the same numbers as Board.appearance -- drawing a chunk that has never been
+  // played does not build it
+  int appearance(int x, int y) {
+    HugeChunk chunk = this.peek(x >> CHUNK_BITS, y >> CHUNK_BITS);
+    if (chunk == null) {
+      return Board.SHOW_COVERED;
+    }
+    int tile = chunk.tiles[local(x, y)];
+    if ((tile & Board.VISIBLE) == 0) {
+      return (tile & Board.FLAGGED) == 0 ? Board.SHOW_COVERED : Board.SHOW_FLAG;
+    }
+    else if ((tile & Board.MINE) != 0) {
+      return Board.SHOW_MINE;
+    }
+    else {
+      return tile & Board.COUNT;
+    }
+  }
+
+  // Checks if the tile at the given coordinates is uncovered
+  boolean isVisible(int x, int y) {
+    HugeChunk chunk = this.peek(x >> CHUNK_BITS, y >> CHUNK_BITS);
+    return chunk != null && (chunk.tiles[local(x, y)] & Board.VISIBLE) != 0;
+  }
+
+  // Checks if the tile at the given coordinates is flagged
+  boolean isFlagged(int x, int y) {
+    HugeChunk chunk = this.peek(x >> CHUNK_BITS, y >> CHUNK_BITS);
+    return chunk != null && (chunk.tiles[local(x, y)] & Board.FLAGGED) != 0;
+  }
+
+  // Returns the number of mines adjacent to the tile at the given coordinates
+  int countMines(int x, int y) {
+    return this.chunkAt(x, y).tiles[local(x, y)] & Board.COUNT;
+  }
+
+  // EFFECT: flags or unflags the tile at the given coordinates, if it is still
+  // covered
+  // Returns whether the tile is now flagged
+  boolean toggleFlag(int x, int y) {
+    HugeChunk chunk = this.chunkAt(x, y);
+    int i = local(x, y);
+    if ((chunk.tiles[i] & Board.VISIBLE) == 0) {
+      chunk.tiles[i] = (byte) (chunk.tiles[i] ^ Board.FLAGGED);
+      chunk.marked = true;
+      this.flagged += (chunk.tiles[i] & Board.FLAGGED) != 0 ? 1 : -1;
+    }
+    return (chunk.tiles[i] & Board.FLAGGED) != 0;
+  }
+
+  // EFFECT: uncovers the tile at the given coordinates and, if it has no
+  // adjacent mines, floods outward just like Board.reveal, crossing into
+  // neighboring chunks (and building them) as it goes
+  // Returns the number of tiles that were uncovered
+  long reveal(int x, int y) {
+    if (!this.uncover(x, y)) {
+      return 0;
+    }
+    if (this.exploded) {
+      return 1;
+    }
+    this.queue[0] = pack(x, y);
+    int tail = 1;
+    long count = 1;
+    // the queue is used as a ring, so it only has to hold the edge of the flood
+    for (int head = 0; head != tail; head = (head + 1) & (this.queue.length - 1)) {
+      long tile = this.queue[head];
+      int tx = first(tile);
+      int ty = second(tile);
+      if (this.countMines(tx, ty) == 0) {
+        for (int dy = -1; dy <= 1; dy++) {
+          for (int dx = -1; dx <= 1; dx++) {
+            if ((dx != 0 || dy != 0) && this.uncover(tx + dx, ty + dy)) {
+              this.queue[tail] = pack(tx + dx, ty + dy);
+              tail = (tail + 1) & (this.queue.length - 1);
+              count++;
+              if (tail == head) {
+                tail = this.queue.length;
+                this.grow(head);
+                head = 0;
+              }
+            }
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  // EFFECT: doubles the flood fill's queue, which is full and whose oldest
+  // entry is at the given position, moving its entries to the front in order
+  void grow(int head) {
+    int length = this.queue.length;
+    long[] bigger = new long[length * 2];
+    System.arraycopy(this.queue, head, bigger, 0, length - head);
+    System.arraycopy(this.queue, 0, bigger, length - head, head);
+    this.queue = bigger;
+  }
+
+  // EFFECT: uncovers the tile at the given coordinates if it is neither
+  // uncovered nor flagged
+  // Returns whether it was uncovered
+  boolean uncover(int x, int y) {
+    HugeChunk chunk = this.chunkAt(x, y);
+    int i = local(x, y);
+    if ((chunk.tiles[i] & (Board.VISIBLE | Board.FLAGGED)) != 0) {
+      return false;
+    }
+    chunk.tiles[i] = (byte) (chunk.tiles[i] | Board.VISIBLE);
+    chunk.marked = true;
+    this.revealed++;
+    if ((chunk.tiles[i] & Board.MINE) != 0) {
+      this.exploded = true;
+    }
+    return true;
+  }
+}
+
+// Represents one chunk of a HugeBoard: its tiles, in the same bits as those of
+// a Board, row by row
+class HugeChunk {
+  long key;
+  byte[] tiles;
+  // whether any tile has been uncovered or flagged, so the chunk has to be
+  // saved to be evicted
+  boolean marked;
+
+  HugeChunk(long key, byte[] tiles) {
+    this.key = key;
+    this.tiles = tiles;
+    this.marked = false;
+  }
+}
+
+// Saves the marks of evicted chunks of a HugeBoard -- which tiles are uncovered
+// and which are flagged -- as two bitmaps per chunk, deflated and appended to
+// one file
+// The index of where each chunk was saved lives in memory. A chunk saved again
+// is appended again, so the file keeps growing for as long as the board is
+// played on; it is scratch space that is deleted when the program exits
+class ChunkStore implements AutoCloseable {
+  FileChannel channel;
+  // the key of each saved chunk, and where it was saved as position << 20 |
+  // length
+  HashMap<Long, Long> index;
+  long end;
+  Deflater deflater;
+  Inflater inflater;
+  byte[] bitmaps;
+  byte[] packed;
+
+  // a temporary file
+  ChunkStore() {
+    this(ChunkStore.tempFile());
+  }
+
+  ChunkStore(Path file) {
+    try {
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.index = new HashMap<Long, Long>();
+    this.end = 0;
+    this.deflater = new Deflater(Deflater.BEST_SPEED);
+    this.inflater = new Inflater();
+    this.bitmaps = new byte[HugeBoard.CHUNK_SIZE * HugeBoard.CHUNK_SIZE / 4];
+    // deflate can make incompressible data a little larger
+    this.packed = new byte[this.bitmaps.length * 2 + 64];
+  }
+
+  // Returns a new, empty file that is deleted when the program exits
+  static Path tempFile() {
+    try {
+      Path file = Files.createTempFile("chunks", ".bin");
+      file.toFile().deleteOnExit();
+      return file;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Checks if the chunk with the given key has been saved
+  boolean contains(long key) {
+    return this.index.containsKey(key);
+  }
+
+  // Returns the number of chunks saved
+  int size() {
+    return this.index.size();
+  }
+
+  // Returns the number of bytes written to the file
+  long bytes() {
+    return this.end;
+  }
+
+  // EFFECT: saves which of the given tiles of the chunk with the given key are
+  // uncovered and which are flagged
+  void save(long key, byte[] tiles) {
+    int half = tiles.length / 8;
+    Arrays.fill(this.bitmaps, (byte) 0);
+    for (int i = 0; i < tiles.length; i++) {
+      if ((tiles[i] & Board.VISIBLE) != 0) {
+        this.bitmaps[i >> 3] |= (byte) (1 << (i & 7));
+      }
+      if ((tiles[i] & Board.FLAGGED) != 0) {
+        this.bitmaps[half + (i >> 3)] |= (byte) (1 << (i & 7));
+      }
+    }
+    this.deflater.reset();
+    this.deflater.setInput(this.bitmaps, 0, 2 * half);
+    this.deflater.finish();
+    int length = this.deflater.deflate(this.packed);
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(this.packed, 0, length);
+      long position = this.end;
+      while (buffer.hasRemaining()) {
+        position += this.channel.write(buffer, position);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.index.put(key, this.end << 20 | length);
+    this.end += length;
+  }
+
+  // EFFECT: marks the given tiles of the chunk with the given key as they were
+  // when it was last saved
+  // Returns whether it was ever saved
+  boolean load(long key, byte[] tiles) {
+    Long where = this.index.get(key);
+    if (where == null) {
+      return false;
+    }
+    int length = (int) (where & 0xFFFFF);
+    int half = tiles.length / 8;
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(this.packed, 0, length);
+      long position = where >>> 20;
+      while (buffer.hasRemaining()) {
+        int read = this.channel.read(buffer, position);
+        if (read < 0) {
+          throw new IllegalStateException("The store ends inside a saved chunk");
+        }
+        position += read;
+      }
+      this.inflater.reset();
+      this.inflater.setInput(this.packed, 0, length);
+      this.inflater.inflate(this.bitmaps, 0, 2 * half);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catch (DataFormatException e) {
+      throw new IllegalStateException("The saved chunk is corrupt", e);
+    }
+    for (int i = 0; i < tiles.length; i++) {
+      if ((this.bitmaps[i >> 3] & (1 << (i & 7))) != 0) {
+        tiles[i] = (byte) (tiles[i] | Board.VISIBLE);
+      }
+      if ((this.bitmaps[half + (i >> 3)] & (1 << (i & 7))) != 0) {
+        tiles[i] = (byte) (tiles[i] | Board.FLAGGED);
+      }
+    }
+    return true;
+  }
+
+  // EFFECT: closes the file and frees the memory the deflater and inflater hold
+  // outside the heap
+  public void close() {
+    this.deflater.end();
+    this.inflater.end();
+    try {
+      this.channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// Represents Minesweeper played on a HugeBoard, through a window of a fixed
+// number of tiles however large the board is, scrolled with the arrow keys
+class HugeMinesweeper extends World {
+  HugeBoard board;
+  Viewport view;
+  int gameWidth;
+  int gameHeight;
+
+  // a window of the given size, centered on the origin
+  HugeMinesweeper(HugeBoard board, int columns, int rows) {
+    this.board = board;
+    this.view = new Viewport(columns, rows);
+    this.gameWidth = this.view.pixelWidth();
+    this.gameHeight = this.view.pixelHeight();
+  }
+
+  // constructor for playing game
+  HugeMinesweeper(long seed, double density) {
+    this(new HugeBoard(seed, density), IUtils.VIEW_COLUMNS, IUtils.VIEW_ROWS);
+  }
+
+  // Draws the tiles inside the window
+  public WorldScene makeScene() {
+    WorldScene scene = new WorldScene(this.gameWidth, this.gameHeight);
+    scene.placeImageXY(this.drawRows(this.view.top, this.view.top + this.view.rows),
+        this.gameWidth / 2, this.gameHeight / 2);
+    return scene;
+  }
+
+  // Returns the rows of the window from the first given y up to (but not
+  // including) the second, stacked
+  WorldImage drawRows(int from, int to) {
+    if (to - from == 0) {
+      return new EmptyImage();
+    }
+    else if (to - from == 1) {
+      return this.drawRow(from, this.view.left, this.view.left + this.view.columns);
+    }
+    else {
+      int mid = from + (to - from) / 2;
+      return new AboveImage(this.drawRows(from, mid), this.drawRows(mid, to));
+    }
+  }
+
+  // Returns the tiles of the row at the given y from the first given x up to
+  // (but not including) the second, side by side
+  WorldImage drawRow(int y, int from, int to) {
+    if (to - from == 0) {
+      return new EmptyImage();
+    }
+    else if (to - from == 1) {
+      return TileImages.IMAGES[this.board.appearance(from, y)];
+    }
+    else {
+      int mid = from + (to - from) / 2;
+      return new BesideImage(this.drawRow(y, from, mid), this.drawRow(y, mid, to));
+    }
+  }
+
+  // the arrow keys scroll the window
+  public void onKeyEvent(String key) {
+    this.view.onKey(key);
+  }
+
+  public void onMouseClicked(Posn pos, String buttonName) {
+    int x = this.view.column(pos.x);
+    int y = this.view.row(pos.y);
+    if (buttonName.equals("LeftButton")) {
+      this.board.reveal(x, y);
+    }
+    if (buttonName.equals("RightButton")) {
+      this.board.toggleFlag(x, y);
+    }
+    // the board never runs out of safe tiles, so the game ends only on a mine
+    if (this.board.exploded) {
+      this.endOfWorld("You lost!");
+    }
+  }
+
+  // displays a message on the screen when the user loses
+  public WorldScene lastScene(String msg) {
+    WorldScene scene = this.makeScene();
+    scene.placeImageXY(new TextImage(msg, IUtils.TILE_SIZE * 2, Color.blue), this.gameWidth / 2,
+        this.gameHeight / 2);
+    scene.placeImageXY(
+        new TextImage("Revealed " + this.board.revealed + " tiles", IUtils.TILE_SIZE, Color.black),
+        this.gameWidth / 2, 4 * this.gameHeight / 5);
+    return scene;
+  }
+}
+
+class ExamplesHugeBoard {
+  // Returns a HugeBoard with the given seed and room for the given number of
+  // chunks, saving to a temporary store
+  HugeBoard board(long seed, int maxResident) {
+    return new HugeBoard(seed, 0.2, maxResident, new ChunkStore());
+  }
+
+  // tests that the mines of a chunk depend only on the seed and where it is
+  void testDeterministic(Tester t) {
+    try (HugeBoard a = this.board(1, 16); HugeBoard b = this.board(1, 16);
+        HugeBoard other = this.board(2, 16)) {
+      t.checkExpect(a.generate(3, -7), b.generate(3, -7));
+      t.checkExpect(a.generate(-1000000, 25000000), b.generate(-1000000, 25000000));
+      t.checkExpect(Arrays.equals(a.generate(0, 0), a.generate(0, 1)), false);
+      t.checkExpect(Arrays.equals(a.generate(3, -7), other.generate(3, -7)), false);
+      // about the given share of the tiles are mines
+      int mines = 0;
+      for (byte tile : a.generate(5, 5)) {
+        mines += (tile & Board.MINE) != 0 ? 1 : 0;
+      }
+      t.checkExpect(mines > 700 && mines < 940, true);
+    }
+  }
+
+  // tests that the counts of the tiles on the edges of a chunk take in the
+  // mines of the chunks around it
+  void testCountsAcrossChunks(Tester t) {
+    try (HugeBoard b = this.board(4, 64)) {
+      boolean match = true;
+      int[] xs = { -65, -64, -63, -1, 0, 1, 63, 64, 127 };
+      for (int x : xs) {
+        for (int y : xs) {
+          int count = 0;
+          for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+              if ((dx != 0 || dy != 0) && b.mineAt(x + dx, y + dy)) {
+                count++;
+              }
+            }
+          }
+          match = match && b.countMines(x, y) == count
+              && ((b.chunkAt(x, y).tiles[HugeBoard.local(x, y)] & Board.MINE) != 0)
+                  == b.mineAt(x, y);
+        }
+      }
+      t.checkExpect(match, true);
+      // the start is always safe
+      t.checkExpect(b.mineAt(0, 0) || b.mineAt(1, 1) || b.mineAt(-1, -1), false);
+    }
+  }
+
+  // Returns the number of tiles a flood from the given tile of the given board
+  // would uncover, found on a plain grid that covers the given square around it
+  long floodOnGrid(HugeBoard b, int x, int y, int radius) {
+    int side = 2 * radius + 1;
+    Board grid = new Board(side, side);
+    for (int j = 0; j < side; j++) {
+      for (int i = 0; i < side; i++) {
+        if (b.mineAt(x - radius + i, y - radius + j)) {
+          grid.setMine(grid.index(j, i), true);
+        }
+      }
+    }
+    TileList changed = grid.reveal(grid.index(radius, radius));
+    for (int k = 0; k < changed.size; k++) {
+      int i = grid.col(changed.get(k));
+      int j = grid.row(changed.get(k));
+      if (i == 0 || j == 0 || i == side - 1 || j == side - 1) {
+        throw new IllegalStateException("The flood reached the edge of the grid");
+      }
+    }
+    return changed.size;
+  }
+
+  // tests that a flood from the origin crosses chunks just as it would on a
+  // plain board
+  void testFlood(Tester t) {
+    for (long seed = 0; seed < 6; seed++) {
+      try (HugeBoard b = this.board(seed, 1024)) {
+        long expected = this.floodOnGrid(b, 0, 0, 400);
+        t.checkExpect(b.reveal(0, 0), expected);
+        t.checkExpect(b.revealed, expected);
+        t.checkExpect(b.exploded, false);
+        t.checkExpect(b.reveal(0, 0), 0L);
+      }
+    }
+  }
+
+  // tests that a flood too large for the queue it starts with grows it
+  void testFloodGrows(Tester t) {
+    try (HugeBoard b = new HugeBoard(11, HugeBoard.MIN_DENSITY, 1024, new ChunkStore())) {
+      b.queue = new long[2];
+      long expected = this.floodOnGrid(b, 0, 0, 600);
+      t.checkExpect(b.reveal(0, 0), expected);
+      t.checkExpect(b.queue.length > 2, true);
+    }
+  }
+
+  // tests that evicted chunks keep their marks, and that memory holds no more
+  // chunks than it may
+  void testEviction(Tester t) {
+    try (HugeBoard b = this.board(8, 4)) {
+      b.reveal(0, 0);
+      b.toggleFlag(1000, 1000);
+      int[] before = new int[9];
+      for (int k = 0; k < 9; k++) {
+        before[k] = b.appearance(k - 4, 2);
+      }
+      int marked = b.store.size();
+      for (HugeChunk chunk : b.resident.values()) {
+        marked += chunk.marked ? 1 : 0;
+      }
+      // walking far away pushes the first chunks out
+      for (int cx = 0; cx < 20; cx++) {
+        b.countMines(cx * HugeBoard.CHUNK_SIZE + 5000, 5000);
+      }
+      t.checkExpect(b.residentChunks(), 4);
+      t.checkExpect(b.store.contains(HugeBoard.pack(0, 0)), true);
+      // chunks that were only looked at are not saved
+      t.checkExpect(b.store.size(), marked);
+      t.checkExpect(marked, 5);
+      for (int k = 0; k < 9; k++) {
+        t.checkExpect(b.appearance(k - 4, 2), before[k]);
+      }
+      t.checkExpect(b.isFlagged(1000, 1000), true);
+      t.checkExpect(b.loaded >= 2, true);
+      // a flag can be taken off after a round trip through the store
+      t.checkExpect(b.toggleFlag(1000, 1000), false);
+      t.checkExpect(b.flagged, 0L);
+    }
+  }
+
+  // tests that drawing a part of the board that was never played builds nothing
+  void testPeek(Tester t) {
+    try (HugeBoard b = this.board(3, 16)) {
+      t.checkExpect(b.appearance(100000, -100000), Board.SHOW_COVERED);
+      t.checkExpect(b.isVisible(100000, -100000), false);
+      t.checkExpect(b.residentChunks(), 0);
+      t.checkExpect(b.generated, 0L);
+    }
+  }
+
+  // tests that memory follows the explored area rather than the board
+  void testResidentMemory(Tester t) {
+    try (HugeBoard b = this.board(5, 64)) {
+      // flag one tile in each of 500 chunks far apart
+      for (int k = 0; k < 500; k++) {
+        b.toggleFlag(k * 100000, -k * 100000);
+      }
+      t.checkExpect(b.residentChunks(), 64);
+      t.checkExpect(b.store.size(), 436);
+      // a chunk with one flag deflates to a few bytes
+      t.checkExpect(b.store.bytes() < 436 * 40, true);
+      boolean flagged = true;
+      for (int k = 0; k < 500; k++) {
+        flagged = flagged && b.isFlagged(k * 100000, -k * 100000);
+      }
+      t.checkExpect(flagged, true);
+    }
+  }
+
+  // tests that the chunk used last stays the most recently used, however many
+  // times in a row it is asked for, so walking past other chunks evicts them
+  // first
+  void testLastIsRecent(Tester t) {
+    try (HugeBoard b = this.board(9, 3)) {
+      HugeChunk home = b.chunk(0, 0);
+      b.chunk(1, 0);
+      b.chunk(2, 0);
+      b.chunk(0, 0);
+      b.chunk(0, 0);
+      b.countMines(5, 5);
+      Long newest = null;
+      for (Long key : b.resident.keySet()) {
+        newest = key;
+      }
+      t.checkExpect(newest, HugeBoard.pack(0, 0));
+      b.chunk(3, 0);
+      b.chunk(4, 0);
+      t.checkExpect(b.chunk(0, 0) == home, true);
+      t.checkExpect(b.generated, 5L);
+    }
+  }
+
+  // tests that a store whose file was cut short says so instead of reading on
+  // forever, and that closing the board closes its store
+  void testStoreCutShort(Tester t) throws IOException {
+    HugeBoard b = this.board(10, 1);
+    b.toggleFlag(5, 5);
+    b.chunk(1, 0);
+    t.checkExpect(b.store.contains(HugeBoard.pack(0, 0)), true);
+    b.store.channel.truncate(1);
+    t.checkException(new IllegalStateException("The store ends inside a saved chunk"), b,
+        "chunk", 0, 0);
+    b.close();
+    t.checkExpect(b.store.channel.isOpen(), false);
+  }
+
+  // tests the arguments of the constructor of the class HugeBoard
+  void testInvalid(Tester t) {
+    t.checkConstructorException(
+        new IllegalArgumentException("A huge board needs a mine density between 0.12 and 0.9"),
+        "HugeBoard", 1L, 0.05);
+    t.checkConstructorException(
+        new IllegalArgumentException("A huge board needs room for at least one chunk"),
+        "HugeBoard", 1L, 0.2, 0, new ChunkStore());
+  }
+
+  // tests that clicks in the window of a HugeMinesweeper land on the tiles
+  // under them
+  void testHugeMinesweeper(Tester t) {
+    try (HugeBoard board = this.board(6, 64)) {
+      HugeMinesweeper world = new HugeMinesweeper(board, 10, 6);
+      t.checkExpect(world.view.left, -5);
+      t.checkExpect(world.view.top, -3);
+      // the center of the window is the origin, which is safe
+      world.onMouseClicked(new Posn(5 * IUtils.TILE_SIZE + 1, 3 * IUtils.TILE_SIZE + 1),
+          "LeftButton");
+      t.checkExpect(world.board.isVisible(0, 0), true);
+      world.onMouseClicked(new Posn(1, 1), "RightButton");
+      t.checkExpect(world.board.isFlagged(-5, -3) || world.board.isVisible(-5, -3), true);
+      HugeMinesweeper copy = new HugeMinesweeper(world.board, 10, 6);
+      t.checkExpect(world.makeScene(), copy.makeScene());
+      t.checkExpect(world.drawRow(0, 0, 1), TileImages.IMAGES[world.board.appearance(0, 0)]);
+      // scrolling moves the tiles under the mouse
+      world.onKeyEvent("left");
+      world.onMouseClicked(new Posn(6 * IUtils.TILE_SIZE + 1, 3 * IUtils.TILE_SIZE + 1),
+          "RightButton");
+      t.checkExpect(world.board.isVisible(0, 0), true);
+      t.checkExpect(world.board.isFlagged(0, 0), false);
+    }
+  }
+}
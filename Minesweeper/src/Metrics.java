@@ -0,0 +1,554 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.Timespan;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import javalib.worldimages.Posn;
+import tester.Tester;
+
+// Counts non-negative values in buckets whose width grows with the value, so
+// that every value is kept to within 1/64 of itself (two significant digits)
+// however large it is, in the manner of an HDR histogram
+// Values below 128 each have a bucket of their own; above that, each power of
+// two is split into 64 buckets. A histogram is recorded to from one thread
+class LatencyHistogram {
+  static final int SUB_BITS = 7;
+  static final int HALF = 1 << (SUB_BITS - 1);
+  static final int BUCKETS = ((63 - SUB_BITS) << (SUB_BITS - 1)) + 2 * HALF;
+
+  long[] counts;
+  long total;
+  long sum;
+  long max;
+
+  LatencyHistogram() {
+    this.counts = new long[BUCKETS];
+  }
+
+  // Returns the bucket of the given value
+  static int bucket(long value) {
+    if (value < 2 * HALF) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS + 1;
+    return (shift << (SUB_BITS - 1)) + (int) (value >>> shift);
+  }
+
+  // Returns the largest value that falls in the given bucket
+  static long highest(int bucket) {
+    if (bucket < 2 * HALF) {
+      return bucket;
+    }
+    int shift = (bucket >> (SUB_BITS - 1)) - 1;
+    long top = bucket - ((long) shift << (SUB_BITS - 1));
+    return ((top + 1) << shift) - 1;
+  }
+
+  // EFFECT: counts the given value, taking negative values as 0
+  void record(long value) {
+    long v = Math.max(0, value);
+    this.counts[bucket(v)]++;
+    this.total++;
+    this.sum += v;
+    this.max = Math.max(this.max, v);
+  }
+
+  // Returns the number of values recorded
+  long count() {
+    return this.total;
+  }
+
+  // Returns the mean of the values recorded, or 0 if there are none
+  double mean() {
+    return this.total == 0 ? 0 : (double) this.sum / this.total;
+  }
+
+  // Returns the smallest value (to within the precision of the buckets) that at
+  // least the given percentage of the values recorded are no larger than, or 0
+  // if there are none
+  long percentile(double percent) {
+    long rank = Math.max(1, (long) Math.ceil(percent / 100 * this.total));
+    long seen = 0;
+    for (int b = 0; b < BUCKETS; b++) {
+      seen += this.counts[b];
+      if (seen >= rank) {
+        return Math.min(highest(b), this.max);
+      }
+    }
+    return 0;
+  }
+
+  // EFFECT: adds the counts of the given histogram to this one
+  void add(LatencyHistogram other) {
+    for (int b = 0; b < BUCKETS; b++) {
+      this.counts[b] += other.counts[b];
+    }
+    this.total += other.total;
+    this.sum += other.sum;
+    this.max = Math.max(this.max, other.max);
+  }
+
+  // EFFECT: forgets every value recorded
+  void reset() {
+    Arrays.fill(this.counts, 0);
+    this.total = 0;
+    this.sum = 0;
+    this.max = 0;
+  }
+}
+
+// A frame drawn by makeScene, for Java Flight Recorder
+@Name("minesweeper.Frame")
+@Label("Frame")
+@Category("Minesweeper")
+@Description("A scene drawn by makeScene")
+class FrameEvent extends Event {
+  @Label("Frame Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long frameTime;
+}
+
+// A click handled by onMouseClicked, for Java Flight Recorder
+@Name("minesweeper.Click")
+@Label("Click")
+@Category("Minesweeper")
+@Description("A mouse click and the tiles it uncovered")
+class ClickEvent extends Event {
+  @Label("Button")
+  String button;
+  @Label("Tile")
+  int tile;
+  @Label("Tiles Uncovered")
+  int revealed;
+  @Label("Click Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long clickTime;
+}
+
+// A board built with its mines placed, for Java Flight Recorder
+@Name("minesweeper.BoardBuilt")
+@Label("Board Built")
+@Category("Minesweeper")
+@Description("A board built and mined for a new game")
+class BoardBuiltEvent extends Event {
+  @Label("Width")
+  int width;
+  @Label("Height")
+  int height;
+  @Label("Mines")
+  int mines;
+  @Label("Build Time")
+  @Timespan(Timespan.NANOSECONDS)
+  long buildTime;
+  @Label("Allocated")
+  @DataAmount
+  long allocated;
+}
+
+// Measures the hot paths of a session -- the time to draw each frame and to
+// handle each click, the number of tiles each click uncovers, the time to build
+// each board and the bytes each of them allocates -- into histograms, and emits
+// them as Java Flight Recorder events whenever a recording asks for them
+// Nothing is measured while the histograms are off and no recording wants the
+// events: start then returns 0 without reading the clock, and every record
+// method returns at once when given 0
+// The histograms are turned on with -Dminesweeper.metrics=true (or the "m" key
+// in the game), and -Dminesweeper.metrics.dump=N prints them every N seconds
+class Metrics {
+  static final Metrics SESSION = new Metrics(Boolean.getBoolean("minesweeper.metrics"),
+      Long.getLong("minesweeper.metrics.dump", 0) * 1000, System.err);
+  static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  // whether the histograms are on, and whether a recording wants the events
+  volatile boolean enabled;
+  volatile boolean recording;
+  LatencyHistogram frameNanos;
+  LatencyHistogram frameBytes;
+  LatencyHistogram clickNanos;
+  LatencyHistogram clickBytes;
+  LatencyHistogram revealSizes;
+  LatencyHistogram buildNanos;
+  LatencyHistogram buildBytes;
+  // how often to print the histograms, in milliseconds (0 for never), and when
+  // they were last printed
+  long dumpMillis;
+  long lastDump;
+  PrintStream out;
+
+  Metrics(boolean enabled, long dumpMillis, PrintStream out) {
+    this.enabled = enabled;
+    this.frameNanos = new LatencyHistogram();
+    this.frameBytes = new LatencyHistogram();
+    this.clickNanos = new LatencyHistogram();
+    this.clickBytes = new LatencyHistogram();
+    this.revealSizes = new LatencyHistogram();
+    this.buildNanos = new LatencyHistogram();
+    this.buildBytes = new LatencyHistogram();
+    this.dumpMillis = dumpMillis;
+    this.lastDump = System.currentTimeMillis();
+    this.out = out;
+    this.watchRecordings();
+  }
+
+  // EFFECT: keeps recording up to date with whether a flight recording has any
+  // of the events of this class enabled
+  void watchRecordings() {
+    try {
+      FlightRecorder.addListener(new FlightRecorderListener() {
+        public void recordingStateChanged(Recording recording) {
+          Metrics.this.recording = Metrics.recordingWanted();
+        }
+      });
+      this.recording = Metrics.recordingWanted();
+    }
+    catch (IllegalStateException | SecurityException e) {
+      // without a flight recorder there are only the histograms
+      this.recording = false;
+    }
+  }
+
+  // Checks if a running flight recording has any of the events enabled
+  static boolean recordingWanted() {
+    return EventType.getEventType(FrameEvent.class).isEnabled()
+        || EventType.getEventType(ClickEvent.class).isEnabled()
+        || EventType.getEventType(BoardBuiltEvent.class).isEnabled();
+  }
+
+  // Returns the number of bytes the current thread has allocated so far
+  static long allocated() {
+    return THREADS.getCurrentThreadAllocatedBytes();
+  }
+
+  // Returns the time at which a measured operation starts, or 0 if nothing is
+  // being measured
+  long start() {
+    return this.enabled || this.recording ? System.nanoTime() : 0;
+  }
+
+  // Returns the bytes allocated so far, to measure the allocations of an
+  // operation, or 0 if the histograms are off
+  long startBytes() {
+    return this.enabled ? Metrics.allocated() : 0;
+  }
+
+  // EFFECT: records a frame that started at the given time, having allocated
+  // the given bytes by then
+  void frame(long start, long bytes) {
+    if (start == 0) {
+      return;
+    }
+    long nanos = System.nanoTime() - start;
+    if (this.enabled) {
+      this.frameNanos.record(nanos);
+      this.frameBytes.record(Metrics.allocated() - bytes);
+      this.dumpIfDue();
+    }
+    if (this.recording) {
+      FrameEvent event = new FrameEvent();
+      if (event.shouldCommit()) {
+        event.frameTime = nanos;
+        event.commit();
+      }
+    }
+  }
+
+  // EFFECT: records a click with the given button on the given tile, which
+  // uncovered the given number of tiles and started at the given time, having
+  // allocated the given bytes by then
+  void click(long start, long bytes, String button, int tile, int revealed) {
+    if (start == 0) {
+      return;
+    }
+    long nanos = System.nanoTime() - start;
+    if (this.enabled) {
+      this.clickNanos.record(nanos);
+      this.clickBytes.record(Metrics.allocated() - bytes);
+      if (revealed > 0) {
+        this.revealSizes.record(revealed);
+      }
+    }
+    if (this.recording) {
+      ClickEvent event = new ClickEvent();
+      if (event.shouldCommit()) {
+        event.button = button;
+        event.tile = tile;
+        event.revealed = revealed;
+        event.clickTime = nanos;
+        event.commit();
+      }
+    }
+  }
+
+  // EFFECT: records a board of the given size and number of mines whose
+  // building started at the given time, having allocated the given bytes by
+  // then
+  void build(long start, long bytes, int width, int height, int mines) {
+    if (start == 0) {
+      return;
+    }
+    long nanos = System.nanoTime() - start;
+    long allocated = this.enabled ? Metrics.allocated() - bytes : 0;
+    if (this.enabled) {
+      this.buildNanos.record(nanos);
+      this.buildBytes.record(allocated);
+    }
+    if (this.recording) {
+      BoardBuiltEvent event = new BoardBuiltEvent();
+      if (event.shouldCommit()) {
+        event.width = width;
+        event.height = height;
+        event.mines = mines;
+        event.buildTime = nanos;
+        event.allocated = allocated;
+        event.commit();
+      }
+    }
+  }
+
+  // EFFECT: prints the histograms if it has been long enough since they last
+  // were
+  void dumpIfDue() {
+    long now = System.currentTimeMillis();
+    if (this.dumpMillis > 0 && now - this.lastDump >= this.dumpMillis) {
+      this.lastDump = now;
+      this.out.println(this.summary());
+    }
+  }
+
+  // Returns the given number of nanoseconds, in microseconds
+  static String micros(long nanos) {
+    return String.format("%.1fus", nanos / 1000.0);
+  }
+
+  // Returns a line describing the given histogram of times
+  static String times(String name, LatencyHistogram times) {
+    return name + " n=" + times.count() + " p50=" + Metrics.micros(times.percentile(50))
+        + " p99=" + Metrics.micros(times.percentile(99)) + " max="
+        + Metrics.micros(times.percentile(100));
+  }
+
+  // Returns the frame times, one line long enough to draw over the game
+  String overlay() {
+    return "frame p50 " + Metrics.micros(this.frameNanos.percentile(50)) + "  p99 "
+        + Metrics.micros(this.frameNanos.percentile(99)) + "  (" + this.frameNanos.count()
+        + " frames)";
+  }
+
+  // Returns every histogram, one per line
+  String summary() {
+    return Metrics.times("frame", this.frameNanos) + " bytes p50=" + this.frameBytes.percentile(50)
+        + "\n" + Metrics.times("click", this.clickNanos) + " bytes p50="
+        + this.clickBytes.percentile(50) + "\nreveal n=" + this.revealSizes.count() + " p50="
+        + this.revealSizes.percentile(50) + " p99=" + this.revealSizes.percentile(99) + " max="
+        + this.revealSizes.percentile(100) + "\n" + Metrics.times("build", this.buildNanos)
+        + " bytes p50=" + this.buildBytes.percentile(50);
+  }
+
+  // EFFECT: forgets everything measured so far
+  void reset() {
+    this.frameNanos.reset();
+    this.frameBytes.reset();
+    this.clickNanos.reset();
+    this.clickBytes.reset();
+    this.revealSizes.reset();
+    this.buildNanos.reset();
+    this.buildBytes.reset();
+  }
+}
+
+class ExamplesMetrics {
+  // tests that bucket and highest in the class LatencyHistogram agree and keep
+  // every value to two significant digits
+  void testBuckets(Tester t) {
+    boolean exact = true;
+    for (long v = 0; v < 128; v++) {
+      exact = exact && LatencyHistogram.bucket(v) == v && LatencyHistogram.highest((int) v) == v;
+    }
+    t.checkExpect(exact, true);
+    t.checkExpect(LatencyHistogram.bucket(128), 128);
+    t.checkExpect(LatencyHistogram.highest(128), 129L);
+    t.checkExpect(LatencyHistogram.bucket(Long.MAX_VALUE), LatencyHistogram.BUCKETS - 1);
+    t.checkExpect(LatencyHistogram.highest(LatencyHistogram.BUCKETS - 1), Long.MAX_VALUE);
+    Random rand = new Random(3);
+    boolean close = true;
+    for (int i = 0; i < 10000; i++) {
+      long v = rand.nextLong() >>> (1 + rand.nextInt(63));
+      int b = LatencyHistogram.bucket(v);
+      long high = LatencyHistogram.highest(b);
+      close = close && high >= v && high - v <= v / 64
+          && (b == 0 || LatencyHistogram.highest(b - 1) < v);
+    }
+    t.checkExpect(close, true);
+  }
+
+  // tests percentile in the class LatencyHistogram against sorted values
+  void testPercentiles(Tester t) {
+    LatencyHistogram h = new LatencyHistogram();
+    t.checkExpect(h.percentile(50), 0L);
+    Random rand = new Random(5);
+    long[] values = new long[5000];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) Math.exp(rand.nextDouble() * 20);
+      h.record(values[i]);
+    }
+    Arrays.sort(values);
+    double[] percents = { 1, 50, 90, 99, 99.9, 100 };
+    for (double p : percents) {
+      long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+      long found = h.percentile(p);
+      t.checkExpect(found >= exact && found - exact <= exact / 64, true);
+    }
+    t.checkExpect(h.percentile(100), values[values.length - 1]);
+    t.checkExpect(h.count(), 5000L);
+    LatencyHistogram sum = new LatencyHistogram();
+    sum.add(h);
+    sum.add(h);
+    t.checkExpect(sum.count(), 10000L);
+    t.checkExpect(sum.percentile(50), h.percentile(50));
+    sum.reset();
+    t.checkExpect(sum.count(), 0L);
+  }
+
+  // tests that a session with the histograms off measures nothing
+  void testDisabled(Tester t) {
+    Metrics metrics = new Metrics(false, 0, System.err);
+    metrics.recording = false;
+    t.checkExpect(metrics.start(), 0L);
+    t.checkExpect(metrics.startBytes(), 0L);
+    metrics.frame(0, 0);
+    metrics.click(0, 0, "LeftButton", 0, 10);
+    t.checkExpect(metrics.frameNanos.count(), 0L);
+    t.checkExpect(metrics.revealSizes.count(), 0L);
+  }
+
+  // tests that a Minesweeper measures its frames and clicks into its metrics
+  void testMinesweeper(Tester t) {
+    Metrics metrics = new Metrics(true, 0, System.err);
+    Minesweeper world = new Minesweeper(new Random(2), 9, 9, 10);
+    world.metrics = metrics;
+    world.makeScene();
+    world.makeScene();
+    world.onMouseClicked(new Posn(1, 1), "RightButton");
+    world.onMouseClicked(new Posn(1, 1), "RightButton");
+    t.checkExpect(metrics.frameNanos.count(), 2L);
+    t.checkExpect(metrics.clickNanos.count(), 2L);
+    // flags uncover nothing
+    t.checkExpect(metrics.revealSizes.count(), 0L);
+    t.checkExpect(metrics.summary().startsWith("frame n=2 p50="), true);
+    t.checkExpect(metrics.summary().split("\n").length, 4);
+    metrics.reset();
+    t.checkExpect(metrics.frameNanos.count(), 0L);
+  }
+
+  // tests that "m" turns the overlay with the frame times on and off
+  void testOverlay(Tester t) {
+    Metrics metrics = new Metrics(false, 0, System.err);
+    Minesweeper world = new Minesweeper(new Random(2), 9, 9, 10);
+    world.metrics = metrics;
+    world.onKeyEvent("m");
+    t.checkExpect(world.overlay, true);
+    t.checkExpect(metrics.enabled, true);
+    world.makeScene();
+    t.checkExpect(metrics.overlay().startsWith("frame p50 "), true);
+    t.checkExpect(metrics.overlay().endsWith("(1 frames)"), true);
+    world.onKeyEvent("m");
+    t.checkExpect(world.overlay, false);
+    t.checkExpect(metrics.enabled, true);
+    // histograms turned on at startup stay on however often the overlay is
+    // toggled
+    Metrics started = new Metrics(true, 0, System.err);
+    world.metrics = started;
+    world.onKeyEvent("m");
+    world.onKeyEvent("m");
+    t.checkExpect(world.overlay, false);
+    t.checkExpect(started.enabled, true);
+  }
+
+  // tests that a game built for the player is measured as a board build, and
+  // that a GameEngine built anywhere else is not
+  void testBuild(Tester t) {
+    Metrics metrics = new Metrics(true, 0, System.err);
+    GameEngine game = Minesweeper.mined(metrics, new Random(2), 9, 9, 10);
+    t.checkExpect(game.board.size(), 81);
+    t.checkExpect(metrics.buildNanos.count(), 1L);
+    t.checkExpect(metrics.buildBytes.count(), 1L);
+    long built = Metrics.SESSION.buildNanos.count();
+    new GameEngine(new Random(2), 9, 9, 10);
+    t.checkExpect(Metrics.SESSION.buildNanos.count(), built);
+  }
+
+  // tests that the histograms are printed once the dump interval has passed
+  void testDump(Tester t) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Metrics metrics = new Metrics(true, 1, new PrintStream(bytes, true));
+    metrics.lastDump = 0;
+    metrics.frame(metrics.start(), metrics.startBytes());
+    t.checkExpect(bytes.toString().startsWith("frame n=1 "), true);
+  }
+
+  // tests that a flight recording gets the events of a game
+  void testFlightRecording(Tester t) {
+    Path file;
+    try {
+      file = Files.createTempFile("session", ".jfr");
+      file.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Metrics metrics = new Metrics(false, 0, System.err);
+    try (Recording recording = new Recording()) {
+      recording.enable(FrameEvent.class);
+      recording.enable(ClickEvent.class);
+      recording.enable(BoardBuiltEvent.class);
+      recording.start();
+      t.checkExpect(recording.getState(), RecordingState.RUNNING);
+      t.checkExpect(metrics.recording, true);
+      Minesweeper world = new Minesweeper(new Random(2), 9, 9, 10);
+      world.metrics = metrics;
+      world.makeScene();
+      world.onMouseClicked(new Posn(1, 1), "RightButton");
+      metrics.build(metrics.start(), 0, 9, 9, 10);
+      recording.stop();
+      recording.dump(file);
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+      int frames = 0;
+      int clicks = 0;
+      int builds = 0;
+      for (RecordedEvent event : events) {
+        String name = event.getEventType().getName();
+        frames += name.equals("minesweeper.Frame") ? 1 : 0;
+        clicks += name.equals("minesweeper.Click") ? 1 : 0;
+        builds += name.equals("minesweeper.BoardBuilt") ? 1 : 0;
+      }
+      t.checkExpect(frames, 1);
+      t.checkExpect(clicks, 1);
+      t.checkExpect(builds >= 1, true);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    t.checkExpect(metrics.recording, false);
+  }
+}
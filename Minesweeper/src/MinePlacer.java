@@ -0,0 +1,146 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.Tester;
+
+// Places mines on a Board by sampling tiles without replacement (Floyd's
+// algorithm), so placing k mines takes exactly k draws from the random number
+// generator however dense the board is
+class MinePlacer {
+  // the tiles excluded when none are kept safe
+  static final int[] NONE = new int[0];
+
+  Random rand;
+
+  MinePlacer(Random rand) {
+    this.rand = rand;
+  }
+
+  // EFFECT: places the given number of mines on the given board, which has none
+  void place(Board board, int count) {
+    this.place(board, count, -1);
+  }
+
+  // EFFECT: places the given number of mines on the given board, which has none,
+  // keeping them off the given safe tile and its neighbors (no tile is kept safe
+  // if safeTile is -1)
+  void place(Board board, int count, int safeTile) {
+    int[] excluded = this.excluded(board, safeTile);
+    int free = board.size() - excluded.length;
+    if (count < 0 || count > free) {
+      throw new IllegalArgumentException(
+          "Cannot place " + count + " mines on " + free + " free tiles");
+    }
+    // the free tiles are numbered 0 to free - 1 and chosen by that number, so the
+    // excluded tiles are never drawn at all
+    for (int j = free - count; j < free; j++) {
+      int tile = this.freeTile(this.rand.nextInt(j + 1), excluded);
+      if (board.isMine(tile)) {
+        tile = this.freeTile(j, excluded);
+      }
+      board.setMine(tile, true);
+    }
+  }
+
+  // Returns the tiles that must stay free of mines, in ascending order
+  int[] excluded(Board board, int safeTile) {
+    if (safeTile < 0) {
+      return MinePlacer.NONE;
+    }
+    int[] result = new int[board.topology.maxDegree() + 1];
+    int count = board.topology.neighbors(safeTile, result);
+    result[count] = safeTile;
+    result = Arrays.copyOf(result, count + 1);
+    Arrays.sort(result);
+    return result;
+  }
+
+  // Returns the index of the free tile with the given number, skipping over the
+  // given sorted excluded tiles
+  int freeTile(int n, int[] excluded) {
+    int tile = n;
+    for (int e : excluded) {
+      if (e <= tile) {
+        tile++;
+      }
+    }
+    return tile;
+  }
+}
+
+class ExamplesMinePlacer {
+  // Returns the number of mines on the given board
+  int mines(Board board) {
+    int count = 0;
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isMine(i)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  // tests place in the class MinePlacer
+  void testPlace(Tester t) {
+    Board board = new Board(10, 8);
+    new MinePlacer(new Random(1)).place(board, 20);
+    t.checkExpect(this.mines(board), 20);
+    // a board can be filled completely
+    Board full = new Board(4, 4);
+    new MinePlacer(new Random(1)).place(full, 16);
+    t.checkExpect(this.mines(full), 16);
+    Board empty = new Board(4, 4);
+    new MinePlacer(new Random(1)).place(empty, 0);
+    t.checkExpect(this.mines(empty), 0);
+  }
+
+  // tests that placement is the same for the same seed
+  void testDeterministic(Tester t) {
+    Board b1 = new Board(30, 16);
+    Board b2 = new Board(30, 16);
+    new MinePlacer(new Random(42)).place(b1, 99);
+    new MinePlacer(new Random(42)).place(b2, 99);
+    t.checkExpect(b1.tiles(), b2.tiles());
+  }
+
+  // tests that the safe tile and its neighbors never get a mine, even when every
+  // other tile does
+  void testSafeTile(Tester t) {
+    for (int seed = 0; seed < 20; seed++) {
+      Board board = new Board(5, 5);
+      new MinePlacer(new Random(seed)).place(board, 16, board.index(2, 3));
+      t.checkExpect(this.mines(board), 16);
+      for (int r = 1; r <= 3; r++) {
+        for (int c = 2; c <= 4; c++) {
+          t.checkExpect(board.isMine(board.index(r, c)), false);
+        }
+      }
+    }
+    Board corner = new Board(3, 3);
+    new MinePlacer(new Random(3)).place(corner, 5, 0);
+    t.checkExpect(this.mines(corner), 5);
+    t.checkExpect(corner.countMines(0), 0);
+  }
+
+  // tests freeTile in the class MinePlacer
+  void testFreeTile(Tester t) {
+    MinePlacer placer = new MinePlacer(new Random(1));
+    int[] excluded = new int[] { 1, 2, 5 };
+    t.checkExpect(placer.freeTile(0, excluded), 0);
+    t.checkExpect(placer.freeTile(1, excluded), 3);
+    t.checkExpect(placer.freeTile(2, excluded), 4);
+    t.checkExpect(placer.freeTile(3, excluded), 6);
+    t.checkExpect(placer.freeTile(3, new int[0]), 3);
+  }
+
+  // tests that impossible mine counts are rejected
+  void testInvalidCounts(Tester t) {
+    MinePlacer placer = new MinePlacer(new Random(1));
+    t.checkException(new IllegalArgumentException("Cannot place 26 mines on 25 free tiles"),
+        placer, "place", new Board(5, 5), 26);
+    t.checkException(new IllegalArgumentException("Cannot place -1 mines on 25 free tiles"),
+        placer, "place", new Board(5, 5), -1);
+    t.checkException(new IllegalArgumentException("Cannot place 17 mines on 16 free tiles"),
+        placer, "place", new Board(5, 5), 17, 12);
+  }
+}
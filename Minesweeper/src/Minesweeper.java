@@ -1,5 +1,3 @@
-import java.util.ArrayList;
-import java.util.Arrays;
 import tester.*;
 import javalib.impworld.*;
 import java.awt.Color;
@@ -8,55 +6,50 @@ import java.util.Random;
 
 interface IUtils {
   int TILE_SIZE = 30;
+  // the most tiles shown at once, across and down
+  int VIEW_COLUMNS = 40;
+  int VIEW_ROWS = 24;
+  // whether to draw the board into one raster, copying only the tiles that
+  // changed, instead of as a tree of tile images -- off by default, as it only
+  // pays off when panning across large boards (see RasterRenderer)
+  boolean RASTER = Boolean.getBoolean("minesweeper.raster");
 }
 
-// Represents the Minesweeper game
+// Represents the Minesweeper game, drawing a GameEngine and passing mouse
+// clicks on to it -- boards larger than the window scroll with the arrow keys
 class Minesweeper extends World {
   Random rand;
   int width;
   int height;
   int mineCount;
-  ArrayList<ArrayList<Cell>> grid;
+  GameEngine game;
+  Board board;
+  Viewport view;
+  IBoardRenderer renderer;
   int gameWidth;
   int gameHeight;
-  int revealed;
+  // where clicks are recorded, or null if they are not
+  MoveRecorder recorder;
+  // the clicks that can be undone and redone
+  History history;
+  // where frames and clicks are measured, and whether the frame times are drawn
+  // over the game
+  Metrics metrics;
+  boolean overlay;
 
   // for testing -- seeded random mine placement
   Minesweeper(Random rand, int width, int height, int mineCount) {
-    this.rand = rand;
-    this.width = width;
-    this.height = height;
-    this.mineCount = mineCount;
-    this.grid = new ArrayList<ArrayList<Cell>>();
-    this.gameWidth = width * IUtils.TILE_SIZE;
-    this.gameHeight = height * IUtils.TILE_SIZE;
-    this.initBoard();
-    this.generateMines();
-    this.createNeighbors();
-
+    this(rand, Minesweeper.mined(Metrics.SESSION, rand, width, height, mineCount));
   }
 
   // for testing -- sets each cell to be visible
   Minesweeper(Random rand, int width, int height, int mineCount, boolean allVisible) {
-    this.rand = rand;
-    this.width = width;
-    this.height = height;
-    this.mineCount = mineCount;
-    this.grid = new ArrayList<ArrayList<Cell>>();
-    this.gameWidth = width * IUtils.TILE_SIZE;
-    this.gameHeight = height * IUtils.TILE_SIZE;
-    this.initBoard();
-    this.generateMines();
-    this.createNeighbors();
+    this(rand, width, height, mineCount);
 
     // sets each cell to be visible if allVisible is true
     if (allVisible) {
-      // loops through 2D ArrayLIst
-      for (ArrayList<Cell> r : this.grid) {
-        // loops through cells
-        for (Cell c : r) {
-          c.visible = true;
-        }
+      for (int i = 0; i < this.board.size(); i++) {
+        this.board.setVisible(i, true);
       }
     }
   }
@@ -66,134 +59,134 @@ class Minesweeper extends World {
     this(new Random(), width, height, mineCount);
   }
 
-  // EFFECT: Initializes Minesweeper board
-  void initBoard() {
-    // loops to create 2D Arraylist
-    for (int i = 0; i < this.height; i++) {
-      grid.add(new ArrayList<Cell>());
-      ArrayList<Cell> row = this.grid.get(i);
-      // loops to create cells
-      for (int j = 0; j < this.width; j++) {
-        Cell c = new Cell();
-        row.add(c);
-      }
-    }
+  // plays a board from the given pool, which can be cleared without guessing
+  // from the tile that is already open
+  Minesweeper(BoardPool pool, int width, int height, int mineCount) {
+    this(new Random(), pool.take(width, height, mineCount).play());
   }
 
-  // EFFECT: generates mines at random cells
-  void generateMines() {
-    int mineCountIndex = this.mineCount;
-    // places a mine if this random cell does not already have a mine until the
-    // desired mine count is reached
-    while (mineCountIndex > 0) {
-      Cell tile = this.grid.get(this.rand.nextInt(this.height)).get(this.rand.nextInt(this.width));
-      if (!(tile.mine)) {
-        tile.mine = true;
-        mineCountIndex--;
-      }
+  // plays the given game
+  Minesweeper(Random rand, GameEngine game) {
+    this.rand = rand;
+    this.game = game;
+    this.board = game.board;
+    this.width = game.board.width;
+    this.height = game.board.height;
+    this.mineCount = game.mineCount;
+    this.view = new Viewport(IUtils.VIEW_COLUMNS, IUtils.VIEW_ROWS, this.width, this.height);
+    if (IUtils.RASTER) {
+      this.renderer = new RasterRenderer(this.board, this.view);
+    }
+    else {
+      this.renderer = new BoardRenderer(this.board, this.view);
     }
+    this.history = new History();
+    this.metrics = Metrics.SESSION;
+    this.overlay = false;
+    this.gameWidth = this.view.pixelWidth();
+    this.gameHeight = this.view.pixelHeight();
   }
 
-  // Reveals all mines
-  public void revealMines() {
-    for (ArrayList<Cell> r : grid) {
-      for (Cell c : r) {
-
-        if (c.mine) {
-          c.visible = true;
-        }
-      }
-    }
+  // Returns a new game of the given size with the given number of mines placed
+  // by a MinePlacer drawing from the given Random, measured into the given
+  // metrics as a board build -- only games built for the player are measured,
+  // since the histograms are recorded to from one thread
+  static GameEngine mined(Metrics metrics, Random rand, int width, int height,
+      int mineCount) {
+    long start = metrics.start();
+    long bytes = metrics.startBytes();
+    GameEngine game = new GameEngine(rand, width, height, mineCount);
+    metrics.build(start, bytes, width, height, mineCount);
+    return game;
   }
 
   // Draws the current state of the game
   public WorldScene makeScene() {
-    WorldScene board = new WorldScene(this.gameWidth, this.gameHeight);
-    WorldImage squares = new EmptyImage();
-    // loops through 2D ArrayList to draw columns
-    for (int i = 0; i < this.grid.size(); i++) {
-      WorldImage drawRow = new EmptyImage();
-      ArrayList<Cell> row = this.grid.get(i);
-      // loops through cells to draw rows
-      for (int j = 0; j < row.size(); j++) {
-        drawRow = new BesideImage(drawRow, row.get(j).draw());
-      }
-      squares = new AboveImage(squares, drawRow);
-    }
-    board.placeImageXY(squares, gameWidth / 2, gameHeight / 2);
-    return board;
-  }
-
-  // EFFECT: loops through each cell to update its neighbors
-  void createNeighbors() {
-    for (int i = 0; i < this.grid.size(); i++) {
-      ArrayList<Cell> row = this.grid.get(i);
-      int j = 0;
-      for (Cell c : row) {
-        this.updateNeighbors(c, i, j);
-        j++;
-      }
-    }
-  }
-
-  // EFFECT: if this cell is within one x or y of the given Cell, adds itself to
-  // the given cell's list of neighbors
-  void updateNeighbors(Cell c, int x, int y) {
-    // loops through 2D ArrayList to see if this x is within one unit of the given
-    // cell's x
-    for (int i = 0; i < this.grid.size(); i++) {
-      ArrayList<Cell> row = this.grid.get(i);
-      if (i + 1 == x || i - 1 == x || i == x) {
-        int countY = 0;
-        // loops through the Cells to see if this y is within one unit of the given
-        // cell's y
-        for (Cell n : row) {
-          if ((countY + 1 == y || countY - 1 == y || (countY == y && i != x))) {
-            c.neighbors.add(n);
-          }
-          countY++;
-        }
-      }
+    long start = this.metrics.start();
+    long bytes = this.metrics.startBytes();
+    WorldScene scene = new WorldScene(this.gameWidth, this.gameHeight);
+    scene.placeImageXY(this.renderer.draw(), gameWidth / 2, gameHeight / 2);
+    if (this.overlay) {
+      scene.placeImageXY(new TextImage(this.metrics.overlay(), IUtils.TILE_SIZE / 2, Color.red),
+          this.gameWidth / 2, IUtils.TILE_SIZE / 2);
     }
+    this.metrics.frame(start, bytes);
+    return scene;
   }
 
   public void onMouseClicked(Posn pos, String buttonName) {
-    // left click to reveal tile, as long as the tile is not flagged
-    if (buttonName.equals("LeftButton")
-        && !this.grid.get(pos.y / IUtils.TILE_SIZE).get(pos.x / IUtils.TILE_SIZE).flagged) {
-      this.grid.get(pos.y / IUtils.TILE_SIZE).get(pos.x / IUtils.TILE_SIZE).visible = true;
+    long start = this.metrics.start();
+    long bytes = this.metrics.startBytes();
+    int tile = this.board.index(this.view.row(pos.y), this.view.column(pos.x));
+    GameEngine before = this.game.snapshot();
+    int stamp = this.board.stamp;
+    int revealed = 0;
+    // left click to reveal tile, as long as the tile is not flagged -- opens the
+    // whole region around it if it has no adjacent mines
+    if (buttonName.equals("LeftButton")) {
+      revealed = this.game.reveal(tile).size;
+      this.recordMove(MoveLog.REVEAL, tile);
     }
     // right click to flag or unflag a tile
     if (buttonName.equals("RightButton")) {
-      this.grid.get(pos.y / IUtils.TILE_SIZE).get(pos.x / IUtils.TILE_SIZE).flagged = !(this.grid
-          .get(pos.y / IUtils.TILE_SIZE).get(pos.x / IUtils.TILE_SIZE).flagged);
+      this.game.toggleFlag(tile);
+      this.recordMove(MoveLog.FLAG, tile);
+    }
+    // clicks that changed nothing are not worth undoing
+    if (this.board.stamp != stamp) {
+      this.history.push(before);
     }
+    this.metrics.click(start, bytes, buttonName, tile, revealed);
 
     // ends game when user wins
-    // loops through each cell and counts the ones that are hidden
-    int hidden = 0;
-    for (int i = 0; i < this.height; i++) {
-      for (int j = 0; j < this.width; j++) {
-
-        Cell c = this.grid.get(i).get(j);
-
-        if (!c.visible) {
-          hidden++;
-        }
-      }
-    }
-    this.revealed = this.width * this.height - hidden;
-    if (hidden == this.mineCount) {
+    if (this.game.status() == GameStatus.WON) {
       this.endOfWorld("You won!");
     }
     // ends game when user clicks on mine
-    if (buttonName.equals("LeftButton")
-        && this.grid.get(pos.y / IUtils.TILE_SIZE).get(pos.x / IUtils.TILE_SIZE).mine) {
-      this.grid.get(pos.y / IUtils.TILE_SIZE).get(pos.x / IUtils.TILE_SIZE).visible = true;
+    if (this.game.status() == GameStatus.LOST) {
       this.endOfWorld("You lost!");
     }
   }
 
+  // "u" undoes the last click and "r" redoes the last undone click, the arrow
+  // keys scroll the board, and "m" measures frames and shows their times
+  public void onKeyEvent(String key) {
+    this.view.onKey(key);
+    if (key.equals("m")) {
+      this.overlay = !this.overlay;
+      // the overlay needs the histograms, which stay on once it is hidden in
+      // case they were asked for at startup
+      if (this.overlay) {
+        this.metrics.enabled = true;
+      }
+    }
+    if (key.equals("u") && this.history.undo(this.game)) {
+      this.recordMove(MoveLog.REWIND, MoveLog.UNDO);
+    }
+    if (key.equals("r") && this.history.redo(this.game)) {
+      this.recordMove(MoveLog.REWIND, MoveLog.REDO);
+    }
+  }
+
+  // EFFECT: records this game, and every click from now on, with the given
+  // recorder
+  void record(MoveRecorder recorder) {
+    this.recorder = recorder;
+    recorder.begin(this.board, this.mineCount);
+  }
+
+  // EFFECT: records the given action on the given tile, ending the recorded
+  // game if the action ended this one
+  void recordMove(int action, int tile) {
+    if (this.recorder != null) {
+      this.recorder.move(action, tile);
+      if (this.game.status() != GameStatus.PLAYING) {
+        this.recorder.end();
+        this.recorder = null;
+      }
+    }
+  }
+
   // displays a message on the screen if the user wins or loses
   public WorldScene lastScene(String msg) {
     WorldImage text = new TextImage(msg, IUtils.TILE_SIZE * 2, Color.blue);
@@ -202,7 +195,8 @@ class Minesweeper extends World {
 
     // displays percentage of cells revealed
     TextImage score = new TextImage(
-        "Revealed " + this.revealed * 100 / (this.width * this.height) + "% of the board",
+        "Revealed " + this.board.revealedCount() * 100 / (this.width * this.height)
+            + "% of the board",
         IUtils.TILE_SIZE, Color.black);
     scene.placeImageXY(score, this.gameWidth / 2, 4 * this.gameHeight / 5);
     return scene;
@@ -217,27 +211,16 @@ class ExamplesMinesweeper {
   Random seed4 = new Random(4);
   // Minesweeper examples
   Minesweeper smallBoard = new Minesweeper(this.seed1, 4, 4, 6);
-  ArrayList<ArrayList<Cell>> smallBoardGrid;
   Minesweeper board1 = new Minesweeper(this.seed2, 2, 2, 0);
   Minesweeper board2 = new Minesweeper(this.seed3, 2, 2, 0, true);
-  // Cell examples
-  Cell cellA1;
-  Cell cellA2;
-  Cell cellA3;
-  Cell cellA4;
-  Cell cellB1;
-  Cell cellB2;
-  Cell cellB3;
-  Cell cellB4;
-  Cell cellC1;
-  Cell cellC2;
-  Cell cellC3;
-  Cell cellC4;
-  Cell cellD1;
-  Cell cellD2;
-  Cell cellD3;
-  Cell cellD4;
-
+  // expected layout of smallBoard, row by row:
+  // M . . .
+  // M . . M
+  // . . . M
+  // . M M .
+  boolean[] smallBoardMines = new boolean[] { true, false, false, false, true, false, false,
+      true, false, false, false, true, false, true, true, false };
+  int[] smallBoardCounts = new int[] { 1, 2, 1, 1, 1, 2, 2, 1, 2, 3, 4, 2, 1, 1, 2, 2 };
 
   // WorldScene example -- 2x2 starting grid
   WorldScene ws = new WorldScene(board1.gameWidth, board1.gameHeight);
@@ -255,49 +238,8 @@ class ExamplesMinesweeper {
     this.seed3 = new Random(3);
     this.seed4 = new Random(4);
     this.smallBoard = new Minesweeper(this.seed1, 4, 4, 6);
-    this.smallBoardGrid = new ArrayList<ArrayList<Cell>>(Arrays.asList(
-        new ArrayList<Cell>(Arrays.asList(this.cellA1, this.cellA2, this.cellA3, this.cellA4)),
-        new ArrayList<Cell>(Arrays.asList(this.cellB1, this.cellB2, this.cellB3, this.cellB4)),
-        new ArrayList<Cell>(Arrays.asList(this.cellC1, this.cellC2, this.cellC3, this.cellC4)),
-        new ArrayList<Cell>(Arrays.asList(this.cellD1, this.cellD2, this.cellD3, this.cellD4))));
-    // invalidBoard = new Minesweeper(5, 5, 26);
     this.board1 = new Minesweeper(this.seed2, 2, 2, 0);
     this.board2 = new Minesweeper(this.seed3, 2, 2, 0, true);
-    // Initializes cell examples
-    this.cellA1 = new Cell(true,
-        new ArrayList<Cell>(Arrays.asList(this.cellA2, this.cellB1, this.cellB2)));
-    this.cellA2 = new Cell(false, new ArrayList<Cell>(
-        Arrays.asList(this.cellA1, this.cellA3, this.cellB1, this.cellB2, this.cellB3)));
-    this.cellA3 = new Cell(false, new ArrayList<Cell>(
-        Arrays.asList(this.cellA2, this.cellA4, this.cellB2, this.cellB3, this.cellB4)));
-    this.cellA4 = new Cell(false,
-        new ArrayList<Cell>(Arrays.asList(this.cellA3, this.cellB3, this.cellB4)));
-    this.cellB1 = new Cell(false, new ArrayList<Cell>(
-        Arrays.asList(this.cellA1, this.cellA2, this.cellB2, this.cellC1, this.cellC2)));
-    this.cellB2 = new Cell(true, new ArrayList<Cell>(Arrays.asList(this.cellA1, this.cellA2,
-        this.cellA3, this.cellB1, this.cellB3, this.cellC1, this.cellC2, this.cellC3)));
-    this.cellB3 = new Cell(true, new ArrayList<Cell>(Arrays.asList(this.cellA2, this.cellA3,
-        this.cellA4, this.cellB2, this.cellB4, this.cellC2, this.cellC3, this.cellC4)));
-    this.cellB4 = new Cell(false, new ArrayList<Cell>(
-        Arrays.asList(this.cellA3, this.cellA4, this.cellB3, this.cellC3, this.cellC4)));
-    this.cellC1 = new Cell(true, new ArrayList<Cell>(
-        Arrays.asList(this.cellB1, this.cellB2, this.cellC2, this.cellD1, this.cellD2)));
-    this.cellC2 = new Cell(false, new ArrayList<Cell>(Arrays.asList(this.cellB1, this.cellB2,
-        this.cellB3, this.cellC1, this.cellC3, this.cellD1, this.cellD2, this.cellD3)));
-    this.cellC3 = new Cell(false, new ArrayList<Cell>(Arrays.asList(this.cellB2, this.cellB3,
-        this.cellB4, this.cellC2, this.cellC4, this.cellD2, this.cellD3, this.cellD4)));
-    this.cellC4 = new Cell(false, new ArrayList<Cell>(
-        Arrays.asList(this.cellB3, this.cellB4, this.cellC3, this.cellD3, this.cellD4)));
-    this.cellD1 = new Cell(true,
-        new ArrayList<Cell>(Arrays.asList(this.cellC1, this.cellC2, this.cellD2)));
-    this.cellD2 = new Cell(false, new ArrayList<Cell>(
-        Arrays.asList(this.cellC1, this.cellC2, this.cellC3, this.cellD1, this.cellD3)));
-    this.cellD3 = new Cell(true, new ArrayList<Cell>(
-        Arrays.asList(this.cellC2, this.cellC3, this.cellC4, this.cellD2, this.cellD4)));
-    this.cellD4 = new Cell(false,
-        new ArrayList<Cell>(Arrays.asList(this.cellC3, this.cellC4, this.cellD3)));
-
-
     // WorldScene example -- 2x2 starting grid
     ws = new WorldScene(board1.gameWidth, board1.gameHeight);
     topCell = new OverlayImage(
@@ -308,32 +250,35 @@ class ExamplesMinesweeper {
     ws.placeImageXY(topCellGrid, board1.gameWidth / 2, board1.gameWidth / 2);
   }
 
-  // Checks if this cell is the same as the given cell
-  boolean sameCell(Cell c1, Cell c2) {
-    return c1.mine == c2.mine && c1.flagged == c2.flagged && c1.visible == c2.visible;
-  }
-
   // Method for testing Minesweeper
-  // Tests initBoard, generateMines, createNeighbors, and updateNeighbors since
-  // these methods are called
+  // Tests the seeded mine placement of the game it plays
   void testMinesweeper(Tester t) {
     this.reset();
-    for (int i = 0; i < this.smallBoard.grid.size(); i++) {
-      ArrayList<Cell> row = this.smallBoard.grid.get(i);
-      ArrayList<Cell> expectedRow = this.smallBoardGrid.get(i);
-      for (int j = 0; j < row.size(); j++) {
-        Cell cell = row.get(j);
-        Cell expectedCell = expectedRow.get(j);
-        // Tests mines
-        t.checkExpect(cell.mine, expectedCell.mine);
-        for (int k = 0; k < cell.neighbors.size(); k++) {
-          // tests each neighbor in each cell
-          t.checkExpect(this.sameCell(cell.neighbors.get(k), expectedCell.neighbors.get(k)), true);
-        }
-      }
+    Board board = this.smallBoard.board;
+    t.checkExpect(board.size(), 16);
+    for (int i = 0; i < board.size(); i++) {
+      // Tests mines
+      t.checkExpect(board.isMine(i), this.smallBoardMines[i]);
+      // tests the mines around each cell
+      t.checkExpect(board.countMines(i), this.smallBoardCounts[i]);
+      t.checkExpect(board.isVisible(i), false);
+    }
+    // every cell of board2 is visible
+    for (int i = 0; i < this.board2.board.size(); i++) {
+      t.checkExpect(this.board2.board.isVisible(i), true);
     }
   }
 
+  // tests that a board cannot hold more mines than cells
+  void testInvalidBoard(Tester t) {
+    t.checkConstructorException(
+        new IllegalArgumentException("Cannot place 26 mines on 25 free tiles"), "Minesweeper",
+        new Random(1), 5, 5, 26);
+    t.checkConstructorException(
+        new IllegalArgumentException("Cannot place -1 mines on 25 free tiles"), "Minesweeper",
+        new Random(1), 5, 5, -1);
+  }
+
   // Runs the Minesweeper game
   void testBigBang(Tester t) {
     this.reset();
@@ -360,7 +305,7 @@ class ExamplesMinesweeper {
 
     // starting board with flag
     this.reset();
-    board1.grid.get(0).get(0).flagged = true;
+    board1.board.setFlagged(0, true);
     WorldScene scene1 = new WorldScene(board1.gameWidth, board1.gameHeight);
     WorldImage topBox1 = new OverlayImage(
         new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
@@ -384,7 +329,7 @@ class ExamplesMinesweeper {
 
     // intermediate board with one mine
     this.reset();
-    board2.grid.get(0).get(0).mine = true;
+    board2.board.setMine(0, true);
     WorldScene scene3 = new WorldScene(board2.gameWidth, board2.gameHeight);
     WorldImage textBox = new OverlayImage(new TextImage("1", IUtils.TILE_SIZE / 2, Color.black),
         new OverlayImage(
@@ -425,7 +370,7 @@ class ExamplesMinesweeper {
     // flooding)
     this.reset();
     t.checkExpect(this.board1.makeScene(), ws);
-    board1.grid.get(1).get(1).mine = true;
+    board1.board.setMine(3, true);
     WorldScene scene1 = new WorldScene(board1.gameWidth, board1.gameHeight);
     this.board1.onMouseClicked(new Posn(1, 1), "LeftButton");
     WorldImage topBox = new OverlayImage(
@@ -446,7 +391,7 @@ class ExamplesMinesweeper {
     // loss conditions)
     this.reset();
     t.checkExpect(this.board1.makeScene(), ws);
-    board1.grid.get(0).get(0).mine = true;
+    board1.board.setMine(0, true);
     WorldScene scene2 = new WorldScene(board1.gameWidth, board1.gameHeight);
     this.board1.onMouseClicked(new Posn(1, 1), "LeftButton");
     WorldImage topBox1 = new OverlayImage(
@@ -465,17 +410,18 @@ class ExamplesMinesweeper {
     scene2.placeImageXY(new TextImage("You lost!", IUtils.TILE_SIZE * 2, Color.blue),
         board1.gameWidth / 2, board1.gameHeight / 2);
     TextImage score1 = new TextImage(
-        "Revealed " + board1.revealed * 100 / (board1.width * board1.height) + "% of the board",
+        "Revealed " + board1.board.revealedCount() * 100 / (board1.width * board1.height)
+            + "% of the board",
         IUtils.TILE_SIZE, Color.black);
     scene2.placeImageXY(score1, board1.gameWidth / 2, 4 * board1.gameHeight / 5);
     t.checkExpect(this.board1.lastScene("You lost!"), scene2);
 
     // tests win conditions
     this.reset();
-    board1.grid.get(0).get(0).mine = true;
-    board1.grid.get(0).get(1).visible = true;
-    board1.grid.get(1).get(0).visible = true;
-    board1.grid.get(1).get(1).visible = true;
+    board1.board.setMine(0, true);
+    board1.board.setVisible(1, true);
+    board1.board.setVisible(2, true);
+    board1.board.setVisible(3, true);
     WorldScene scene3 = new WorldScene(board1.gameWidth, board1.gameHeight);
     WorldImage topBox2 = new OverlayImage(
         new RectangleImage(IUtils.TILE_SIZE, IUtils.TILE_SIZE, OutlineMode.OUTLINE, Color.black),
@@ -492,7 +438,8 @@ class ExamplesMinesweeper {
     scene3.placeImageXY(new TextImage("You won!", IUtils.TILE_SIZE * 2, Color.blue),
         board1.gameWidth / 2, board1.gameHeight / 2);
     TextImage score2 = new TextImage(
-        "Revealed " + board1.revealed * 100 / (board1.width * board1.height) + "% of the board",
+        "Revealed " + board1.board.revealedCount() * 100 / (board1.width * board1.height)
+            + "% of the board",
         IUtils.TILE_SIZE, Color.black);
     scene3.placeImageXY(score2, board1.gameWidth / 2, 4 * board1.gameHeight / 5);
     t.checkExpect(this.board1.lastScene("You won!"), scene3);
@@ -522,4 +469,48 @@ class ExamplesMinesweeper {
     this.board1.onMouseClicked(new Posn(1, 1), "RightButton");
     t.checkExpect(this.board1.makeScene(), ws);
   }
+
+  // tests that a board larger than the window scrolls, and that clicks land on
+  // the tiles under them once it has
+  void testScrolling(Tester t) {
+    Minesweeper world = new Minesweeper(new Random(8), new GameEngine(new Board(100, 50), 0));
+    t.checkExpect(world.gameWidth, IUtils.VIEW_COLUMNS * IUtils.TILE_SIZE);
+    t.checkExpect(world.gameHeight, IUtils.VIEW_ROWS * IUtils.TILE_SIZE);
+    world.onKeyEvent("right");
+    world.onKeyEvent("right");
+    world.onKeyEvent("down");
+    world.onMouseClicked(new Posn(1, 1), "RightButton");
+    t.checkExpect(world.board.isFlagged(world.board.index(1, 2)), true);
+    // the window stops at the edge of the board
+    for (int i = 0; i < 100; i++) {
+      world.onKeyEvent("down");
+    }
+    t.checkExpect(world.view.top, 50 - IUtils.VIEW_ROWS);
+    world.onMouseClicked(new Posn(world.gameWidth - 1, world.gameHeight - 1), "RightButton");
+    t.checkExpect(world.board.isFlagged(world.board.index(49, IUtils.VIEW_COLUMNS + 1)), true);
+  }
+
+  // tests undoing and redoing clicks with onKeyEvent
+  void testOnKeyEvent(Tester t) {
+    this.reset();
+    this.board1.onMouseClicked(new Posn(1, 1), "RightButton");
+    WorldScene flagged = this.board1.makeScene();
+    // revealing the flagged tile changes nothing, so there is nothing to undo
+    this.board1.onMouseClicked(new Posn(1, 1), "LeftButton");
+    this.board1.onKeyEvent("u");
+    t.checkExpect(this.board1.makeScene(), ws);
+    t.checkExpect(this.board1.board.flagged, 0);
+    this.board1.onKeyEvent("u");
+    t.checkExpect(this.board1.makeScene(), ws);
+    this.board1.onKeyEvent("r");
+    t.checkExpect(this.board1.makeScene(), flagged);
+    this.board1.onKeyEvent("r");
+    t.checkExpect(this.board1.makeScene(), flagged);
+    // a click after an undo cannot be undone past
+    this.board1.onKeyEvent("u");
+    this.board1.onMouseClicked(new Posn(IUtils.TILE_SIZE + 1, 1), "RightButton");
+    this.board1.onKeyEvent("r");
+    t.checkExpect(this.board1.board.isFlagged(0), false);
+    t.checkExpect(this.board1.board.isFlagged(1), true);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,592 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javalib.worldimages.Posn;
+import tester.Tester;
+
+// The binary format of recorded games
+// A log file holds any number of games, one after another. Each game is
+//   'M' 'S' version
+//   varint width, varint height, varint mineCount
+//   SEEDED and an 8-byte seed for MinePlacer, or MINE_MAP and one bit per
+//   tile (lowest bit first) set where there is a mine
+// followed by its moves, each a varint tick (milliseconds since the previous
+// move) and a varint tile << 2 | action, and ends with a move whose action is
+// END. A REWIND move undoes the last move if its tile is UNDO and redoes the last
+// undone move if it is REDO. Varints are unsigned LEB128: 7 bits per byte, lowest first, with the
+// high bit set on every byte but the last
+class MoveLog {
+  static final int VERSION = 1;
+  static final int SEEDED = 0;
+  static final int MINE_MAP = 1;
+  // actions
+  static final int REVEAL = 0;
+  static final int FLAG = 1;
+  static final int REWIND = 2;
+  static final int END = 3;
+  // the tiles of a REWIND move
+  static final int UNDO = 0;
+  static final int REDO = 1;
+
+  // EFFECT: writes the given non-negative number to the given buffer as a varint
+  static void putVarint(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  // EFFECT: reads a varint from the given buffer
+  // Returns its value
+  static long getVarint(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0;; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+}
+
+// Appends recorded games to a log file, through a buffer so that a move costs
+// a few bytes of copying rather than a write -- the buffer reaches the file when
+// it fills, when a game ends, and on close
+class MoveRecorder implements AutoCloseable {
+  static final int BUFFER_SIZE = 1 << 16;
+
+  FileChannel channel;
+  ByteBuffer buffer;
+  // when the last move (or the start of the game) was recorded
+  long lastMillis;
+
+  MoveRecorder(Path file) {
+    try {
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  }
+
+  // EFFECT: starts a game whose mines are those of the given board
+  synchronized void begin(Board board, int mineCount) {
+    this.beginHeader(board.width, board.height, mineCount);
+    this.ensure(1);
+    this.buffer.put((byte) MoveLog.MINE_MAP);
+    int bits = 0;
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isMine(i)) {
+        bits |= 1 << (i & 7);
+      }
+      if ((i & 7) == 7 || i == board.size() - 1) {
+        this.ensure(1);
+        this.buffer.put((byte) bits);
+        bits = 0;
+      }
+    }
+  }
+
+  // EFFECT: starts a game whose mines were placed by a MinePlacer drawing from
+  // a Random with the given seed
+  synchronized void begin(int width, int height, int mineCount, long seed) {
+    this.beginHeader(width, height, mineCount);
+    this.ensure(9);
+    this.buffer.put((byte) MoveLog.SEEDED);
+    this.buffer.putLong(seed);
+  }
+
+  // EFFECT: writes the part of a game's header common to both kinds
+  void beginHeader(int width, int height, int mineCount) {
+    this.ensure(18);
+    this.buffer.put((byte) 'M');
+    this.buffer.put((byte) 'S');
+    this.buffer.put((byte) MoveLog.VERSION);
+    MoveLog.putVarint(this.buffer, width);
+    MoveLog.putVarint(this.buffer, height);
+    MoveLog.putVarint(this.buffer, mineCount);
+    this.lastMillis = System.currentTimeMillis();
+  }
+
+  // EFFECT: records the given action on the given tile
+  synchronized void move(int action, int tile) {
+    long now = System.currentTimeMillis();
+    this.ensure(20);
+    MoveLog.putVarint(this.buffer, Math.max(0, now - this.lastMillis));
+    MoveLog.putVarint(this.buffer, (long) tile << 2 | action);
+    this.lastMillis = now;
+  }
+
+  // EFFECT: ends the current game and writes what is buffered to the file
+  synchronized void end() {
+    this.move(MoveLog.END, 0);
+    this.flush();
+  }
+
+  // EFFECT: makes room for the given number of bytes in the buffer
+  void ensure(int bytes) {
+    if (this.buffer.remaining() < bytes) {
+      this.flush();
+    }
+  }
+
+  // EFFECT: writes what is buffered to the file
+  synchronized void flush() {
+    this.buffer.flip();
+    try {
+      while (this.buffer.hasRemaining()) {
+        this.channel.write(this.buffer);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.buffer.clear();
+  }
+
+  public synchronized void close() {
+    this.flush();
+    try {
+      this.channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+// Represents the header of a recorded game: its size and mine count, and
+// either the seed its mines were placed with or a map of them
+class LogHeader {
+  int width;
+  int height;
+  int mineCount;
+  long seed;
+  // the bits of the mine map, or null for a seeded game
+  ByteBuffer mineMap;
+
+  LogHeader(int width, int height, int mineCount, long seed, ByteBuffer mineMap) {
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    this.seed = seed;
+    this.mineMap = mineMap;
+  }
+
+  // Returns a new board with this game's mines
+  Board board() {
+    Board board = new Board(this.width, this.height);
+    if (this.mineMap == null) {
+      new MinePlacer(new Random(this.seed)).place(board, this.mineCount);
+    }
+    else {
+      for (int i = 0; i < board.size(); i += 8) {
+        int bits = this.mineMap.get(i >> 3);
+        for (int k = 0; k < 8 && i + k < board.size(); k++) {
+          if ((bits & 1 << k) != 0) {
+            board.setMine(i + k, true);
+          }
+        }
+      }
+    }
+    return board;
+  }
+}
+
+// Represents a listener that is told the games of a log as it is read
+interface IReplayListener {
+  // EFFECT: starts a game with the given header
+  void begin(LogHeader header);
+
+  // EFFECT: applies the given action to the given tile, which happened the
+  // given number of milliseconds after the previous move
+  void move(long millis, int action, int tile);
+
+  // EFFECT: ends the current game -- complete is false for a game cut short
+  // at the end of the log
+  void end(boolean complete);
+}
+
+// Reads log files by mapping them into memory a window at a time, so that a log
+// is scanned at the speed the disk (or page cache) delivers it
+class MoveLogReader {
+  static final long WINDOW = 1L << 30;
+
+  long window;
+  FileChannel channel;
+  long size;
+  // the mapped window and the file position it starts at
+  MappedByteBuffer buffer;
+  long base;
+
+  MoveLogReader() {
+    this(WINDOW);
+  }
+
+  MoveLogReader(long window) {
+    this.window = window;
+  }
+
+  // EFFECT: tells the given listener every game in the given log file
+  // Returns the number of complete games read
+  int scan(Path file, IReplayListener listener) {
+    int games = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      this.channel = channel;
+      this.size = channel.size();
+      this.map(0, 0);
+      while (this.position() < this.size) {
+        if (this.game(listener)) {
+          games++;
+        }
+        else {
+          break;
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    finally {
+      this.buffer = null;
+      this.channel = null;
+    }
+    return games;
+  }
+
+  // EFFECT: reads one game and tells the given listener about it
+  // Returns whether the game was complete
+  boolean game(IReplayListener listener) throws IOException {
+    boolean begun = false;
+    try {
+      this.ensure(3);
+      if (this.buffer.get() != 'M' || this.buffer.get() != 'S'
+          || this.buffer.get() != MoveLog.VERSION) {
+        throw new IllegalStateException("Not a move log at byte " + (this.position() - 3));
+      }
+      this.ensure(16);
+      int width = (int) MoveLog.getVarint(this.buffer);
+      int height = (int) MoveLog.getVarint(this.buffer);
+      int mineCount = (int) MoveLog.getVarint(this.buffer);
+      LogHeader header;
+      if (this.buffer.get() == MoveLog.SEEDED) {
+        this.ensure(8);
+        header = new LogHeader(width, height, mineCount, this.buffer.getLong(), null);
+      }
+      else {
+        // the map is only looked at if the listener builds the board
+        int bytes = (int) (((long) width * height + 7) / 8);
+        this.ensure(bytes);
+        header = new LogHeader(width, height, mineCount, 0,
+            this.buffer.slice(this.buffer.position(), bytes));
+        this.buffer.position(this.buffer.position() + bytes);
+      }
+      listener.begin(header);
+      begun = true;
+      while (true) {
+        this.ensure(20);
+        long millis = MoveLog.getVarint(this.buffer);
+        long code = MoveLog.getVarint(this.buffer);
+        int action = (int) (code & 3);
+        if (action == MoveLog.END) {
+          listener.end(true);
+          return true;
+        }
+        listener.move(millis, action, (int) (code >>> 2));
+      }
+    }
+    catch (BufferUnderflowException e) {
+      // the log ends part way through a game that was still being recorded
+      if (begun) {
+        listener.end(false);
+      }
+      return false;
+    }
+  }
+
+  // Returns the position in the file of the next byte to read
+  long position() {
+    return this.base + this.buffer.position();
+  }
+
+  // EFFECT: maps the window starting at the given position, making it at least
+  // the given number of bytes long if the file allows
+  void map(long from, int bytes) throws IOException {
+    this.base = from;
+    this.buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, from,
+        Math.min(Math.max(this.window, bytes), this.size - from));
+  }
+
+  // EFFECT: moves the window so that the given number of bytes (or the rest of
+  // the file, if fewer) can be read from it
+  void ensure(int bytes) throws IOException {
+    if (this.buffer.remaining() < bytes && this.base + this.buffer.limit() < this.size) {
+      this.map(this.position(), bytes);
+    }
+  }
+
+  // Returns the totals of replaying every log file in the given directory on the
+  // given number of threads
+  static SimulationStats replayAll(Path directory, int threads) {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(directory)) {
+      files = listing.filter(Files::isRegularFile).collect(Collectors.toList());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      SimulationStats total = pool.submit(() -> files.parallelStream().map(file -> {
+        Replayer replayer = new Replayer();
+        new MoveLogReader().scan(file, replayer);
+        return replayer.stats;
+      }).reduce(new SimulationStats(), (a, b) -> {
+        SimulationStats sum = a.copy();
+        sum.add(b);
+        return sum;
+      })).join();
+      total.elapsedNanos = System.nanoTime() - start;
+      return total;
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+
+  // Replays every log in a directory and prints the totals:
+  // directory [threads]
+  public static void main(String[] args) {
+    int threads = args.length > 1 ? Integer.parseInt(args[1])
+        : Runtime.getRuntime().availableProcessors();
+    System.out.println(MoveLogReader.replayAll(Path.of(args[0]), threads));
+  }
+}
+
+// Plays recorded games again on a GameEngine, counting how they ended
+class Replayer implements IReplayListener {
+  GameEngine game;
+  History history;
+  int moves;
+  SimulationStats stats = new SimulationStats();
+
+  public void begin(LogHeader header) {
+    this.game = new GameEngine(header.board(), header.mineCount);
+    this.history = new History();
+    this.moves = 0;
+  }
+
+  public void move(long millis, int action, int tile) {
+    if (action == MoveLog.REVEAL || action == MoveLog.FLAG) {
+      GameEngine before = this.game.snapshot();
+      int stamp = this.game.board.stamp;
+      if (action == MoveLog.REVEAL) {
+        this.game.reveal(tile);
+      }
+      else {
+        this.game.toggleFlag(tile);
+      }
+      // as in Minesweeper, clicks that changed nothing are not worth undoing
+      if (this.game.board.stamp != stamp) {
+        this.history.push(before);
+      }
+    }
+    else if (action == MoveLog.REWIND && tile == MoveLog.UNDO) {
+      this.history.undo(this.game);
+    }
+    else if (action == MoveLog.REWIND && tile == MoveLog.REDO) {
+      this.history.redo(this.game);
+    }
+    this.moves++;
+  }
+
+  public void end(boolean complete) {
+    this.stats.record(this.game.status(), this.moves, this.game.board);
+  }
+}
+
+class ExamplesMoveLog {
+  // Returns a new, empty log file
+  Path tempLog() {
+    try {
+      Path file = Files.createTempFile("moves", ".log");
+      file.toFile().deleteOnExit();
+      return file;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // tests putVarint and getVarint in the class MoveLog
+  void testVarint(Tester t) {
+    ByteBuffer buffer = ByteBuffer.allocate(64);
+    long[] values = { 0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE };
+    for (long v : values) {
+      MoveLog.putVarint(buffer, v);
+    }
+    // small numbers take one byte
+    t.checkExpect(buffer.get(0), (byte) 0);
+    t.checkExpect(buffer.get(2), (byte) 127);
+    buffer.flip();
+    for (long v : values) {
+      t.checkExpect(MoveLog.getVarint(buffer), v);
+    }
+    t.checkExpect(buffer.hasRemaining(), false);
+  }
+
+  // tests that clicks recorded by Minesweeper replay to the same board
+  void testRecordAndReplay(Tester t) {
+    Path file = this.tempLog();
+    Minesweeper world = new Minesweeper(new Random(6), 9, 9, 10);
+    MoveRecorder recorder = new MoveRecorder(file);
+    world.record(recorder);
+    int safe = 0;
+    while (world.board.isMine(safe)) {
+      safe++;
+    }
+    int mine = 0;
+    while (!world.board.isMine(mine)) {
+      mine++;
+    }
+    world.onMouseClicked(new Posn(mine % 9 * IUtils.TILE_SIZE, mine / 9 * IUtils.TILE_SIZE),
+        "RightButton");
+    world.onMouseClicked(new Posn(safe % 9 * IUtils.TILE_SIZE, safe / 9 * IUtils.TILE_SIZE),
+        "LeftButton");
+    recorder.close();
+
+    Replayer replayer = new Replayer();
+    // the game was not over, so it was not ended: it replays as cut short
+    t.checkExpect(new MoveLogReader().scan(file, replayer), 0);
+    t.checkExpect(replayer.stats.games, 1);
+    t.checkExpect(replayer.moves, 2);
+    t.checkExpect(replayer.game.board.tiles(), world.board.tiles());
+  }
+
+  // tests that undone and redone clicks replay to the same board
+  void testReplayUndo(Tester t) {
+    Path file = this.tempLog();
+    Minesweeper world = new Minesweeper(new Random(6), 9, 9, 10);
+    MoveRecorder recorder = new MoveRecorder(file);
+    world.record(recorder);
+    world.onMouseClicked(new Posn(1, 1), "RightButton");
+    world.onMouseClicked(new Posn(IUtils.TILE_SIZE + 1, 1), "RightButton");
+    world.onKeyEvent("u");
+    world.onKeyEvent("u");
+    world.onKeyEvent("r");
+    world.onMouseClicked(new Posn(1, IUtils.TILE_SIZE + 1), "RightButton");
+    recorder.close();
+
+    Replayer replayer = new Replayer();
+    new MoveLogReader().scan(file, replayer);
+    t.checkExpect(replayer.moves, 6);
+    t.checkExpect(replayer.game.board.tiles(), world.board.tiles());
+    t.checkExpect(world.board.flagged, 2);
+    t.checkExpect(world.board.isFlagged(1), false);
+
+    // a click that changes nothing is logged but leaves nothing to undo
+    Path noop = this.tempLog();
+    Minesweeper other = new Minesweeper(new Random(6), 9, 9, 10);
+    MoveRecorder second = new MoveRecorder(noop);
+    other.record(second);
+    other.onMouseClicked(new Posn(1, 1), "RightButton");
+    other.onMouseClicked(new Posn(IUtils.TILE_SIZE + 1, 1), "RightButton");
+    other.onMouseClicked(new Posn(IUtils.TILE_SIZE + 1, 1), "LeftButton");
+    other.onKeyEvent("u");
+    second.close();
+    Replayer again = new Replayer();
+    new MoveLogReader().scan(noop, again);
+    t.checkExpect(again.moves, 4);
+    t.checkExpect(other.board.flagged, 1);
+    t.checkExpect(again.game.board.flagged, 1);
+    t.checkExpect(again.game.board.tiles(), other.board.tiles());
+  }
+
+  // tests that a seeded header replays the same mines as a seeded GameEngine
+  void testSeeded(Tester t) {
+    Path file = this.tempLog();
+    GameEngine game = new GameEngine(new Random(11), 16, 16, 40);
+    MoveRecorder recorder = new MoveRecorder(file);
+    recorder.begin(16, 16, 40, 11);
+    int tile = 0;
+    while (game.status() == GameStatus.PLAYING) {
+      game.reveal(tile);
+      recorder.move(MoveLog.REVEAL, tile);
+      tile++;
+    }
+    recorder.end();
+    recorder.close();
+    Replayer replayer = new Replayer();
+    t.checkExpect(new MoveLogReader().scan(file, replayer), 1);
+    t.checkExpect(replayer.game.board.tiles(), game.board.tiles());
+    t.checkExpect(replayer.game.status(), game.status());
+    t.checkExpect(replayer.stats.wins, 0);
+  }
+
+  // tests that many games are read across window boundaries, and that a game
+  // cut short at the end of the log is still told
+  void testManyGames(Tester t) {
+    Path file = this.tempLog();
+    MoveRecorder recorder = new MoveRecorder(file);
+    Random rand = new Random(2);
+    for (int g = 0; g < 200; g++) {
+      Board board = new Board(12, 10);
+      new MinePlacer(rand).place(board, 15);
+      recorder.begin(board, 15);
+      for (int k = 0; k < g % 7; k++) {
+        recorder.move(MoveLog.FLAG, rand.nextInt(board.size()));
+      }
+      recorder.end();
+    }
+    recorder.begin(new Board(4, 4), 0);
+    recorder.move(MoveLog.REVEAL, 5);
+    recorder.close();
+
+    Replayer replayer = new Replayer();
+    // a window smaller than one game forces the reader to move it often
+    t.checkExpect(new MoveLogReader(7).scan(file, replayer), 200);
+    t.checkExpect(replayer.stats.games, 201);
+    t.checkExpect(replayer.stats.wins, 1);
+    Replayer whole = new Replayer();
+    new MoveLogReader().scan(file, whole);
+    t.checkExpect(whole.stats.moves, replayer.stats.moves);
+  }
+
+  // tests replayAll in the class MoveLogReader
+  void testReplayAll(Tester t) throws IOException {
+    Path directory = Files.createTempDirectory("logs");
+    directory.toFile().deleteOnExit();
+    for (int f = 0; f < 4; f++) {
+      Path file = directory.resolve("games" + f + ".log");
+      file.toFile().deleteOnExit();
+      MoveRecorder recorder = new MoveRecorder(file);
+      for (int g = 0; g < 25; g++) {
+        recorder.begin(5, 5, 0, g);
+        recorder.move(MoveLog.REVEAL, 12);
+        recorder.end();
+      }
+      recorder.close();
+    }
+    SimulationStats stats = MoveLogReader.replayAll(directory, 2);
+    t.checkExpect(stats.games, 100);
+    t.checkExpect(stats.wins, 100);
+    t.checkExpect(stats.moves, 100L);
+  }
+}
@@ -0,0 +1,793 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tester.Tester;
+
+// Computes the exact chance that each covered tile is a mine, given what a
+// player can see and the total number of mines on the board
+// The covered tiles next to uncovered counts (the frontier) are split into
+// components that share no constraint. The arrangements of each component are
+// counted by how many mines they use, the components are combined with the
+// number of ways to place the remaining mines among the other covered tiles
+// (the interior), and each tile's chance is its share of the weighted total.
+// Components are counted in parallel, and the counts of a component are kept so
+// that a frontier that has not changed since the last move is not counted again
+class ProbabilityEngine {
+  ForkJoinPool pool;
+  // counted components by FrontierComponent.key, least recently used first
+  Map<String, FrontierComponent> cache;
+  AtomicInteger counted;
+  AtomicInteger reused;
+
+  ProbabilityEngine() {
+    this(ForkJoinPool.commonPool(), 512);
+  }
+
+  ProbabilityEngine(ForkJoinPool pool, int cacheSize) {
+    this.pool = pool;
+    this.cache = Collections.synchronizedMap(new LinkedHashMap<String, FrontierComponent>(
+        16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, FrontierComponent> eldest) {
+        return this.size() > cacheSize;
+      }
+    });
+    this.counted = new AtomicInteger();
+    this.reused = new AtomicInteger();
+  }
+
+  // Returns, for every tile of the given board, the chance that it is a mine
+  // when the board holds the given number of mines in all -- uncovered tiles are
+  // 0 and flagged tiles (which are trusted) are 1
+  double[] probabilities(Board board, int mineCount) {
+    double[] result = new double[board.size()];
+    ArrayList<FrontierComponent> components = this.components(board);
+    int minesLeft = mineCount;
+    int interior = 0;
+    boolean[] frontier = new boolean[board.size()];
+    for (FrontierComponent c : components) {
+      for (int tile : c.tiles) {
+        frontier[tile] = true;
+      }
+    }
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isFlagged(i) || (board.isVisible(i) && board.isMine(i))) {
+        minesLeft--;
+        result[i] = 1;
+      }
+      else if (!board.isVisible(i) && !frontier[i]) {
+        interior++;
+      }
+    }
+
+    // counts every component not seen before, in parallel
+    ArrayList<RecursiveAction> counts = new ArrayList<RecursiveAction>();
+    for (FrontierComponent c : components) {
+      if (c.layers == null) {
+        counts.add(new CountTask(c));
+        this.counted.incrementAndGet();
+      }
+      else {
+        this.reused.incrementAndGet();
+      }
+    }
+    this.runAll(counts);
+    for (FrontierComponent c : components) {
+      this.cache.put(c.key, c);
+    }
+
+    // the weight of the arrangements that use the given number of frontier mines
+    int frontierSize = 0;
+    for (FrontierComponent c : components) {
+      frontierSize += c.tiles.length;
+    }
+    double[] weights = this.interiorWeights(frontierSize, minesLeft, interior);
+
+    int n = components.size();
+    double[][] prefix = new double[n + 1][];
+    double[][] suffix = new double[n + 1][];
+    prefix[0] = new double[] { 1 };
+    suffix[n] = new double[] { 1 };
+    for (int k = 0; k < n; k++) {
+      prefix[k + 1] = ProbabilityEngine.normalize(
+          ProbabilityEngine.convolve(prefix[k], components.get(k).ways));
+    }
+    for (int k = n - 1; k >= 0; k--) {
+      suffix[k] = ProbabilityEngine.normalize(
+          ProbabilityEngine.convolve(components.get(k).ways, suffix[k + 1]));
+    }
+
+    // weighs each component by the ways the rest of the board can hold the mines
+    // it leaves over, then shares that weight out among its tiles in parallel
+    ArrayList<RecursiveAction> shares = new ArrayList<RecursiveAction>();
+    for (int k = 0; k < n; k++) {
+      FrontierComponent c = components.get(k);
+      double[] others = ProbabilityEngine.convolve(prefix[k], suffix[k + 1]);
+      double[] byMines = new double[c.tiles.length + 1];
+      for (int s = 0; s < others.length; s++) {
+        if (others[s] != 0) {
+          for (int a = 0; a < byMines.length; a++) {
+            byMines[a] += others[s] * weights[a + s];
+          }
+        }
+      }
+      shares.add(new ShareTask(c, byMines, result));
+    }
+    double total = 0;
+    double interiorMines = 0;
+    for (int s = 0; s < prefix[n].length; s++) {
+      total += prefix[n][s] * weights[s];
+      interiorMines += prefix[n][s] * weights[s] * (minesLeft - s);
+    }
+    if (total == 0) {
+      throw new IllegalStateException("No arrangement of mines fits the board");
+    }
+    this.runAll(shares);
+    if (interior > 0) {
+      for (int i = 0; i < board.size(); i++) {
+        if (!board.isVisible(i) && !board.isFlagged(i) && !frontier[i]) {
+          result[i] = interiorMines / total / interior;
+        }
+      }
+    }
+    return result;
+  }
+
+  // EFFECT: runs the given tasks on this engine's pool
+  void runAll(ArrayList<RecursiveAction> tasks) {
+    if (tasks.size() == 1) {
+      tasks.get(0).invoke();
+    }
+    else if (tasks.size() > 1) {
+      this.pool.invoke(new RecursiveAction() {
+        protected void compute() {
+          ForkJoinTask.invokeAll(tasks);
+        }
+      });
+    }
+  }
+
+  // Returns, scaled so the largest is 1, the number of ways to place the mines
+  // not used by the frontier among the interior tiles, for every number of
+  // frontier mines from 0 to the given frontier size
+  double[] interiorWeights(int frontierSize, int minesLeft, int interior) {
+    // logChoose[k] is the log of (interior choose k)
+    int most = Math.max(0, Math.min(interior, minesLeft));
+    double[] logChoose = new double[most + 1];
+    for (int k = 1; k <= most; k++) {
+      logChoose[k] = logChoose[k - 1] + Math.log((double) (interior - k + 1) / k);
+    }
+    double[] weights = new double[frontierSize + 1];
+    double best = Double.NEGATIVE_INFINITY;
+    for (int s = 0; s <= frontierSize; s++) {
+      int k = minesLeft - s;
+      weights[s] = k >= 0 && k <= most ? logChoose[k] : Double.NEGATIVE_INFINITY;
+      best = Math.max(best, weights[s]);
+    }
+    if (best == Double.NEGATIVE_INFINITY) {
+      throw new IllegalStateException("No arrangement of mines fits the board");
+    }
+    for (int s = 0; s <= frontierSize; s++) {
+      weights[s] = Math.exp(weights[s] - best);
+    }
+    return weights;
+  }
+
+  // Returns the components of the frontier of the given board, taking those
+  // counted before from the cache -- the rest are not counted yet
+  ArrayList<FrontierComponent> components(Board board) {
+    int[] around = new int[board.topology.maxDegree()];
+    // union-find over the covered tiles, joining the unknown neighbors of each
+    // uncovered count
+    int[] parent = new int[board.size()];
+    for (int i = 0; i < parent.length; i++) {
+      parent[i] = -1;
+    }
+    ArrayList<int[]> constraints = new ArrayList<int[]>();
+    for (int i = 0; i < board.size(); i++) {
+      if (!board.isVisible(i) || board.isMine(i)) {
+        continue;
+      }
+      int degree = board.topology.neighbors(i, around);
+      int[] constraint = new int[degree + 1];
+      int size = 1;
+      int mines = board.countMines(i);
+      for (int k = 0; k < degree; k++) {
+        int n = around[k];
+        if (board.isFlagged(n) || (board.isVisible(n) && board.isMine(n))) {
+          mines--;
+        }
+        else if (!board.isVisible(n)) {
+          constraint[size] = n;
+          size++;
+          if (parent[n] == -1) {
+            parent[n] = n;
+          }
+          ProbabilityEngine.union(parent, constraint[1], n);
+        }
+      }
+      if (mines < 0 || mines > size - 1) {
+        throw new IllegalStateException("No arrangement of mines fits the board");
+      }
+      if (size > 1) {
+        constraint[0] = mines;
+        int[] trimmed = Arrays.copyOf(constraint, size);
+        Arrays.sort(trimmed, 1, size);
+        constraints.add(trimmed);
+      }
+    }
+    HashMap<Integer, ArrayList<int[]>> byRoot = new HashMap<Integer, ArrayList<int[]>>();
+    ArrayList<Integer> roots = new ArrayList<Integer>();
+    for (int[] constraint : constraints) {
+      int root = ProbabilityEngine.find(parent, constraint[1]);
+      if (!byRoot.containsKey(root)) {
+        byRoot.put(root, new ArrayList<int[]>());
+        roots.add(root);
+      }
+      byRoot.get(root).add(constraint);
+    }
+    ArrayList<FrontierComponent> result = new ArrayList<FrontierComponent>();
+    for (int root : roots) {
+      ArrayList<int[]> group = byRoot.get(root);
+      String key = FrontierComponent.keyOf(group);
+      FrontierComponent known = this.cache.get(key);
+      result.add(known != null ? known : new FrontierComponent(key, group));
+    }
+    return result;
+  }
+
+  // Returns the root of the set holding the given tile, halving paths on the way
+  static int find(int[] parent, int tile) {
+    int t = tile;
+    while (parent[t] != t) {
+      parent[t] = parent[parent[t]];
+      t = parent[t];
+    }
+    return t;
+  }
+
+  // EFFECT: joins the sets holding the two given tiles
+  static void union(int[] parent, int a, int b) {
+    int ra = ProbabilityEngine.find(parent, a);
+    int rb = ProbabilityEngine.find(parent, b);
+    if (ra != rb) {
+      parent[Math.max(ra, rb)] = Math.min(ra, rb);
+    }
+  }
+
+  // Returns the product of the two given polynomials
+  static double[] convolve(double[] a, double[] b) {
+    double[] result = new double[a.length + b.length - 1];
+    // most components allow only a narrow range of mines, so skips the zeros
+    int low = 0;
+    int high = b.length - 1;
+    while (low < high && b[low] == 0) {
+      low++;
+    }
+    while (high > low && b[high] == 0) {
+      high--;
+    }
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != 0) {
+        for (int j = low; j <= high; j++) {
+          result[i + j] += a[i] * b[j];
+        }
+      }
+    }
+    return result;
+  }
+
+  // EFFECT: scales the given values so that the largest is 1
+  // Returns them
+  static double[] normalize(double[] values) {
+    double max = 0;
+    for (double v : values) {
+      max = Math.max(max, v);
+    }
+    if (max > 0) {
+      for (int k = 0; k < values.length; k++) {
+        values[k] /= max;
+      }
+    }
+    return values;
+  }
+}
+
+// Represents the covered tiles of one component of the frontier and the
+// constraints on them, with the counts of its mine arrangements once counted
+// Tiles are numbered in breadth-first order through the constraints, so that
+// few constraints are part-way decided at any point. The arrangements are
+// counted one tile at a time: a state records, for each constraint that has
+// some but not all of its tiles decided, how many mines those tiles hold, and
+// layers[b] maps each state reachable after deciding b tiles to the number of
+// ways of reaching it with each number of mines
+class FrontierComponent {
+  String key;
+  int[] tiles;
+  // mines[j] is the number of mines among the tiles of constraint j
+  int[] mines;
+  int[] first;
+  // varConstraints[i] lists the constraints tile number i is in, and
+  // remainingAfter[i][k] how many tiles of the k-th of them come after it
+  int[][] varConstraints;
+  int[][] remainingAfter;
+  // open[b] lists the constraints that are part-way decided after b tiles
+  int[][] open;
+  ArrayList<HashMap<String, MineCounts>> layers;
+  // ways[a] is the (scaled) number of arrangements with a mines
+  double[] ways;
+
+  // from the given key and constraints, as returned by keyOf
+  FrontierComponent(String key, ArrayList<int[]> constraints) {
+    this.key = key;
+    // numbers the tiles breadth first
+    HashMap<Integer, ArrayList<Integer>> constraintsOf = new HashMap<Integer, ArrayList<Integer>>();
+    int smallest = Integer.MAX_VALUE;
+    for (int j = 0; j < constraints.size(); j++) {
+      int[] c = constraints.get(j);
+      for (int k = 1; k < c.length; k++) {
+        constraintsOf.computeIfAbsent(c[k], t -> new ArrayList<Integer>()).add(j);
+        smallest = Math.min(smallest, c[k]);
+      }
+    }
+    HashMap<Integer, Integer> number = new HashMap<Integer, Integer>();
+    this.tiles = new int[constraintsOf.size()];
+    int count = 0;
+    this.tiles[count] = smallest;
+    number.put(smallest, count);
+    count++;
+    for (int head = 0; head < count; head++) {
+      for (int j : constraintsOf.get(this.tiles[head])) {
+        int[] c = constraints.get(j);
+        for (int k = 1; k < c.length; k++) {
+          if (!number.containsKey(c[k])) {
+            this.tiles[count] = c[k];
+            number.put(c[k], count);
+            count++;
+          }
+        }
+      }
+    }
+
+    int m = constraints.size();
+    int n = this.tiles.length;
+    this.mines = new int[m];
+    this.first = new int[m];
+    int[] last = new int[m];
+    ArrayList<ArrayList<Integer>> varCons = new ArrayList<ArrayList<Integer>>();
+    ArrayList<ArrayList<Integer>> remaining = new ArrayList<ArrayList<Integer>>();
+    for (int i = 0; i < n; i++) {
+      varCons.add(new ArrayList<Integer>());
+      remaining.add(new ArrayList<Integer>());
+    }
+    for (int j = 0; j < m; j++) {
+      int[] c = constraints.get(j);
+      this.mines[j] = c[0];
+      int[] numbers = new int[c.length - 1];
+      for (int k = 1; k < c.length; k++) {
+        numbers[k - 1] = number.get(c[k]);
+      }
+      Arrays.sort(numbers);
+      this.first[j] = numbers[0];
+      last[j] = numbers[numbers.length - 1];
+      for (int k = 0; k < numbers.length; k++) {
+        varCons.get(numbers[k]).add(j);
+        remaining.get(numbers[k]).add(numbers.length - 1 - k);
+      }
+    }
+    this.varConstraints = new int[n][];
+    this.remainingAfter = new int[n][];
+    for (int i = 0; i < n; i++) {
+      ArrayList<Integer> cs = varCons.get(i);
+      this.varConstraints[i] = new int[cs.size()];
+      this.remainingAfter[i] = new int[cs.size()];
+      for (int k = 0; k < cs.size(); k++) {
+        this.varConstraints[i][k] = cs.get(k);
+        this.remainingAfter[i][k] = remaining.get(i).get(k);
+      }
+    }
+    // a constraint opens once its first tile is decided and closes with its last
+    ArrayList<ArrayList<Integer>> opening = new ArrayList<ArrayList<Integer>>();
+    ArrayList<ArrayList<Integer>> closing = new ArrayList<ArrayList<Integer>>();
+    for (int b = 0; b <= n + 1; b++) {
+      opening.add(new ArrayList<Integer>());
+      closing.add(new ArrayList<Integer>());
+    }
+    for (int j = 0; j < m; j++) {
+      opening.get(this.first[j] + 1).add(j);
+      closing.get(last[j] + 1).add(j);
+    }
+    ArrayList<Integer> current = new ArrayList<Integer>();
+    this.open = new int[n + 1][];
+    for (int b = 0; b <= n; b++) {
+      current.addAll(opening.get(b));
+      current.removeAll(closing.get(b));
+      this.open[b] = new int[current.size()];
+      for (int k = 0; k < current.size(); k++) {
+        this.open[b][k] = current.get(k);
+      }
+    }
+  }
+
+  // EFFECT: puts the given constraints, of the form { mines, tile, tile, ... }
+  // with sorted tiles, in a canonical order
+  // Returns a key that is the same for any component with the same constraints
+  static String keyOf(ArrayList<int[]> constraints) {
+    Collections.sort(constraints, (x, y) -> Arrays.compare(x, y));
+    StringBuilder key = new StringBuilder();
+    for (int[] c : constraints) {
+      for (int v : c) {
+        key.append(v).append(' ');
+      }
+      key.append(';');
+    }
+    return key.toString();
+  }
+
+  // Returns the state after tile number i is decided (1 for a mine, 0 for
+  // safe) in the state with the given key, or null if that breaks a constraint,
+  // using sums as scratch space
+  String step(String key, int i, int x, int[] sums) {
+    int[] before = this.open[i];
+    for (int k = 0; k < before.length; k++) {
+      sums[before[k]] = key.charAt(k);
+    }
+    int[] cons = this.varConstraints[i];
+    for (int k = 0; k < cons.length; k++) {
+      int j = cons[k];
+      int sum = (this.first[j] == i ? 0 : sums[j]) + x;
+      if (sum > this.mines[j] || sum + this.remainingAfter[i][k] < this.mines[j]) {
+        return null;
+      }
+      sums[j] = sum;
+    }
+    int[] after = this.open[i + 1];
+    char[] state = new char[after.length];
+    for (int k = 0; k < after.length; k++) {
+      state[k] = (char) sums[after[k]];
+    }
+    return new String(state);
+  }
+
+  // EFFECT: counts the arrangements of this component by number of mines,
+  // keeping every layer for share
+  void count() {
+    int n = this.tiles.length;
+    int[] sums = new int[this.mines.length];
+    ArrayList<HashMap<String, MineCounts>> result = new ArrayList<HashMap<String, MineCounts>>();
+    HashMap<String, MineCounts> layer = new HashMap<String, MineCounts>();
+    layer.put("", new MineCounts(0, 1));
+    layer.get("").ways[0] = 1;
+    result.add(layer);
+    for (int i = 0; i < n; i++) {
+      // finds where each next state can go and the range of mines it can have,
+      // then adds up the ways of reaching it
+      ArrayList<MineCounts> from = new ArrayList<MineCounts>();
+      ArrayList<String> to = new ArrayList<String>();
+      ArrayList<Integer> mine = new ArrayList<Integer>();
+      HashMap<String, int[]> range = new HashMap<String, int[]>();
+      for (Map.Entry<String, MineCounts> e : layer.entrySet()) {
+        MineCounts counts = e.getValue();
+        for (int x = 0; x <= 1; x++) {
+          String state = this.step(e.getKey(), i, x, sums);
+          if (state != null) {
+            from.add(counts);
+            to.add(state);
+            mine.add(x);
+            int low = counts.fewest + x;
+            int high = low + counts.ways.length - 1;
+            int[] r = range.get(state);
+            if (r == null) {
+              range.put(state, new int[] { low, high });
+            }
+            else {
+              r[0] = Math.min(r[0], low);
+              r[1] = Math.max(r[1], high);
+            }
+          }
+        }
+      }
+      HashMap<String, MineCounts> next = new HashMap<String, MineCounts>();
+      for (Map.Entry<String, int[]> e : range.entrySet()) {
+        int[] r = e.getValue();
+        next.put(e.getKey(), new MineCounts(r[0], r[1] - r[0] + 1));
+      }
+      double max = 0;
+      for (int k = 0; k < from.size(); k++) {
+        MineCounts source = from.get(k);
+        MineCounts dest = next.get(to.get(k));
+        int shift = source.fewest + mine.get(k) - dest.fewest;
+        for (int a = 0; a < source.ways.length; a++) {
+          dest.ways[a + shift] += source.ways[a];
+          max = Math.max(max, dest.ways[a + shift]);
+        }
+      }
+      // every state of a layer is scaled alike, which cancels out in share
+      for (MineCounts counts : next.values()) {
+        for (int a = 0; a < counts.ways.length; a++) {
+          counts.ways[a] /= max;
+        }
+      }
+      result.add(next);
+      layer = next;
+    }
+    MineCounts all = layer.get("");
+    if (all == null) {
+      throw new IllegalStateException("No arrangement of mines fits the board");
+    }
+    this.layers = result;
+    this.ways = new double[n + 1];
+    System.arraycopy(all.ways, 0, this.ways, all.fewest, all.ways.length);
+  }
+
+  // EFFECT: writes into result the chance that each tile of this component is a
+  // mine, given the (relative) weight of the arrangements that use each number
+  // of mines
+  void share(double[] byMines, double[] result) {
+    int n = this.tiles.length;
+    int[] sums = new int[this.mines.length];
+    // after.get(state)[a] is the weight of finishing from the given state after
+    // fewest + a mines so far, over the same range as its counts
+    HashMap<String, double[]> after = new HashMap<String, double[]>();
+    MineCounts all = this.layers.get(n).get("");
+    after.put("", Arrays.copyOfRange(byMines, all.fewest, all.fewest + all.ways.length));
+    for (int i = n - 1; i >= 0; i--) {
+      HashMap<String, MineCounts> following = this.layers.get(i + 1);
+      HashMap<String, double[]> here = new HashMap<String, double[]>();
+      double mine = 0;
+      double safe = 0;
+      double max = 0;
+      for (Map.Entry<String, MineCounts> e : this.layers.get(i).entrySet()) {
+        MineCounts counts = e.getValue();
+        double[] rest = new double[counts.ways.length];
+        for (int x = 0; x <= 1; x++) {
+          String state = this.step(e.getKey(), i, x, sums);
+          double[] next = state == null ? null : after.get(state);
+          if (next != null) {
+            int shift = counts.fewest + x - following.get(state).fewest;
+            double weight = 0;
+            for (int a = 0; a < rest.length; a++) {
+              weight += counts.ways[a] * next[a + shift];
+              rest[a] += next[a + shift];
+              max = Math.max(max, rest[a]);
+            }
+            if (x == 1) {
+              mine += weight;
+            }
+            else {
+              safe += weight;
+            }
+          }
+        }
+        here.put(e.getKey(), rest);
+      }
+      if (max > 0) {
+        for (double[] rest : here.values()) {
+          for (int a = 0; a < rest.length; a++) {
+            rest[a] /= max;
+          }
+        }
+      }
+      result[this.tiles[i]] = mine + safe == 0 ? 0 : mine / (mine + safe);
+      after = here;
+    }
+  }
+}
+
+// Represents the (scaled) number of ways of reaching a state with each number
+// of mines, from the fewest it can have: ways[a] counts fewest + a mines
+class MineCounts {
+  int fewest;
+  double[] ways;
+
+  MineCounts(int fewest, int range) {
+    this.fewest = fewest;
+    this.ways = new double[range];
+  }
+}
+
+// Counts the arrangements of one frontier component
+class CountTask extends RecursiveAction {
+  FrontierComponent component;
+
+  CountTask(FrontierComponent component) {
+    this.component = component;
+  }
+
+  protected void compute() {
+    this.component.count();
+  }
+}
+
+// Shares the weight of one frontier component out among its tiles
+class ShareTask extends RecursiveAction {
+  FrontierComponent component;
+  double[] byMines;
+  double[] result;
+
+  ShareTask(FrontierComponent component, double[] byMines, double[] result) {
+    this.component = component;
+    this.byMines = byMines;
+    this.result = result;
+  }
+
+  protected void compute() {
+    this.component.share(this.byMines, this.result);
+  }
+}
+
+class ExamplesProbabilityEngine {
+  ProbabilityEngine engine = new ProbabilityEngine();
+
+  // Returns the chances of every tile by trying every placement of the given
+  // number of mines that fits what is visible on the given board
+  double[] bruteForce(Board board, int mineCount) {
+    int n = board.size();
+    int unknown = 0;
+    int flags = 0;
+    int[] tiles = new int[n];
+    for (int i = 0; i < n; i++) {
+      if (board.isFlagged(i)) {
+        flags++;
+      }
+      else if (!board.isVisible(i)) {
+        tiles[unknown] = i;
+        unknown++;
+      }
+    }
+    double[] mines = new double[n];
+    double total = 0;
+    for (long set = 0; set < (1L << unknown); set++) {
+      if (Long.bitCount(set) != mineCount - flags) {
+        continue;
+      }
+      boolean[] mine = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        mine[i] = board.isFlagged(i);
+      }
+      for (int k = 0; k < unknown; k++) {
+        mine[tiles[k]] = (set & (1L << k)) != 0;
+      }
+      if (this.fits(board, mine)) {
+        total++;
+        for (int i = 0; i < n; i++) {
+          if (mine[i]) {
+            mines[i]++;
+          }
+        }
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      mines[i] /= total;
+    }
+    return mines;
+  }
+
+  // Checks if the given placement of mines gives every uncovered tile of the
+  // given board its count
+  boolean fits(Board board, boolean[] mine) {
+    int[] around = new int[8];
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isVisible(i)) {
+        int degree = board.topology.neighbors(i, around);
+        int count = 0;
+        for (int k = 0; k < degree; k++) {
+          if (mine[around[k]]) {
+            count++;
+          }
+        }
+        if (mine[i] || count != board.countMines(i)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  // EFFECT: checks that the engine agrees with brute force on the given board
+  void checkAgainstBruteForce(Tester t, Board board, int mineCount) {
+    double[] expected = this.bruteForce(board, mineCount);
+    double[] actual = this.engine.probabilities(board, mineCount);
+    for (int i = 0; i < board.size(); i++) {
+      t.checkInexact(actual[i] + 1, expected[i] + 1, 1e-9);
+    }
+  }
+
+  // tests probabilities on the 1-2-1 pattern, where everything is certain
+  void testCertain(Tester t) {
+    // M . M
+    // 1 2 1
+    Board board = new Board(3, 2);
+    board.setMine(0, true);
+    board.setMine(2, true);
+    board.setVisible(3, true);
+    board.setVisible(4, true);
+    board.setVisible(5, true);
+    double[] p = this.engine.probabilities(board, 2);
+    t.checkInexact(p[0], 1.0, 1e-12);
+    t.checkInexact(p[1] + 1, 1.0, 1e-12);
+    t.checkInexact(p[2], 1.0, 1e-12);
+    t.checkInexact(p[4] + 1, 1.0, 1e-12);
+  }
+
+  // tests that the interior gets the mines the frontier leaves over
+  void testInterior(Tester t) {
+    // no tile uncovered: every tile is equally likely
+    Board board = new Board(4, 4);
+    double[] p = this.engine.probabilities(board, 4);
+    t.checkInexact(p[0], 0.25, 1e-12);
+    t.checkInexact(p[15], 0.25, 1e-12);
+  }
+
+  // tests probabilities against brute force on random partly played boards
+  void testAgainstBruteForce(Tester t) {
+    for (int seed = 0; seed < 12; seed++) {
+      Random rand = new Random(seed);
+      GameEngine game = new GameEngine(rand, 5, 5, 5);
+      // reveals safe tiles until few enough are covered to try every placement
+      while (game.board.hidden > 18 && game.status() == GameStatus.PLAYING) {
+        int tile = rand.nextInt(game.board.size());
+        if (!game.board.isMine(tile)) {
+          game.reveal(tile);
+        }
+      }
+      if (rand.nextBoolean()) {
+        for (int i = 0; i < game.board.size(); i++) {
+          if (game.board.isMine(i) && game.board.countMines(i) < 8) {
+            game.toggleFlag(i);
+            break;
+          }
+        }
+      }
+      this.checkAgainstBruteForce(t, game.board, 5);
+    }
+  }
+
+  // tests that components seen before are not counted again
+  void testReuse(Tester t) {
+    ProbabilityEngine fresh = new ProbabilityEngine(ForkJoinPool.commonPool(), 16);
+    GameEngine game = new GameEngine(new Random(4), 16, 16, 40);
+    int tile = 0;
+    while (game.board.isMine(tile) || game.board.countMines(tile) > 0) {
+      tile++;
+    }
+    game.reveal(tile);
+    double[] first = fresh.probabilities(game.board, 40);
+    int counted = fresh.counted.get();
+    double[] again = fresh.probabilities(game.board, 40);
+    t.checkExpect(fresh.counted.get(), counted);
+    t.checkExpect(fresh.reused.get() >= counted, true);
+    t.checkExpect(again, first);
+  }
+
+  // tests that guessing the safest tile wins more often than guessing at random
+  void testSafestGuess(Tester t) {
+    IStatsListener quiet = new IStatsListener() {
+      public void update(SimulationStats soFar) {
+        // nothing to report
+      }
+    };
+    SimulationStats safest = new SimulationRunner(16, 16, 40,
+        () -> new SolverPolicy(this.engine), 7).run(300, 2, quiet);
+    SimulationStats random = new SimulationRunner(16, 16, 40, SolverPolicy::new, 7)
+        .run(300, 2, quiet);
+    t.checkExpect(safest.winRate() > random.winRate(), true);
+  }
+
+  // tests that an impossible board is reported
+  void testImpossible(Tester t) {
+    Board board = new Board(2, 1);
+    board.setMine(1, true);
+    board.setVisible(0, true);
+    t.checkException(new IllegalStateException("No arrangement of mines fits the board"),
+        this.engine, "probabilities", board, 0);
+  }
+}
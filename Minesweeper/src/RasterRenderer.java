@@ -0,0 +1,216 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Random;
+
+import javalib.worldimages.ComputedPixelImage;
+import javalib.worldimages.WorldImage;
+import tester.Tester;
+
+// Holds the pixels of every way a tile can appear, drawn once from TileImages
+// into an image and read back, indexed by Board.appearance and then by y * TILE_SIZE
+// + x
+// Each distinct color is one shared Color, so copying a tile allocates nothing
+class TileAtlas {
+  static final Color[][] PIXELS = TileAtlas.rasterize(TileImages.IMAGES);
+
+  // Returns the pixels of each of the given tile images
+  static Color[][] rasterize(WorldImage[] images) {
+    int size = IUtils.TILE_SIZE;
+    HashMap<Integer, Color> palette = new HashMap<Integer, Color>();
+    Color[][] pixels = new Color[images.length][size * size];
+    for (int a = 0; a < images.length; a++) {
+      BufferedImage tile = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+      Graphics2D g = tile.createGraphics();
+      // an image draws itself centered on the origin
+      g.translate(size / 2.0, size / 2.0);
+      images[a].draw(g);
+      g.dispose();
+      for (int y = 0; y < size; y++) {
+        for (int x = 0; x < size; x++) {
+          int argb = tile.getRGB(x, y);
+          pixels[a][y * size + x] = palette.computeIfAbsent(argb, c -> new Color(c, true));
+        }
+      }
+    }
+    return pixels;
+  }
+}
+
+// Draws the part of a Board inside a Viewport into one image that is kept from
+// frame to frame, copying into it from the TileAtlas only the tiles whose
+// appearance at their place on screen changed since the last frame
+// The rows whose stamps have not changed are skipped without looking at their
+// tiles, so a frame costs in proportion to the tiles that changed, plus the
+// width of the rows they are in; after the window moves every tile is looked
+// at again, but still only the ones that look different are copied
+// Each copied tile costs one setPixel per pixel, since a ComputedPixelImage
+// takes nothing larger, so building a frame is cheaper than with a
+// BoardRenderer only when many tiles change at once, as when the window pans
+// across a large board; on the default board it is slower to build, and it
+// wins there only if painting the BoardRenderer's tree tile by tile costs more
+// than painting one image
+class RasterRenderer implements IBoardRenderer {
+  Board board;
+  Viewport view;
+  ComputedPixelImage image;
+  // the appearance drawn at each place in the window, row by row, or -1 if
+  // nothing has been drawn there
+  int[] drawn;
+  // the board's stamp for each row of the window when it was drawn
+  int[] drawnStamps;
+  // where the window was when the rows were drawn
+  int drawnLeft;
+  int drawnTop;
+  // the number of tiles copied by the last frame
+  int copied;
+
+  // draws the whole board
+  RasterRenderer(Board board) {
+    this(board, new Viewport(board.width, board.height, board.width, board.height));
+  }
+
+  RasterRenderer(Board board, Viewport view) {
+    this.board = board;
+    this.view = view;
+    this.image = new ComputedPixelImage(view.pixelWidth(), view.pixelHeight());
+    this.drawn = new int[view.columns * view.rows];
+    this.drawnStamps = new int[view.rows];
+    for (int i = 0; i < this.drawn.length; i++) {
+      this.drawn[i] = -1;
+    }
+    for (int i = 0; i < view.rows; i++) {
+      this.drawnStamps[i] = -1;
+    }
+    this.drawnLeft = view.left;
+    this.drawnTop = view.top;
+  }
+
+  // Returns the image of the window as it is now, which is the same image every
+  // frame
+  public WorldImage draw() {
+    this.copied = 0;
+    if (this.view.left != this.drawnLeft || this.view.top != this.drawnTop) {
+      for (int i = 0; i < this.view.rows; i++) {
+        this.drawnStamps[i] = -1;
+      }
+      this.drawnLeft = this.view.left;
+      this.drawnTop = this.view.top;
+    }
+    for (int i = 0; i < this.view.rows; i++) {
+      int row = this.view.top + i;
+      if (this.drawnStamps[i] != this.board.rowStamps[row]) {
+        this.drawnStamps[i] = this.board.rowStamps[row];
+        int start = this.board.index(row, this.view.left);
+        for (int j = 0; j < this.view.columns; j++) {
+          int appearance = this.board.appearance(start + j);
+          if (this.drawn[i * this.view.columns + j] != appearance) {
+            this.drawn[i * this.view.columns + j] = appearance;
+            this.copy(j, i, appearance);
+          }
+        }
+      }
+    }
+    return this.image;
+  }
+
+  // EFFECT: copies the pixels of the given appearance to the given column and
+  // row of the window
+  void copy(int column, int row, int appearance) {
+    int size = IUtils.TILE_SIZE;
+    Color[] pixels = TileAtlas.PIXELS[appearance];
+    int left = column * size;
+    int top = row * size;
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        this.image.setPixel(left + x, top + y, pixels[y * size + x]);
+      }
+    }
+    this.copied++;
+  }
+}
+
+class ExamplesRasterRenderer {
+  // Checks that every tile of the window of the given renderer shows the pixels
+  // of its appearance
+  boolean matches(RasterRenderer renderer) {
+    int size = IUtils.TILE_SIZE;
+    boolean same = true;
+    for (int i = 0; i < renderer.view.rows; i++) {
+      for (int j = 0; j < renderer.view.columns; j++) {
+        int tile = renderer.board.index(renderer.view.top + i, renderer.view.left + j);
+        Color[] pixels = TileAtlas.PIXELS[renderer.board.appearance(tile)];
+        for (int p = 0; p < size * size; p += 7) {
+          same = same && renderer.image.getPixel(j * size + p % size, i * size + p / size)
+              .getRGB() == pixels[p].getRGB();
+        }
+      }
+    }
+    return same;
+  }
+
+  // tests that the atlas has the pixels of every appearance, sharing its colors
+  void testAtlas(Tester t) {
+    t.checkExpect(TileAtlas.PIXELS.length, Board.APPEARANCES);
+    t.checkExpect(TileAtlas.PIXELS[0].length, IUtils.TILE_SIZE * IUtils.TILE_SIZE);
+    t.checkExpect(TileAtlas.PIXELS[0][0] == TileAtlas.PIXELS[1][0], true);
+  }
+
+  // tests that draw copies every tile the first time, and after that only the
+  // tiles that changed
+  void testDrawChanges(Tester t) {
+    Board board = new Board(20, 12);
+    new MinePlacer(new Random(5)).place(board, 30);
+    RasterRenderer renderer = new RasterRenderer(board);
+    WorldImage first = renderer.draw();
+    t.checkExpect(renderer.copied, 240);
+    t.checkExpect(first.getWidth(), 20.0 * IUtils.TILE_SIZE);
+    t.checkExpect(this.matches(renderer), true);
+    t.checkExpect(renderer.draw() == first, true);
+    t.checkExpect(renderer.copied, 0);
+    board.setFlagged(25, true);
+    renderer.draw();
+    t.checkExpect(renderer.copied, 1);
+    int tile = 0;
+    while (board.isMine(tile) || board.isFlagged(tile)) {
+      tile++;
+    }
+    int uncovered = board.reveal(tile).size;
+    renderer.draw();
+    t.checkExpect(renderer.copied, uncovered);
+    t.checkExpect(this.matches(renderer), true);
+  }
+
+  // tests that panning copies only the places on screen whose appearance
+  // changed, and that the window matches the board wherever it moves
+  void testDrawPanning(Tester t) {
+    Board board = new Board(60, 60);
+    new MinePlacer(new Random(4)).place(board, 300);
+    for (int i = 0; i < board.size(); i += 7) {
+      if (!board.isMine(i)) {
+        board.reveal(i);
+      }
+    }
+    Viewport view = new Viewport(10, 8, 60, 60);
+    RasterRenderer renderer = new RasterRenderer(board, view);
+    renderer.draw();
+    String[] keys = new String[] { "down", "down", "right", "up", "left", "left", "down" };
+    boolean same = true;
+    for (String key : keys) {
+      view.onKey(key);
+      renderer.draw();
+      same = same && this.matches(renderer) && renderer.copied <= 80;
+    }
+    t.checkExpect(same, true);
+    // a board that looks the same everywhere needs no copying when it moves
+    Board blank = new Board(30, 30);
+    Viewport small = new Viewport(5, 5, 30, 30);
+    RasterRenderer still = new RasterRenderer(blank, small);
+    still.draw();
+    small.pan(3, 4);
+    still.draw();
+    t.checkExpect(still.copied, 0);
+    t.checkExpect(this.matches(still), true);
+  }
+}
@@ -0,0 +1,345 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import tester.Tester;
+
+// Represents one game that many threads play at once, each through a
+// SharedPlayer of its own
+// The tiles are the bytes of a Board, held in one array and changed only by
+// compare-and-set, so a tile is uncovered by exactly one thread however many
+// floods reach it at once, and no thread ever waits for a lock. The counters
+// are atomic and each move updates them once, with the number of tiles it
+// changed; the status moves from PLAYING to WON or LOST by compare-and-set, so
+// the game ends exactly once
+class SharedBoard {
+  static final VarHandle TILES = MethodHandles.arrayElementVarHandle(byte[].class);
+
+  int width;
+  int height;
+  ITopology topology;
+  int mineCount;
+  byte[] tiles;
+  AtomicInteger hidden;
+  AtomicInteger flagged;
+  AtomicReference<GameStatus> status;
+
+  // a game on the tiles of the given board, which has the given number of mines
+  SharedBoard(Board board, int mineCount) {
+    this.width = board.width;
+    this.height = board.height;
+    this.topology = board.topology;
+    this.mineCount = mineCount;
+    this.tiles = board.tiles();
+    this.hidden = new AtomicInteger(board.hidden);
+    this.flagged = new AtomicInteger(board.flagged);
+    this.status = new AtomicReference<GameStatus>(GameStatus.PLAYING);
+  }
+
+  // seeded random mine placement
+  SharedBoard(Random rand, int width, int height, int mineCount) {
+    this(GameEngine.mined(rand, width, height, mineCount), mineCount);
+  }
+
+  // Returns the number of tiles on this board
+  int size() {
+    return this.tiles.length;
+  }
+
+  // Returns the byte of the tile at the given index
+  int tile(int index) {
+    return (byte) TILES.getAcquire(this.tiles, index);
+  }
+
+  // Checks if the tile at the given index is a mine
+  boolean isMine(int index) {
+    return (this.tile(index) & Board.MINE) != 0;
+  }
+
+  // Checks if the tile at the given index is visible
+  boolean isVisible(int index) {
+    return (this.tile(index) & Board.VISIBLE) != 0;
+  }
+
+  // Checks if the tile at the given index is flagged
+  boolean isFlagged(int index) {
+    return (this.tile(index) & Board.FLAGGED) != 0;
+  }
+
+  // Returns the number of mines adjacent to the tile at the given index
+  int countMines(int index) {
+    return this.tile(index) & Board.COUNT;
+  }
+
+  // Returns how the tile at the given index appears to the players
+  int appearance(int index) {
+    int tile = this.tile(index);
+    if ((tile & Board.VISIBLE) == 0) {
+      return (tile & Board.FLAGGED) == 0 ? Board.SHOW_COVERED : Board.SHOW_FLAG;
+    }
+    else if ((tile & Board.MINE) != 0) {
+      return Board.SHOW_MINE;
+    }
+    else {
+      return tile & Board.COUNT;
+    }
+  }
+
+  // Returns the status of this game
+  GameStatus status() {
+    return this.status.get();
+  }
+
+  // EFFECT: uncovers the tile at the given index, unless it is visible or
+  // flagged already
+  // Returns whether this call uncovered it
+  boolean uncover(int index) {
+    int tile = this.tile(index);
+    while ((tile & (Board.VISIBLE | Board.FLAGGED)) == 0) {
+      int seen = (byte) TILES.compareAndExchange(this.tiles, index, (byte) tile,
+          (byte) (tile | Board.VISIBLE));
+      if (seen == tile) {
+        return true;
+      }
+      tile = seen;
+    }
+    return false;
+  }
+
+  // EFFECT: flags or unflags the tile at the given index, if it is still covered
+  // and the game is not over
+  // Returns whether the tile is now flagged
+  boolean toggleFlag(int index) {
+    int tile = this.tile(index);
+    while (this.status() == GameStatus.PLAYING && (tile & Board.VISIBLE) == 0) {
+      int seen = (byte) TILES.compareAndExchange(this.tiles, index, (byte) tile,
+          (byte) (tile ^ Board.FLAGGED));
+      if (seen == tile) {
+        this.flagged.addAndGet((tile & Board.FLAGGED) == 0 ? 1 : -1);
+        return (tile & Board.FLAGGED) == 0;
+      }
+      tile = seen;
+    }
+    return (tile & Board.FLAGGED) != 0;
+  }
+
+  // EFFECT: ends the game with the given status, unless it is over already
+  // Returns whether this call ended it
+  boolean end(GameStatus status) {
+    return this.status.compareAndSet(GameStatus.PLAYING, status);
+  }
+
+  // Returns a board with the tiles of this one as they are now, for drawing or
+  // checking -- a tile changing while it is copied may show either way
+  Board board() {
+    Board board = new Board(this.width, this.height, this.topology);
+    int hidden = 0;
+    int flagged = 0;
+    for (int i = 0; i < this.size(); i++) {
+      int tile = this.tile(i);
+      board.writable(i)[i & Board.CHUNK_MASK] = (byte) tile;
+      hidden += (tile & Board.VISIBLE) == 0 ? 1 : 0;
+      flagged += (tile & Board.FLAGGED) == 0 ? 0 : 1;
+    }
+    board.hidden = hidden;
+    board.flagged = flagged;
+    return board;
+  }
+}
+
+// Represents one of the threads playing a SharedBoard, with the scratch space
+// its moves need, so that a move allocates nothing and shares nothing but the
+// board
+class SharedPlayer {
+  SharedBoard board;
+  // the tiles uncovered by this player's last reveal, which doubles as the work
+  // queue of its flood fill
+  TileList revealed;
+  int[] neighbors;
+  // whether this player's last move ended the game
+  boolean ended;
+
+  SharedPlayer(SharedBoard board) {
+    this.board = board;
+    this.revealed = new TileList(board.size());
+    this.neighbors = new int[board.topology.maxDegree()];
+    this.ended = false;
+  }
+
+  // EFFECT: reveals the tile at the given index as Board.reveal does, opening
+  // the region around it if it has no adjacent mines, and ends the game if that
+  // hits a mine or uncovers the last safe tile -- another player flooding the
+  // same region at the same time uncovers the tiles it gets to first, and this
+  // one carries on past them
+  // Returns the tiles this player uncovered, which stay valid until its next
+  // reveal
+  TileList reveal(int index) {
+    TileList queue = this.revealed;
+    queue.clear();
+    this.ended = false;
+    SharedBoard board = this.board;
+    if (board.status() != GameStatus.PLAYING || !board.uncover(index)) {
+      return queue;
+    }
+    queue.add(index);
+    if (board.isMine(index)) {
+      board.hidden.decrementAndGet();
+      this.ended = board.end(GameStatus.LOST);
+      return queue;
+    }
+    for (int head = 0; head < queue.size; head++) {
+      int tile = queue.items[head];
+      if (board.countMines(tile) == 0) {
+        int degree = board.topology.neighbors(tile, this.neighbors);
+        for (int k = 0; k < degree; k++) {
+          int n = this.neighbors[k];
+          if (board.uncover(n)) {
+            queue.add(n);
+          }
+        }
+      }
+    }
+    if (board.hidden.addAndGet(-queue.size) == board.mineCount) {
+      this.ended = board.end(GameStatus.WON);
+    }
+    return queue;
+  }
+
+  // EFFECT: flags or unflags the tile at the given index
+  // Returns whether the tile is now flagged
+  boolean toggleFlag(int index) {
+    this.ended = false;
+    return this.board.toggleFlag(index);
+  }
+}
+
+class ExamplesSharedBoard {
+  // Returns the result of the given tasks, each run on a thread of its own at
+  // the same time
+  <T> List<T> together(List<Callable<T>> tasks) {
+    ExecutorService threads = Executors.newFixedThreadPool(tasks.size());
+    try {
+      List<T> results = new ArrayList<T>();
+      for (Future<T> result : threads.invokeAll(tasks)) {
+        results.add(result.get());
+      }
+      return results;
+    }
+    catch (InterruptedException | ExecutionException e) {
+      throw new IllegalStateException(e);
+    }
+    finally {
+      threads.shutdown();
+    }
+  }
+
+  // tests that one player plays exactly as a GameEngine does
+  void testSinglePlayer(Tester t) {
+    GameEngine game = new GameEngine(new Random(5), 30, 16, 99);
+    SharedBoard shared = new SharedBoard(game.board.copy(), 99);
+    SharedPlayer player = new SharedPlayer(shared);
+    Random rand = new Random(2);
+    boolean same = true;
+    while (game.status() == GameStatus.PLAYING) {
+      int tile = rand.nextInt(game.board.size());
+      if (rand.nextInt(4) == 0) {
+        same = same && game.toggleFlag(tile) == player.toggleFlag(tile);
+      }
+      else {
+        same = same && game.reveal(tile).size == player.reveal(tile).size;
+      }
+      same = same && game.board.hidden == shared.hidden.get()
+          && game.board.flagged == shared.flagged.get() && game.status() == shared.status();
+    }
+    t.checkExpect(same, true);
+    t.checkExpect(shared.board().tiles(), game.board.tiles());
+    t.checkExpect(player.reveal(0).size, 0);
+  }
+
+  // tests that players flooding the same region at once uncover each tile
+  // exactly once between them, and that only one of them wins
+  void testConcurrentFlood(Tester t) {
+    Board board = new Board(300, 300);
+    board.setMine(board.size() - 1, true);
+    SharedBoard shared = new SharedBoard(board, 1);
+    List<Callable<SharedPlayer>> tasks = new ArrayList<Callable<SharedPlayer>>();
+    for (int p = 0; p < 8; p++) {
+      int start = p * 11111;
+      tasks.add(() -> {
+        SharedPlayer player = new SharedPlayer(shared);
+        player.reveal(start);
+        return player;
+      });
+    }
+    List<SharedPlayer> players = this.together(tasks);
+    boolean[] seen = new boolean[shared.size()];
+    int uncovered = 0;
+    int winners = 0;
+    boolean twice = false;
+    for (SharedPlayer player : players) {
+      for (int k = 0; k < player.revealed.size; k++) {
+        twice = twice || seen[player.revealed.get(k)];
+        seen[player.revealed.get(k)] = true;
+        uncovered++;
+      }
+      winners += player.ended ? 1 : 0;
+    }
+    t.checkExpect(twice, false);
+    t.checkExpect(uncovered, shared.size() - 1);
+    t.checkExpect(shared.hidden.get(), 1);
+    t.checkExpect(shared.status(), GameStatus.WON);
+    t.checkExpect(winners, 1);
+  }
+
+  // tests that the counters match a recount after many players reveal and flag
+  // random tiles of one board at once, and that the game ended exactly once
+  void testConcurrentCounters(Tester t) {
+    SharedBoard shared = new SharedBoard(new Random(4), 200, 200, 6000);
+    List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+    for (int p = 0; p < 8; p++) {
+      long seed = p;
+      tasks.add(() -> {
+        SharedPlayer player = new SharedPlayer(shared);
+        Random rand = new Random(seed);
+        int ended = 0;
+        for (int m = 0; m < 20000; m++) {
+          int tile = rand.nextInt(shared.size());
+          if (rand.nextInt(3) == 0) {
+            player.toggleFlag(tile);
+          }
+          else if (!shared.isMine(tile)) {
+            player.reveal(tile);
+          }
+          ended += player.ended ? 1 : 0;
+        }
+        // then every player races to hit a mine
+        for (int i = 0; i < shared.size() && shared.status() == GameStatus.PLAYING; i++) {
+          if (shared.isMine(i)) {
+            player.reveal(i);
+            ended += player.ended ? 1 : 0;
+          }
+        }
+        return ended;
+      });
+    }
+    int ended = 0;
+    for (int e : this.together(tasks)) {
+      ended += e;
+    }
+    Board board = shared.board();
+    t.checkExpect(new ExamplesBoard().countersMatch(board), true);
+    t.checkExpect(board.hidden, shared.hidden.get());
+    t.checkExpect(board.flagged, shared.flagged.get());
+    t.checkExpect(shared.status() != GameStatus.PLAYING, true);
+    t.checkExpect(ended, 1);
+  }
+}
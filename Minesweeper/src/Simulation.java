@@ -0,0 +1,352 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import tester.Tester;
+
+// Represents a way of choosing moves in a game
+interface IMovePolicy {
+  // Returns the index of the next tile to reveal in the given game, which is
+  // still being played, drawing any randomness from the given generator
+  int nextMove(GameEngine game, Random rand);
+
+  // EFFECT: learns which tiles the last move uncovered
+  void observe(TileList changed);
+}
+
+// Reveals a uniformly random covered, unflagged tile
+class RandomPolicy implements IMovePolicy {
+  public void observe(TileList changed) {
+    // every move is chosen afresh
+  }
+
+  public int nextMove(GameEngine game, Random rand) {
+    Board board = game.board;
+    // random probes find a covered tile quickly until the board is nearly clear
+    for (int tries = 0; tries < 32; tries++) {
+      int tile = rand.nextInt(board.size());
+      if (!board.has(tile, Board.VISIBLE | Board.FLAGGED)) {
+        return tile;
+      }
+    }
+    // after that, picks the k-th covered tile for a random k
+    int k = rand.nextInt(board.hidden - board.flagged);
+    for (int i = 0; i < board.size(); i++) {
+      if (!board.has(i, Board.VISIBLE | Board.FLAGGED)) {
+        if (k == 0) {
+          return i;
+        }
+        k--;
+      }
+    }
+    return -1;
+  }
+}
+
+// Represents a listener that is told how a batch of simulated games is going
+// Updates come from the threads playing the games, but one at a time and in the
+// order of their totals, so a listener needs no locking of its own
+interface IStatsListener {
+  // EFFECT: reacts to the totals of the games finished so far
+  void update(SimulationStats soFar);
+}
+
+// Represents totals over a number of finished games
+class SimulationStats {
+  int games;
+  int wins;
+  long moves;
+  // revealedPercent[p] counts the games that ended with p% of the board
+  // revealed, as reported by Minesweeper.lastScene
+  int[] revealedPercent;
+  long elapsedNanos;
+
+  SimulationStats() {
+    this.revealedPercent = new int[101];
+  }
+
+  // EFFECT: counts a game that ended with the given status after the given
+  // number of moves
+  void record(GameStatus status, int moves, Board board) {
+    this.games++;
+    if (status == GameStatus.WON) {
+      this.wins++;
+    }
+    this.moves += moves;
+    this.revealedPercent[board.revealedCount() * 100 / board.size()]++;
+  }
+
+  // EFFECT: adds the given totals to these
+  void add(SimulationStats other) {
+    this.games += other.games;
+    this.wins += other.wins;
+    this.moves += other.moves;
+    for (int p = 0; p < this.revealedPercent.length; p++) {
+      this.revealedPercent[p] += other.revealedPercent[p];
+    }
+  }
+
+  // Returns a copy of these totals
+  SimulationStats copy() {
+    SimulationStats copy = new SimulationStats();
+    copy.add(this);
+    copy.elapsedNanos = this.elapsedNanos;
+    return copy;
+  }
+
+  // Returns the fraction of games won
+  double winRate() {
+    return this.games == 0 ? 0 : (double) this.wins / this.games;
+  }
+
+  // Returns the average number of moves per game
+  double movesPerGame() {
+    return this.games == 0 ? 0 : (double) this.moves / this.games;
+  }
+
+  // Returns the games played per second of wall-clock time
+  double gamesPerSecond() {
+    return this.elapsedNanos == 0 ? 0 : this.games * 1e9 / this.elapsedNanos;
+  }
+
+  // Returns the smallest revealed percentage that at least the given fraction of
+  // games did not exceed
+  int revealedPercentile(double fraction) {
+    long seen = 0;
+    for (int p = 0; p < this.revealedPercent.length; p++) {
+      seen += this.revealedPercent[p];
+      if (seen >= fraction * this.games) {
+        return p;
+      }
+    }
+    return 100;
+  }
+
+  public String toString() {
+    return String.format(
+        "%d games, %.2f%% won, %.1f moves/game, revealed p10/p50/p90 %d/%d/%d%%, "
+            + "%.0f games/s",
+        this.games, 100 * this.winRate(), this.movesPerGame(), this.revealedPercentile(0.1),
+        this.revealedPercentile(0.5), this.revealedPercentile(0.9), this.gamesPerSecond());
+  }
+}
+
+// Plays many complete games on a fork-join pool, giving each game its own seed
+// derived from a master seed so the totals are the same however many threads
+// play them
+class SimulationRunner {
+  // games played one after another by a single task
+  static final int CHUNK = 256;
+
+  int width;
+  int height;
+  int mineCount;
+  Supplier<IMovePolicy> policies;
+  long masterSeed;
+
+  SimulationRunner(int width, int height, int mineCount, Supplier<IMovePolicy> policies,
+      long masterSeed) {
+    this.width = width;
+    this.height = height;
+    this.mineCount = mineCount;
+    this.policies = policies;
+    this.masterSeed = masterSeed;
+  }
+
+  // Returns the seed of the game with the given number (the SplitMix64 mix of
+  // the master seed and that number)
+  long seedFor(int game) {
+    return SimulationRunner.seedFor(this.masterSeed, game);
+  }
+
+  // Returns the seed of the game with the given number in a batch with the given
+  // master seed
+  static long seedFor(long masterSeed, int game) {
+    long z = masterSeed + (game + 1) * 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  // EFFECT: plays the game with the given number to its end, adding it to the
+  // given totals
+  void play(int game, SimulationStats stats) {
+    Random rand = new Random(this.seedFor(game));
+    GameEngine engine = new GameEngine(rand, this.width, this.height, this.mineCount);
+    IMovePolicy policy = this.policies.get();
+    int moves = 0;
+    // every useful move uncovers a tile, so a policy that needs more moves than
+    // there are tiles is stuck
+    while (engine.status() == GameStatus.PLAYING && moves <= engine.board.size()) {
+      int tile = policy.nextMove(engine, rand);
+      if (tile < 0) {
+        break;
+      }
+      policy.observe(engine.reveal(tile));
+      moves++;
+    }
+    stats.record(engine.status(), moves, engine.board);
+  }
+
+  // Returns the totals of the given number of games, played on the given number
+  // of threads, telling the given listener about the totals so far whenever a
+  // chunk of games finishes
+  SimulationStats run(int games, int threads, IStatsListener listener) {
+    SimulationStats total = new SimulationStats();
+    long start = System.nanoTime();
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    try {
+      pool.invoke(new SimulationTask(this, 0, games, total, listener, start));
+    }
+    finally {
+      pool.shutdown();
+    }
+    total.elapsedNanos = System.nanoTime() - start;
+    return total;
+  }
+
+  // Plays a batch of games from the command line:
+  // width height mineCount games threads masterSeed
+  public static void main(String[] args) {
+    int width = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+    int height = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+    int mines = args.length > 2 ? Integer.parseInt(args[2]) : 99;
+    int games = args.length > 3 ? Integer.parseInt(args[3]) : 100000;
+    int threads = args.length > 4 ? Integer.parseInt(args[4])
+        : Runtime.getRuntime().availableProcessors();
+    long seed = args.length > 5 ? Long.parseLong(args[5]) : 1;
+    SimulationRunner runner = new SimulationRunner(width, height, mines, RandomPolicy::new, seed);
+    int every = Math.max(1, games / CHUNK / 10);
+    SimulationStats stats = runner.run(games, threads, new IStatsListener() {
+      int updates = 0;
+
+      public void update(SimulationStats soFar) {
+        this.updates++;
+        if (this.updates % every == 0) {
+          System.out.println(soFar);
+        }
+      }
+    });
+    System.out.println(stats);
+  }
+}
+
+// Plays a range of games, splitting it in half until it is one chunk long
+class SimulationTask extends RecursiveAction {
+  SimulationRunner runner;
+  int from;
+  int to;
+  SimulationStats total;
+  IStatsListener listener;
+  long start;
+
+  SimulationTask(SimulationRunner runner, int from, int to, SimulationStats total,
+      IStatsListener listener, long start) {
+    this.runner = runner;
+    this.from = from;
+    this.to = to;
+    this.total = total;
+    this.listener = listener;
+    this.start = start;
+  }
+
+  protected void compute() {
+    if (this.to - this.from > SimulationRunner.CHUNK) {
+      int mid = this.from + (this.to - this.from) / 2;
+      invokeAll(new SimulationTask(this.runner, this.from, mid, this.total, this.listener,
+          this.start),
+          new SimulationTask(this.runner, mid, this.to, this.total, this.listener, this.start));
+    }
+    else {
+      SimulationStats chunk = new SimulationStats();
+      for (int game = this.from; game < this.to; game++) {
+        this.runner.play(game, chunk);
+      }
+      synchronized (this.total) {
+        this.total.add(chunk);
+        this.total.elapsedNanos = System.nanoTime() - this.start;
+        this.listener.update(this.total.copy());
+      }
+    }
+  }
+}
+
+class ExamplesSimulation {
+  IStatsListener quiet = new IStatsListener() {
+    public void update(SimulationStats soFar) {
+      // nothing to report
+    }
+  };
+
+  // tests that RandomPolicy only picks covered, unflagged tiles
+  void testRandomPolicy(Tester t) {
+    Board board = new Board(4, 1);
+    board.setVisible(0, true);
+    board.setFlagged(1, true);
+    board.setVisible(3, true);
+    GameEngine game = new GameEngine(board, 0);
+    Random rand = new Random(1);
+    for (int i = 0; i < 50; i++) {
+      t.checkExpect(new RandomPolicy().nextMove(game, rand), 2);
+    }
+  }
+
+  // tests that the totals do not depend on the number of threads
+  void testDeterministic(Tester t) {
+    SimulationRunner runner = new SimulationRunner(9, 9, 10, RandomPolicy::new, 42);
+    SimulationStats one = runner.run(1000, 1, this.quiet);
+    SimulationStats four = runner.run(1000, 4, this.quiet);
+    t.checkExpect(one.games, 1000);
+    t.checkExpect(four.games, 1000);
+    t.checkExpect(four.wins, one.wins);
+    t.checkExpect(four.moves, one.moves);
+    t.checkExpect(four.revealedPercent, one.revealedPercent);
+    // a different master seed plays different games
+    SimulationStats other = new SimulationRunner(9, 9, 10, RandomPolicy::new, 43)
+        .run(1000, 4, this.quiet);
+    t.checkExpect(other.moves == one.moves && other.wins == one.wins, false);
+  }
+
+  // tests that the listener is told about each chunk once, one at a time, with
+  // totals that only grow
+  void testListener(Tester t) {
+    int[] updates = new int[1];
+    boolean[] growing = new boolean[] { true };
+    int[] last = new int[1];
+    IStatsListener counting = new IStatsListener() {
+      public void update(SimulationStats soFar) {
+        updates[0]++;
+        growing[0] = growing[0] && soFar.games > last[0];
+        last[0] = soFar.games;
+      }
+    };
+    new SimulationRunner(5, 5, 3, RandomPolicy::new, 1)
+        .run(SimulationRunner.CHUNK * 16, 4, counting);
+    t.checkExpect(updates[0], 16);
+    t.checkExpect(growing[0], true);
+    t.checkExpect(last[0], SimulationRunner.CHUNK * 16);
+  }
+
+  // tests that a board without mines is always won in one move
+  void testNoMines(Tester t) {
+    SimulationStats stats = new SimulationRunner(5, 5, 0, RandomPolicy::new, 1)
+        .run(10, 2, this.quiet);
+    t.checkExpect(stats.wins, 10);
+    t.checkExpect(stats.moves, 10L);
+    t.checkExpect(stats.revealedPercent[100], 10);
+    t.checkExpect(stats.winRate(), 1.0);
+  }
+
+  // tests revealedPercentile in the class SimulationStats
+  void testPercentile(Tester t) {
+    SimulationStats stats = new SimulationStats();
+    stats.games = 4;
+    stats.revealedPercent[10] = 1;
+    stats.revealedPercent[20] = 2;
+    stats.revealedPercent[90] = 1;
+    t.checkExpect(stats.revealedPercentile(0.25), 10);
+    t.checkExpect(stats.revealedPercentile(0.5), 20);
+    t.checkExpect(stats.revealedPercentile(1.0), 90);
+  }
+}
@@ -0,0 +1,430 @@
+import java.util.Random;
+
+import tester.Tester;
+
+// Finds the covered tiles that are certainly safe and those that are certainly
+// mines, using only what a player can see: uncovered counts and flags (which are
+// trusted to be right)
+// Each uncovered tile constrains how many of its covered neighbors are mines.
+// A constraint is checked on its own (all of its unknown tiles are safe, or all
+// are mines) and against every constraint sharing an unknown tile with it, which
+// bounds how many mines sit in the shared tiles. Only constraints whose tiles
+// changed are looked at again, so each reveal costs work near the change rather
+// than over the whole board
+class Solver {
+  // what this solver knows about a covered tile
+  static final byte UNKNOWN = 0;
+  static final byte SAFE = 1;
+  static final byte MINE = 2;
+
+  Board board;
+  byte[] known;
+  // uncovered tiles whose constraints must be looked at again, in a ring
+  int[] work;
+  int workHead;
+  int workSize;
+  boolean[] queued;
+  // safe tiles found but not yet handed out by nextSafe
+  int[] safe;
+  int safeSize;
+  int minesFound;
+  // seen[b] == pass when constraint b was already paired in this pass
+  int[] seen;
+  int pass;
+  // scratch space for two constraints and the neighbors of a tile
+  int[] unknownA;
+  int[] unknownB;
+  int[] around;
+  int[] aroundShared;
+  // the number of mines among the unknown tiles of the last constraint read
+  int remaining;
+
+  Solver(Board board) {
+    int n = board.size();
+    int degree = board.topology.maxDegree();
+    this.board = board;
+    this.known = new byte[n];
+    this.work = new int[n];
+    this.queued = new boolean[n];
+    this.safe = new int[n];
+    this.seen = new int[n];
+    this.unknownA = new int[degree];
+    this.unknownB = new int[degree];
+    this.around = new int[degree];
+    this.aroundShared = new int[degree];
+    for (int i = 0; i < n; i++) {
+      this.enqueue(i);
+    }
+  }
+
+  // EFFECT: learns that the given tiles were uncovered
+  void update(TileList changed) {
+    for (int k = 0; k < changed.size; k++) {
+      int tile = changed.get(k);
+      this.enqueue(tile);
+      this.enqueueAround(tile);
+    }
+  }
+
+  // EFFECT: learns that the given tile was flagged or unflagged
+  void flagChanged(int tile) {
+    this.enqueueAround(tile);
+  }
+
+  // EFFECT: queues the given tile, if it is uncovered and not already queued
+  void enqueue(int tile) {
+    if (this.board.isVisible(tile) && !this.board.isMine(tile) && !this.queued[tile]) {
+      this.queued[tile] = true;
+      this.work[(this.workHead + this.workSize) % this.work.length] = tile;
+      this.workSize++;
+    }
+  }
+
+  // EFFECT: queues the uncovered neighbors of the given tile
+  void enqueueAround(int tile) {
+    int degree = this.board.topology.neighbors(tile, this.around);
+    for (int k = 0; k < degree; k++) {
+      this.enqueue(this.around[k]);
+    }
+  }
+
+  // Checks if nothing is known about the given tile yet
+  boolean isUnknown(int tile) {
+    return !this.board.has(tile, Board.VISIBLE | Board.FLAGGED)
+        && this.known[tile] == UNKNOWN;
+  }
+
+  // EFFECT: writes the unknown neighbors of the given uncovered tile into out
+  // and sets remaining to how many of them are mines
+  // Returns how many there are
+  int constraint(int tile, int[] out, int[] neighbors) {
+    int degree = this.board.topology.neighbors(tile, neighbors);
+    int count = 0;
+    int mines = 0;
+    for (int k = 0; k < degree; k++) {
+      int n = neighbors[k];
+      if (this.isUnknown(n)) {
+        out[count] = n;
+        count++;
+      }
+      else if (this.board.isFlagged(n) || this.known[n] == MINE) {
+        mines++;
+      }
+    }
+    this.remaining = this.board.countMines(tile) - mines;
+    return count;
+  }
+
+  // EFFECT: records what the given tile is and queues the constraints it is in
+  void mark(int tile, byte state) {
+    if (this.known[tile] != UNKNOWN) {
+      return;
+    }
+    this.known[tile] = state;
+    if (state == SAFE) {
+      this.safe[this.safeSize] = tile;
+      this.safeSize++;
+    }
+    else {
+      this.minesFound++;
+    }
+    this.enqueueAround(tile);
+  }
+
+  // EFFECT: records the tiles of the given set that are (or are not) in the
+  // other given set as the given state
+  void markAll(int[] tiles, int size, int[] other, int otherSize, boolean inOther,
+      byte state) {
+    for (int k = 0; k < size; k++) {
+      if (this.contains(other, otherSize, tiles[k]) == inOther) {
+        this.mark(tiles[k], state);
+      }
+    }
+  }
+
+  // Checks if the first given entries of the given array hold the given tile
+  boolean contains(int[] tiles, int size, int tile) {
+    for (int k = 0; k < size; k++) {
+      if (tiles[k] == tile) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // EFFECT: works through the queued constraints until nothing more follows
+  // from them
+  void solve() {
+    while (this.workSize > 0) {
+      int a = this.work[this.workHead];
+      this.workHead = (this.workHead + 1) % this.work.length;
+      this.workSize--;
+      this.queued[a] = false;
+      this.examine(a);
+    }
+  }
+
+  // EFFECT: deduces what it can from the constraint of the given uncovered tile,
+  // alone and paired with every constraint that shares an unknown tile with it
+  void examine(int a) {
+    int sizeA = this.constraint(a, this.unknownA, this.around);
+    int minesA = this.remaining;
+    if (sizeA == 0) {
+      return;
+    }
+    if (minesA == 0) {
+      this.markAll(this.unknownA, sizeA, this.unknownA, 0, false, SAFE);
+      return;
+    }
+    if (minesA == sizeA) {
+      this.markAll(this.unknownA, sizeA, this.unknownA, 0, false, MINE);
+      return;
+    }
+    this.pass++;
+    this.seen[a] = this.pass;
+    for (int i = 0; i < sizeA; i++) {
+      int degree = this.board.topology.neighbors(this.unknownA[i], this.aroundShared);
+      for (int k = 0; k < degree; k++) {
+        int b = this.aroundShared[k];
+        if (this.seen[b] != this.pass && this.board.isVisible(b) && !this.board.isMine(b)) {
+          this.seen[b] = this.pass;
+          if (this.pair(sizeA, minesA, b)) {
+            // what is known changed, so a is queued again by mark
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  // EFFECT: deduces what it can from the constraint held in unknownA, with the
+  // given size and mines, together with the constraint of the given tile b
+  // Returns whether anything was deduced
+  boolean pair(int sizeA, int minesA, int b) {
+    int sizeB = this.constraint(b, this.unknownB, this.around);
+    int minesB = this.remaining;
+    int shared = 0;
+    for (int k = 0; k < sizeB; k++) {
+      if (this.contains(this.unknownA, sizeA, this.unknownB[k])) {
+        shared++;
+      }
+    }
+    int onlyA = sizeA - shared;
+    int onlyB = sizeB - shared;
+    // the mines in the shared tiles lie between lo and hi
+    int lo = Math.max(0, Math.max(minesA - onlyA, minesB - onlyB));
+    int hi = Math.min(shared, Math.min(minesA, minesB));
+    boolean deduced = false;
+    if (onlyA > 0 && minesA - lo == 0) {
+      this.markAll(this.unknownA, sizeA, this.unknownB, sizeB, false, SAFE);
+      deduced = true;
+    }
+    else if (onlyA > 0 && minesA - hi == onlyA) {
+      this.markAll(this.unknownA, sizeA, this.unknownB, sizeB, false, MINE);
+      deduced = true;
+    }
+    if (onlyB > 0 && minesB - lo == 0) {
+      this.markAll(this.unknownB, sizeB, this.unknownA, sizeA, false, SAFE);
+      deduced = true;
+    }
+    else if (onlyB > 0 && minesB - hi == onlyB) {
+      this.markAll(this.unknownB, sizeB, this.unknownA, sizeA, false, MINE);
+      deduced = true;
+    }
+    return deduced;
+  }
+
+  // Returns a covered tile that is certainly safe, or -1 if there is none
+  int nextSafe() {
+    this.solve();
+    while (this.safeSize > 0) {
+      this.safeSize--;
+      int tile = this.safe[this.safeSize];
+      if (!this.board.has(tile, Board.VISIBLE | Board.FLAGGED)) {
+        return tile;
+      }
+    }
+    return -1;
+  }
+}
+
+// Reveals tiles the solver proves safe, and guesses at random among the unknown
+// tiles only when nothing is certain
+class SolverPolicy implements IMovePolicy {
+  Solver solver;
+  int guesses;
+  // picks the safest guess when there is one, or null to guess at random
+  ProbabilityEngine probabilities;
+
+  SolverPolicy() {
+    this(null);
+  }
+
+  SolverPolicy(ProbabilityEngine probabilities) {
+    this.probabilities = probabilities;
+  }
+
+  public int nextMove(GameEngine game, Random rand) {
+    if (this.solver == null || this.solver.board != game.board) {
+      this.solver = new Solver(game.board);
+    }
+    int tile = this.solver.nextSafe();
+    if (tile >= 0) {
+      return tile;
+    }
+    this.guesses++;
+    Board board = game.board;
+    if (this.probabilities != null) {
+      double[] chances = this.probabilities.probabilities(board, game.mineCount);
+      int best = -1;
+      for (int i = 0; i < board.size(); i++) {
+        if (this.solver.isUnknown(i) && (best < 0 || chances[i] < chances[best])) {
+          best = i;
+        }
+      }
+      return best;
+    }
+    int unknown = 0;
+    for (int i = 0; i < board.size(); i++) {
+      if (this.solver.isUnknown(i)) {
+        unknown++;
+      }
+    }
+    if (unknown == 0) {
+      return -1;
+    }
+    int k = rand.nextInt(unknown);
+    for (int i = 0; i < board.size(); i++) {
+      if (this.solver.isUnknown(i)) {
+        if (k == 0) {
+          return i;
+        }
+        k--;
+      }
+    }
+    return -1;
+  }
+
+  public void observe(TileList changed) {
+    if (this.solver != null) {
+      this.solver.update(changed);
+    }
+  }
+}
+
+class ExamplesSolver {
+  // Returns a solver for a board with the given mines and uncovered tiles
+  Solver solverFor(int width, int height, int[] mines, int[] uncovered) {
+    Board board = new Board(width, height);
+    for (int m : mines) {
+      board.setMine(m, true);
+    }
+    for (int u : uncovered) {
+      board.setVisible(u, true);
+    }
+    Solver solver = new Solver(board);
+    solver.solve();
+    return solver;
+  }
+
+  // tests the single-constraint rules of the class Solver
+  void testSingleRules(Tester t) {
+    // . 1 M  with the middle tile uncovered: both ends are unknown, nothing follows
+    Solver line = this.solverFor(3, 1, new int[] { 2 }, new int[] { 1 });
+    t.checkExpect(line.known[0], Solver.UNKNOWN);
+    t.checkExpect(line.nextSafe(), -1);
+    // 0 . . : a tile without adjacent mines makes its neighbor safe
+    Solver empty = this.solverFor(3, 1, new int[] { 2 }, new int[] { 0 });
+    t.checkExpect(empty.known[1], Solver.SAFE);
+    t.checkExpect(empty.nextSafe(), 1);
+    t.checkExpect(empty.nextSafe(), -1);
+    // 1 M : the only covered neighbor of a 1 is a mine
+    Solver mine = this.solverFor(2, 1, new int[] { 1 }, new int[] { 0 });
+    t.checkExpect(mine.known[1], Solver.MINE);
+    t.checkExpect(mine.minesFound, 1);
+  }
+
+  // tests the paired-constraint rules of the class Solver on the 1-2-1 pattern
+  void testPairRules(Tester t) {
+    // covered row above an uncovered 1 2 1 row; the mines are above the 1s
+    // M . M
+    // 1 2 1
+    Solver solver = this.solverFor(3, 2, new int[] { 0, 2 }, new int[] { 3, 4, 5 });
+    t.checkExpect(solver.known[0], Solver.MINE);
+    t.checkExpect(solver.known[1], Solver.SAFE);
+    t.checkExpect(solver.known[2], Solver.MINE);
+    // 1 1 along an edge: the tile beyond the first pair is safe
+    // . . .
+    // 1 1 .   with the tile under the 1s uncovered, mine above the left 1
+    Solver edge = this.solverFor(3, 2, new int[] { 0 }, new int[] { 3, 4 });
+    t.checkExpect(edge.known[2], Solver.SAFE);
+  }
+
+  // tests that flags count as mines
+  void testFlags(Tester t) {
+    Board board = new Board(3, 1);
+    board.setMine(0, true);
+    board.setVisible(1, true);
+    board.setFlagged(0, true);
+    Solver solver = new Solver(board);
+    t.checkExpect(solver.nextSafe(), 2);
+  }
+
+  // tests that the solver only ever calls a tile safe if it is, and a mine if it
+  // is, while playing many games
+  void testSound(Tester t) {
+    boolean sound = true;
+    int proven = 0;
+    for (int seed = 0; seed < 50; seed++) {
+      Random rand = new Random(seed);
+      GameEngine game = new GameEngine(rand, 16, 16, 40);
+      SolverPolicy policy = new SolverPolicy();
+      while (game.status() == GameStatus.PLAYING) {
+        policy.observe(game.reveal(policy.nextMove(game, rand)));
+        for (int i = 0; i < game.board.size(); i++) {
+          byte k = policy.solver.known[i];
+          sound = sound && (k == Solver.UNKNOWN || (k == Solver.MINE) == game.board.isMine(i));
+          if (k != Solver.UNKNOWN) {
+            proven++;
+          }
+        }
+      }
+    }
+    t.checkExpect(sound, true);
+    t.checkExpect(proven > 0, true);
+  }
+
+  // tests that the incremental solver finds what a fresh solver would
+  void testIncremental(Tester t) {
+    Random rand = new Random(11);
+    GameEngine game = new GameEngine(rand, 20, 12, 30);
+    SolverPolicy policy = new SolverPolicy();
+    boolean same = true;
+    for (int move = 0; move < 40 && game.status() == GameStatus.PLAYING; move++) {
+      policy.observe(game.reveal(policy.nextMove(game, rand)));
+      policy.solver.solve();
+      Solver fresh = new Solver(game.board);
+      fresh.solve();
+      for (int i = 0; i < game.board.size(); i++) {
+        boolean coveredSafe = !game.board.isVisible(i) && fresh.known[i] == Solver.SAFE;
+        same = same && (!coveredSafe || policy.solver.known[i] == Solver.SAFE);
+      }
+    }
+    t.checkExpect(same, true);
+  }
+
+  // tests that the solver wins more often than random play
+  void testBeatsRandom(Tester t) {
+    IStatsListener quiet = new IStatsListener() {
+      public void update(SimulationStats soFar) {
+        // nothing to report
+      }
+    };
+    SimulationStats solved = new SimulationRunner(9, 9, 10, SolverPolicy::new, 5)
+        .run(500, 2, quiet);
+    SimulationStats random = new SimulationRunner(9, 9, 10, RandomPolicy::new, 5)
+        .run(500, 2, quiet);
+    t.checkExpect(solved.winRate() > 0.5, true);
+    t.checkExpect(solved.winRate() > random.winRate(), true);
+  }
+}
@@ -0,0 +1,380 @@
+import java.util.Arrays;
+
+import tester.Tester;
+
+// Represents how the tiles of a board, numbered 0 to size() - 1, neighbor each
+// other
+interface ITopology {
+  // Returns the number of tiles
+  int size();
+
+  // Returns the most neighbors any one tile can have
+  int maxDegree();
+
+  // EFFECT: writes the indices of the neighbors of the given tile into out,
+  // which holds at least maxDegree() entries
+  // Returns how many neighbors were written
+  int neighbors(int index, int[] out);
+}
+
+// Represents the neighbors of every tile of another topology, worked out once
+// and stored in compressed sparse row form: the neighbors of tile i are
+// targets[offsets[i]] up to, but not including, targets[offsets[i + 1]]
+// That is 4 bytes per neighbor and 4 per tile, and finding the neighbors of a
+// tile is one copy however the topology defines them, so a board can be played
+// on any graph at all, and boards of one shape can share one graph
+// The neighbors of a square grid are quicker to work out than to load from
+// memory once the graph outgrows the cache, so boards keep the grid itself
+class NeighborGraph implements ITopology {
+  int[] offsets;
+  int[] targets;
+  int maxDegree;
+
+  // the neighbors of every tile of the given topology
+  NeighborGraph(ITopology topology) {
+    int size = topology.size();
+    int[] out = new int[topology.maxDegree()];
+    this.offsets = new int[size + 1];
+    for (int i = 0; i < size; i++) {
+      this.offsets[i + 1] = this.offsets[i] + topology.neighbors(i, out);
+    }
+    this.targets = new int[this.offsets[size]];
+    this.maxDegree = 0;
+    for (int i = 0; i < size; i++) {
+      int degree = topology.neighbors(i, out);
+      System.arraycopy(out, 0, this.targets, this.offsets[i], degree);
+      this.maxDegree = Math.max(this.maxDegree, degree);
+    }
+  }
+
+  public int size() {
+    return this.offsets.length - 1;
+  }
+
+  public int maxDegree() {
+    return this.maxDegree;
+  }
+
+  public int neighbors(int index, int[] out) {
+    int start = this.offsets[index];
+    int degree = this.offsets[index + 1] - start;
+    System.arraycopy(this.targets, start, out, 0, degree);
+    return degree;
+  }
+}
+
+// Represents a rectangular grid where each tile neighbors the (up to) 8 tiles
+// around it
+class SquareTopology implements ITopology {
+  // edge bits of a tile, used to pick its row of the offset table
+  static final int TOP = 1;
+  static final int BOTTOM = 2;
+  static final int LEFT = 4;
+  static final int RIGHT = 8;
+
+  int width;
+  int height;
+  // offsets[edge] lists the index offsets of the neighbors of a tile lying on
+  // the given edges of the board
+  int[][] offsets;
+
+  SquareTopology(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.offsets = new int[16][];
+    for (int edge = 0; edge < 16; edge++) {
+      this.offsets[edge] = this.offsetsFor(edge);
+    }
+  }
+
+  // Returns the index offsets of the neighbors of a tile on the given edges
+  int[] offsetsFor(int edge) {
+    int[] result = new int[8];
+    int count = 0;
+    for (int dr = -1; dr <= 1; dr++) {
+      for (int dc = -1; dc <= 1; dc++) {
+        boolean outside = (dr == 0 && dc == 0) || (dr < 0 && (edge & TOP) != 0)
+            || (dr > 0 && (edge & BOTTOM) != 0) || (dc < 0 && (edge & LEFT) != 0)
+            || (dc > 0 && (edge & RIGHT) != 0);
+        if (!outside) {
+          result[count] = dr * this.width + dc;
+          count++;
+        }
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  // Returns the edge bits of the tile at the given index
+  int edge(int index) {
+    int row = index / this.width;
+    int col = index - row * this.width;
+    int edge = 0;
+    if (row == 0) {
+      edge |= TOP;
+    }
+    if (row == this.height - 1) {
+      edge |= BOTTOM;
+    }
+    if (col == 0) {
+      edge |= LEFT;
+    }
+    if (col == this.width - 1) {
+      edge |= RIGHT;
+    }
+    return edge;
+  }
+
+  public int size() {
+    return this.width * this.height;
+  }
+
+  public int maxDegree() {
+    return 8;
+  }
+
+  public int neighbors(int index, int[] out) {
+    int[] offs = this.offsets[this.edge(index)];
+    for (int k = 0; k < offs.length; k++) {
+      out[k] = index + offs[k];
+    }
+    return offs.length;
+  }
+}
+
+// Represents a grid of hexagons in rows, where every odd row is shifted half a
+// tile to the right, so each tile neighbors the (up to) 2 tiles beside it and 2
+// in each of the rows above and below
+class HexTopology implements ITopology {
+  int width;
+  int height;
+
+  HexTopology(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  public int size() {
+    return this.width * this.height;
+  }
+
+  public int maxDegree() {
+    return 6;
+  }
+
+  public int neighbors(int index, int[] out) {
+    int row = index / this.width;
+    int col = index - row * this.width;
+    // the rows above and below reach one column further left on an even row,
+    // and one further right on an odd one
+    int shift = row % 2 == 0 ? -1 : 0;
+    int count = 0;
+    for (int dr = -1; dr <= 1; dr++) {
+      int r = row + dr;
+      if (r >= 0 && r < this.height) {
+        int from = dr == 0 ? col - 1 : col + shift;
+        for (int c = from; c <= from + (dr == 0 ? 2 : 1); c++) {
+          if (c >= 0 && c < this.width && (dr != 0 || c != col)) {
+            out[count] = r * this.width + c;
+            count++;
+          }
+        }
+      }
+    }
+    return count;
+  }
+}
+
+// Represents a rectangular grid whose edges wrap around, so that every tile
+// neighbors the 8 tiles around it, across the edges as well
+class TorusTopology implements ITopology {
+  int width;
+  int height;
+
+  // a grid at least 3 tiles each way, so that no tile neighbors another twice
+  TorusTopology(int width, int height) {
+    if (width < 3 || height < 3) {
+      throw new IllegalArgumentException("A torus must be at least 3 tiles each way");
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  public int size() {
+    return this.width * this.height;
+  }
+
+  public int maxDegree() {
+    return 8;
+  }
+
+  public int neighbors(int index, int[] out) {
+    int row = index / this.width;
+    int col = index - row * this.width;
+    int count = 0;
+    for (int dr = -1; dr <= 1; dr++) {
+      int r = Math.floorMod(row + dr, this.height);
+      for (int dc = -1; dc <= 1; dc++) {
+        if (dr != 0 || dc != 0) {
+          out[count] = r * this.width + Math.floorMod(col + dc, this.width);
+          count++;
+        }
+      }
+    }
+    return count;
+  }
+}
+
+// Represents grids stacked in layers, each tile numbered layer by layer, that
+// neighbors the (up to) 8 tiles around it in its own layer and the tiles right
+// above and below it in the next layers
+// All 26 tiles around a tile in 3D would not fit the 4 bits of a tile's count,
+// so a layer touches only the tiles straight across from it
+class LayeredTopology implements ITopology {
+  int width;
+  int height;
+  int layers;
+  SquareTopology layer;
+
+  LayeredTopology(int width, int height, int layers) {
+    this.width = width;
+    this.height = height;
+    this.layers = layers;
+    this.layer = new SquareTopology(width, height);
+  }
+
+  public int size() {
+    return this.layer.size() * this.layers;
+  }
+
+  public int maxDegree() {
+    return 10;
+  }
+
+  public int neighbors(int index, int[] out) {
+    int area = this.layer.size();
+    int base = index - index % area;
+    int count = this.layer.neighbors(index - base, out);
+    for (int k = 0; k < count; k++) {
+      out[k] += base;
+    }
+    if (index >= area) {
+      out[count] = index - area;
+      count++;
+    }
+    if (index + area < this.size()) {
+      out[count] = index + area;
+      count++;
+    }
+    return count;
+  }
+}
+
+class ExamplesTopology {
+  // 4x3 grid:
+  // 0  1  2  3
+  // 4  5  6  7
+  // 8  9 10 11
+  ITopology grid = new SquareTopology(4, 3);
+  ITopology line = new SquareTopology(3, 1);
+  ITopology single = new SquareTopology(1, 1);
+
+  // Returns the neighbors of the given tile, in ascending order
+  int[] neighborsOf(ITopology topology, int index) {
+    int[] out = new int[topology.maxDegree()];
+    int count = topology.neighbors(index, out);
+    return Arrays.copyOf(out, count);
+  }
+
+  // tests neighbors in the class SquareTopology
+  void testNeighbors(Tester t) {
+    t.checkExpect(this.grid.size(), 12);
+    t.checkExpect(this.neighborsOf(this.grid, 5), new int[] { 0, 1, 2, 4, 6, 8, 9, 10 });
+    t.checkExpect(this.neighborsOf(this.grid, 0), new int[] { 1, 4, 5 });
+    t.checkExpect(this.neighborsOf(this.grid, 3), new int[] { 2, 6, 7 });
+    t.checkExpect(this.neighborsOf(this.grid, 8), new int[] { 4, 5, 9 });
+    t.checkExpect(this.neighborsOf(this.grid, 11), new int[] { 6, 7, 10 });
+    t.checkExpect(this.neighborsOf(this.grid, 7), new int[] { 2, 3, 6, 10, 11 });
+    t.checkExpect(this.neighborsOf(this.grid, 9), new int[] { 4, 5, 6, 8, 10 });
+    t.checkExpect(this.neighborsOf(this.line, 1), new int[] { 0, 2 });
+    t.checkExpect(this.neighborsOf(this.single, 0), new int[] {});
+  }
+
+  // tests neighbors in the class HexTopology
+  // 4x3 grid of hexagons:
+  //  0  1  2  3
+  //    4  5  6  7
+  //  8  9 10 11
+  void testHexNeighbors(Tester t) {
+    ITopology hex = new HexTopology(4, 3);
+    t.checkExpect(this.neighborsOf(hex, 5), new int[] { 1, 2, 4, 6, 9, 10 });
+    t.checkExpect(this.neighborsOf(hex, 9), new int[] { 4, 5, 8, 10 });
+    t.checkExpect(this.neighborsOf(hex, 0), new int[] { 1, 4 });
+    t.checkExpect(this.neighborsOf(hex, 7), new int[] { 3, 6, 11 });
+  }
+
+  // tests neighbors in the class TorusTopology
+  void testTorusNeighbors(Tester t) {
+    ITopology torus = new TorusTopology(4, 3);
+    t.checkExpect(this.neighborsOf(torus, 0), new int[] { 11, 8, 9, 3, 1, 7, 4, 5 });
+    t.checkExpect(this.neighborsOf(torus, 5), new int[] { 0, 1, 2, 4, 6, 8, 9, 10 });
+    t.checkConstructorException(
+        new IllegalArgumentException("A torus must be at least 3 tiles each way"),
+        "TorusTopology", 2, 5);
+  }
+
+  // tests neighbors in the class LayeredTopology
+  void testLayeredNeighbors(Tester t) {
+    ITopology layered = new LayeredTopology(4, 3, 3);
+    t.checkExpect(layered.size(), 36);
+    t.checkExpect(this.neighborsOf(layered, 5), new int[] { 0, 1, 2, 4, 6, 8, 9, 10, 17 });
+    t.checkExpect(this.neighborsOf(layered, 12 + 5),
+        new int[] { 12, 13, 14, 16, 18, 20, 21, 22, 5, 29 });
+    t.checkExpect(this.neighborsOf(layered, 24), new int[] { 25, 28, 29, 12 });
+  }
+
+  // tests that every neighbor relation of each topology goes both ways, and
+  // that no tile has more neighbors than the topology allows
+  void testSymmetric(Tester t) {
+    ITopology[] topologies = new ITopology[] { new SquareTopology(7, 5),
+        new HexTopology(7, 5), new TorusTopology(7, 5), new LayeredTopology(7, 5, 4) };
+    for (ITopology topology : topologies) {
+      int[] out = new int[topology.maxDegree()];
+      int[] back = new int[topology.maxDegree()];
+      boolean symmetric = true;
+      for (int i = 0; i < topology.size(); i++) {
+        int count = topology.neighbors(i, out);
+        for (int k = 0; k < count; k++) {
+          int backCount = topology.neighbors(out[k], back);
+          boolean found = false;
+          for (int j = 0; j < backCount; j++) {
+            found = found || back[j] == i;
+          }
+          symmetric = symmetric && found && out[k] != i;
+        }
+      }
+      t.checkExpect(symmetric, true);
+      t.checkExpect(new NeighborGraph(topology).maxDegree() <= topology.maxDegree(), true);
+    }
+  }
+
+  // tests that the graph of a topology lists the same neighbors as it does
+  void testGraph(Tester t) {
+    ITopology[] topologies = new ITopology[] { this.grid, this.single, new HexTopology(5, 4),
+        new TorusTopology(3, 3), new LayeredTopology(3, 3, 2) };
+    for (ITopology topology : topologies) {
+      NeighborGraph graph = new NeighborGraph(topology);
+      t.checkExpect(graph.size(), topology.size());
+      t.checkExpect(graph.offsets[graph.size()], graph.targets.length);
+      boolean same = true;
+      for (int i = 0; i < topology.size(); i++) {
+        same = same && Arrays.equals(this.neighborsOf(graph, i), this.neighborsOf(topology, i));
+      }
+      t.checkExpect(same, true);
+    }
+    // every pair of tiles next to each other appears once from each side
+    t.checkExpect(new NeighborGraph(this.grid).targets.length,
+        2 * (3 * 3 + 4 * 2 + 2 * 3 * 2));
+    t.checkExpect(new NeighborGraph(this.single).maxDegree(), 0);
+  }
+}
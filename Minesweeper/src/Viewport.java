@@ -0,0 +1,138 @@
+import tester.Tester;
+
+// Represents the part of a board that is on screen: a window of columns by rows
+// tiles whose top left tile is at (left, top)
+// A bounded viewport stays inside a board of the given width and height, and is
+// never larger than it; an unbounded one can go anywhere
+class Viewport {
+  int columns;
+  int rows;
+  int left;
+  int top;
+  boolean bounded;
+  int width;
+  int height;
+
+  // a window of at most the given size over a board of the given size, at its
+  // top left corner
+  Viewport(int columns, int rows, int width, int height) {
+    this.columns = Math.min(columns, width);
+    this.rows = Math.min(rows, height);
+    this.left = 0;
+    this.top = 0;
+    this.bounded = true;
+    this.width = width;
+    this.height = height;
+  }
+
+  // a window of the given size that can go anywhere, centered on the origin
+  Viewport(int columns, int rows) {
+    this.columns = columns;
+    this.rows = rows;
+    this.left = -columns / 2;
+    this.top = -rows / 2;
+    this.bounded = false;
+  }
+
+  // Returns the width of the window in pixels
+  int pixelWidth() {
+    return this.columns * IUtils.TILE_SIZE;
+  }
+
+  // Returns the height of the window in pixels
+  int pixelHeight() {
+    return this.rows * IUtils.TILE_SIZE;
+  }
+
+  // Returns the column of the board under the given x position on screen
+  int column(int x) {
+    return this.left + Math.floorDiv(x, IUtils.TILE_SIZE);
+  }
+
+  // Returns the row of the board under the given y position on screen
+  int row(int y) {
+    return this.top + Math.floorDiv(y, IUtils.TILE_SIZE);
+  }
+
+  // EFFECT: moves the window by the given number of tiles across and down,
+  // stopping at the edges of a bounded board
+  // Returns whether the window moved
+  boolean pan(int dx, int dy) {
+    int left = this.left + dx;
+    int top = this.top + dy;
+    if (this.bounded) {
+      left = Math.max(0, Math.min(left, this.width - this.columns));
+      top = Math.max(0, Math.min(top, this.height - this.rows));
+    }
+    boolean moved = left != this.left || top != this.top;
+    this.left = left;
+    this.top = top;
+    return moved;
+  }
+
+  // EFFECT: moves the window one tile in the direction of the given arrow key
+  // Returns whether the window moved
+  boolean onKey(String key) {
+    if (key.equals("left")) {
+      return this.pan(-1, 0);
+    }
+    else if (key.equals("right")) {
+      return this.pan(1, 0);
+    }
+    else if (key.equals("up")) {
+      return this.pan(0, -1);
+    }
+    else if (key.equals("down")) {
+      return this.pan(0, 1);
+    }
+    else {
+      return false;
+    }
+  }
+}
+
+class ExamplesViewport {
+  // tests that a bounded viewport fits its board and stays on it
+  void testBounded(Tester t) {
+    Viewport small = new Viewport(40, 24, 9, 9);
+    t.checkExpect(small.columns, 9);
+    t.checkExpect(small.rows, 9);
+    t.checkExpect(small.pan(1, 1), false);
+    Viewport view = new Viewport(10, 5, 30, 16);
+    t.checkExpect(view.pixelWidth(), 10 * IUtils.TILE_SIZE);
+    t.checkExpect(view.onKey("left"), false);
+    t.checkExpect(view.onKey("right"), true);
+    t.checkExpect(view.onKey("down"), true);
+    t.checkExpect(view.left, 1);
+    t.checkExpect(view.top, 1);
+    t.checkExpect(view.pan(100, 100), true);
+    t.checkExpect(view.left, 20);
+    t.checkExpect(view.top, 11);
+    t.checkExpect(view.onKey("down"), false);
+    t.checkExpect(view.onKey("x"), false);
+  }
+
+  // tests that an unbounded viewport goes anywhere
+  void testUnbounded(Tester t) {
+    Viewport view = new Viewport(10, 6);
+    t.checkExpect(view.left, -5);
+    t.checkExpect(view.top, -3);
+    t.checkExpect(view.pan(-1000000, 0), true);
+    t.checkExpect(view.left, -1000005);
+    t.checkExpect(view.onKey("up"), true);
+    t.checkExpect(view.top, -4);
+  }
+
+  // tests that positions on screen map to tiles of the board under the window
+  void testMapping(Tester t) {
+    Viewport view = new Viewport(10, 5, 30, 16);
+    view.pan(7, 3);
+    t.checkExpect(view.column(0), 7);
+    t.checkExpect(view.column(IUtils.TILE_SIZE - 1), 7);
+    t.checkExpect(view.column(IUtils.TILE_SIZE), 8);
+    t.checkExpect(view.row(2 * IUtils.TILE_SIZE + 5), 5);
+    Viewport free = new Viewport(4, 4);
+    t.checkExpect(free.column(0), -2);
+    t.checkExpect(free.row(IUtils.TILE_SIZE * 3), 1);
+  }
+}